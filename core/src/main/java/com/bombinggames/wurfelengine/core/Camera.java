@@ -499,7 +499,7 @@ public class Camera{
 				for (int y = -lRad; y <= lRad; y++) {
 					//load missing chunks
 					if (map.getChunk(centerChunkX + x, centerChunkY + y) == null) {
-						map.loadChunk(centerChunkX + x, centerChunkY + y);
+						map.loadChunk(centerChunkX + x, centerChunkY + y, true);
 					}
 				}
 			}
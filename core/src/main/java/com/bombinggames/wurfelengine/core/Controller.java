@@ -108,6 +108,15 @@ public class Controller implements GameManager {
 		}
 	}
 
+	/**
+	 *
+	 * @return true if a map is loaded
+	 * @since v.1.9.2
+	 */
+	public static boolean hasMap() {
+		return map != null;
+	}
+
 	/**
 	 *
 	 * @param map
@@ -166,6 +166,7 @@ public class Console {
 		registeredCommands.add(new FullscreenCommand());
 		registeredCommands.add(new ManCommand());
 		registeredCommands.add(new FillWithAirCommand());
+		registeredCommands.add(new ConvertToRegionsCommand());
 		
 		log = new TextArea("Wurfel Engine "+ WE.VERSION +" Console\n", skin);
 		log.setBounds(xPos, yPos+52, 750, 550);
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.console;
+
+import com.bombinggames.wurfelengine.WE;
+import com.bombinggames.wurfelengine.core.Controller;
+import com.bombinggames.wurfelengine.core.GameplayScreen;
+import java.io.IOException;
+import java.util.StringTokenizer;
+
+/**
+ * Packs the chunk files of the current map into region files.
+ *
+ * @author Benedikt Vogler
+ */
+public class ConvertToRegionsCommand implements ConsoleCommand {
+
+	@Override
+	public boolean perform(StringTokenizer parameters, GameplayScreen gameplay) {
+		try {
+			int converted = Controller.getMap().convertToRegionFiles();
+			WE.getConsole().add("Converted " + converted + " chunks into region files.\n", "System");
+			return true;
+		} catch (IOException ex) {
+			WE.getConsole().add("Converting failed: " + ex + "\n", "System");
+			return false;
+		}
+	}
+
+	@Override
+	public String getCommandName() {
+		return "toregions";
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	@Override
+	public String getManual() {
+		return "packs the chunk files of the current map into region files";
+	}
+
+}
@@ -64,6 +64,9 @@ public class CVarSystemMap extends AbstractCVarSystem {
 		register(new IntCVar(10), "chunkBlocksX");
 		register(new IntCVar(40), "chunkBlocksY");
 		register(new IntCVar(10), "chunkBlocksZ");
+		register(new StringCVar("palette"), "chunkCodec");//legacy, palette or palettedeflate. legacy can be read by map version 4
+		register(new BooleanCVar(false), "useRegionFiles");//store chunks in region files instead of one file per chunk
+		register(new BooleanCVar(false), "useJournal");//save only changed cells in a journal per region file, needs useRegionFiles
 		register(new StringCVar(""), "mapname");
 		register(new StringCVar(""), "description");
 		register(new IntCVar(-1), "currentSaveSlot", CVarFlags.VOlATILE);
@@ -130,13 +130,21 @@ public class CVarSystemRoot extends AbstractCVarSystem {
 		register(new StringCVar(""),"loadedMap", CVarFlags.VOlATILE); 
 		register(new StringCVar(""), "lastConsoleCommand");
 		register(new IntCVar(20), "undohistorySize");
-		register(new IntCVar(500), "mapIndexSpaceSize");//size of hash map
-		register(new IntCVar(536870912), "mapMaxMemoryUseBytes");//bytes, 512MB->17,9km^2
+		register(new IntCVar(500), "mapIndexSpaceSize");//initial capacity of the chunk table
+		register(new IntCVar(536870912), "mapMaxMemoryUseBytes");//bytes, 512MB->17,9km^2, least recently used chunks are unloaded above
+		register(new IntCVar(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)), "mapLoadingThreads");//threads used for loading and generating chunks
+		register(new IntCVar(10), "mapLoadingCancelRadius");//chunks, cancelable requests further away from every camera are dropped
+		register(new IntCVar(3), "mapUnloadRadius");//chunks, chunks this close to a camera are never unloaded
+		register(new BooleanCVar(false), "mapParallelEntities");//entities which are thread safe are updated in parallel
+		register(new IntCVar(2), "mapLogicRadius");//chunks, logic blocks are instantiated in chunks this close to a camera
+		register(new IntCVar(2), "mapEntityLodRadius");//chunks, entities further away from every camera are updated less often
+		register(new FloatCVar(50f), "mapEntityLodStep");//ms, time accumulated by entities which are updated less often is applied in steps of at most this length
 		register(new BooleanCVar(false), "showMiniMapChunk");
 		register(new IntCVar(0), "depthbuffer");//0 disabled, 1 zbuffer 2 depth peeling
 		register(new IntCVar(1), "depthSorter");//0 nosort, 1 toposort, 2 depthsort
 		register(new BooleanCVar(true), "singleBatchRendering");//faster multipass rendering when enabled but disallows multiple begin/end with the batch
 		register(new BooleanCVar(true), "enableVertexLighting");
 		register(new BooleanCVar(false), "enableMultiThreadRendering");
+		register(new BooleanCVar(true), "enableAsyncChunkBaking");//new render chunks are baked on a background thread
 	}
 }
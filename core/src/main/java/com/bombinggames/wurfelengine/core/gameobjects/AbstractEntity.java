@@ -29,6 +29,7 @@
 package com.bombinggames.wurfelengine.core.gameobjects;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.ai.msg.MessageManager;
 import com.badlogic.gdx.ai.msg.Telegraph;
 import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Controller;
@@ -53,6 +54,7 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 
 	private static final long serialVersionUID = 2L;
 	private static java.util.HashMap<String, Class<? extends AbstractEntity>> entityMap = new java.util.HashMap<>(10);//map string to class
+	private static java.util.HashMap<String, EntityCodec<?>> codecMap = new java.util.HashMap<>(10);//map string to codec
 
 	/**
 	 *
@@ -63,9 +65,9 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	 * Registers engine entities in a map.
 	 */
 	public static void registerEngineEntities() {
-		entityMap.put("Explosion", Explosion.class);
-		entityMap.put("Benchmarkball", BenchmarkBall.class);
-		entityMap.put("Destruction Particle", DestructionParticle.class);
+		registerEntity("Explosion", Explosion.class, new BasicEntityCodec<>(Explosion::new));
+		registerEntity("Benchmarkball", BenchmarkBall.class, new MovableEntityCodec<>(BenchmarkBall::new));
+		registerEntity("Destruction Particle", DestructionParticle.class, new MovableEntityCodec<>(DestructionParticle::new));
 	}
 	
 	/**
@@ -76,6 +78,47 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	public static void registerEntity(String name, Class<? extends AbstractEntity> entityClass){
 		entityMap.put(name, entityClass);	
 	}
+
+	/**
+	 * Register a class of entities with a codec used for saving them in chunk
+	 * files. Entities without a codec are saved using java serialization.
+	 *
+	 * @param <T>
+	 * @param name the name of the entitie. e.g. "Ball". Is written in the chunk files.
+	 * @param entityClass the class you want to register
+	 * @param codec
+	 * @since v.1.9.2
+	 */
+	public static <T extends AbstractEntity> void registerEntity(String name, Class<T> entityClass, EntityCodec<T> codec) {
+		entityMap.put(name, entityClass);
+		codecMap.put(name, codec);
+	}
+
+	/**
+	 * Get the name under which a codec is registered for exactly this class.
+	 *
+	 * @param entityClass
+	 * @return null if there is no codec
+	 * @since v.1.9.2
+	 */
+	public static String getCodecName(Class<? extends AbstractEntity> entityClass) {
+		for (java.util.Map.Entry<String, Class<? extends AbstractEntity>> entry : entityMap.entrySet()) {
+			if (entry.getValue() == entityClass && codecMap.containsKey(entry.getKey())) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param name the registered name
+	 * @return null if there is no codec
+	 * @since v.1.9.2
+	 */
+	public static EntityCodec<?> getCodec(String name) {
+		return codecMap.get(name);
+	}
 	
 	/**
 	 * Get a map of the registered entities
@@ -123,6 +166,26 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	private transient Coordinate tmpCoordinate = new Coordinate(0, 0, 0);
 	
 	transient byte marked;
+	/**
+	 * the cell in the {@link SpatialHash} of the map
+	 */
+	transient long spatialCell = SpatialHash.NOT_INDEXED;
+	/**
+	 * position in the {@link EntityStore} and in the list of its class in the {@link EntityTypeRegistry}
+	 */
+	transient int storeIndex = -1, typeIndex = -1;
+	/**
+	 * @see EntityStore#get(long) 
+	 */
+	transient long handle = EntityStore.NO_HANDLE;
+	/**
+	 * game time skipped by the level of detail
+	 */
+	private transient float skippedDt;
+	/**
+	 * if true the next update is not skipped
+	 */
+	private transient boolean woken;
 	/**
 	 * Create an abstractEntity.
 	 *
@@ -183,6 +246,8 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	@Override
     public void setPosition(Position pos) {
         this.position = pos.toPoint();
+		updateSpatialHash();
+		wakeUp();
     }
 
 	/**
@@ -191,6 +256,108 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	 */
 	public void setPosition(Point pos) {
 		this.position = pos;
+		updateSpatialHash();
+		wakeUp();
+	}
+
+	/**
+	 * Moves this entity in the spatial hash of the map if it is already in it.
+	 */
+	private void updateSpatialHash() {
+		if (spatialCell != SpatialHash.NOT_INDEXED
+			&& Controller.hasMap()
+			&& !Controller.getMap().isUpdatingInParallel()//updated by the map afterwards
+		) {
+			Controller.getMap().getSpatialHash().update(this);
+		}
+	}
+
+	/**
+	 * If true and "mapParallelEntities" is enabled {@link #update(float)} is
+	 * called on a worker thread at the same time as the update of other thread
+	 * safe entities. The update may then only change this entity, read the map,
+	 * spawn entities, send messages with {@link #dispatchMessage(int)} and
+	 * dispose entities with
+	 * {@link com.bombinggames.wurfelengine.core.map.Map#disposeEntity(AbstractEntity)}.
+	 * It must not play sounds or use components which are not thread safe.
+	 *
+	 * @return false by default
+	 * @since v.1.9.2
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
+	/**
+	 * The update interval when the entity is further than "mapEntityLodRadius"
+	 * chunks away from every camera. The skipped time is passed with the next
+	 * update in steps of at most "mapEntityLodStep", so that collisions are
+	 * still detected. Override it for entities which are not visible off-screen.
+	 *
+	 * @return time in ms, 0 updates every frame (default),
+	 * {@link Float#POSITIVE_INFINITY} sleeps until {@link #wakeUp()} is called
+	 * or a camera comes near
+	 * @since v.1.9.2
+	 */
+	public float getDistantUpdateInterval() {
+		return 0;
+	}
+
+	/**
+	 * Updates the entity in the next frame even if it is far away from every
+	 * camera. Called when the entity is damaged or moved.
+	 *
+	 * @since v.1.9.2
+	 */
+	public void wakeUp() {
+		woken = true;
+	}
+
+	/**
+	 * Applies the level of detail of the update. Called by the map every frame.
+	 *
+	 * @param dt time since the last frame
+	 * @param distant true if far away from every camera
+	 * @return the time to pass to {@link #update(float)}, negative if the update is skipped
+	 * @see #getDistantUpdateInterval()
+	 * @since v.1.9.2
+	 */
+	public float getLodDelta(float dt, boolean distant) {
+		if (distant && !woken) {
+			float interval = getDistantUpdateInterval();
+			if (interval == Float.POSITIVE_INFINITY) {
+				return -1;//sleeping, time is not accumulated
+			}
+			if (interval > 0) {
+				skippedDt += dt;
+				if (skippedDt < interval) {
+					return -1;
+				}
+				dt = skippedDt;
+				skippedDt = 0;
+				return dt;
+			}
+		}
+		woken = false;
+		dt += skippedDt;
+		skippedDt = 0;
+		return dt;
+	}
+
+	/**
+	 * Sends a message from this entity. Messages sent during the parallel
+	 * update are delivered on the main thread after it.
+	 *
+	 * @param msg
+	 * @see #isThreadSafe()
+	 * @since v.1.9.2
+	 */
+	protected void dispatchMessage(int msg) {
+		if (Controller.hasMap()) {
+			Controller.getMap().dispatchMessage(this, msg, null);
+		} else {
+			MessageManager.getInstance().dispatchMessage(this, msg);
+		}
 	}
 
     /**
@@ -376,6 +543,7 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	 * @see #isIndestructible()
 	 */
 	public void takeDamage(byte value) {
+		wakeUp();
 		if (!indestructible) {
 			if (health > 0) {
 				if (damageSounds != null && soundTimeLimit <= 0) {
@@ -497,19 +665,11 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	 * @return
 	 */
 	public LinkedList<AbstractEntity> getCollidingEntities() {
-		ArrayList<AbstractEntity> ents = Controller.getMap().getEntities();
-		LinkedList<AbstractEntity> result = new LinkedList<>();//default size 5
-		for (AbstractEntity entity : ents) {
-			if (collidesWith(entity)) {
-				result.add(entity);
-			}
-		}
-
-		return result;
+		return getCollidingEntities(AbstractEntity.class);
 	}
 	
 	/**
-	 * O(n) n:amount of entities. ignores if is obstacle.
+	 * Uses the spatial hash of the map so only entities nearby are checked. ignores if is obstacle.
 	 *
 	 * @param <T>
 	 * @param filter only where the filter is true is returned
@@ -517,8 +677,11 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	 */
 	public <T> LinkedList<T> getCollidingEntities(final Class<T> filter) {
 		LinkedList<T> result = new LinkedList<>();//default size 5
-
-		LinkedList<T> ents = Controller.getMap().getEntitys(filter);
+		if (!hasPosition()) {
+			return result;
+		}
+		//every entity has the same collision radius
+		ArrayList<T> ents = Controller.getMap().getEntitiesInRadius(getPosition(), colissionRadius * 2, filter);
 		for (T entity : ents) {
 			if (collidesWith(((AbstractEntity) entity))) {
 				result.add(entity);
@@ -666,6 +829,9 @@ public abstract class AbstractEntity extends AbstractGameObject implements Teleg
 	 */
 	public void removeFromMap() {
 		position = null;
+		if (storeIndex >= 0 && Controller.hasMap()) {
+			Controller.getMap().getEntityStore().remove(this);
+		}
 	}
 
 	/**
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.bombinggames.wurfelengine.core.map.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Stores the fields of {@link AbstractEntity}. Subclasses add the fields of
+ * their entity class by overriding {@link #writeFields(AbstractEntity, DataOutput)}
+ * and {@link #readFields(AbstractEntity, DataInput)}.
+ *
+ * @author Benedikt Vogler
+ * @param <T> the class of entities
+ * @since v.1.9.2
+ */
+public class BasicEntityCodec<T extends AbstractEntity> implements EntityCodec<T> {
+
+	private final Supplier<T> factory;
+
+	/**
+	 *
+	 * @param factory creates an entity with default values, e.g. a constructor reference
+	 */
+	public BasicEntityCodec(Supplier<T> factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public final void write(T entity, DataOutput out) throws IOException {
+		Point pos = entity.getPosition();
+		out.writeFloat(pos.x);
+		out.writeFloat(pos.y);
+		out.writeFloat(pos.z);
+		out.writeUTF(entity.getName());
+		out.writeByte(entity.getSpriteId());
+		out.writeByte(entity.getSpriteValue());
+		out.writeChar(entity.getSpriteCategory());
+		out.writeFloat(entity.getHealth());
+		out.writeFloat(entity.getMass());
+		out.writeInt(entity.getDimensionZ());
+		out.writeBoolean(entity.isIndestructible());
+		out.writeBoolean(entity.isHidden());
+		out.writeFloat(entity.getRotation());
+		out.writeFloat(entity.getScaling());
+		writeFields(entity, out);
+	}
+
+	@Override
+	public final T read(DataInput in) throws IOException {
+		T entity = factory.get();
+		entity.setPosition(new Point(in.readFloat(), in.readFloat(), in.readFloat()));
+		entity.setName(in.readUTF());
+		entity.setSpriteId(in.readByte());
+		entity.setSpriteValue(in.readByte());
+		entity.setSpriteCategory(in.readChar());
+		entity.setHealth(in.readFloat());
+		entity.setMass(in.readFloat());
+		entity.setDimensionZ(in.readInt());
+		entity.setIndestructible(in.readBoolean());
+		entity.setHidden(in.readBoolean());
+		entity.setRotation(in.readFloat());
+		entity.setScaling(in.readFloat());
+		readFields(entity, in);
+		return entity;
+	}
+
+	/**
+	 * Write the fields of the subclass.
+	 *
+	 * @param entity
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void writeFields(T entity, DataOutput out) throws IOException {
+	}
+
+	/**
+	 * Read the fields written by {@link #writeFields(AbstractEntity, DataOutput)}.
+	 *
+	 * @param entity
+	 * @param in
+	 * @throws IOException
+	 */
+	protected void readFields(T entity, DataInput in) throws IOException {
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.badlogic.gdx.math.Vector2;
+import java.util.ArrayList;
+
+/**
+ * Resolves the collisions between {@link MovableEntity}s once per frame. The
+ * broad phase sorts the colliders along the x axis and sweeps over them so that
+ * only entities with overlapping x intervals are tested. Every overlapping pair
+ * is resolved once.
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public class CollisionSystem {
+
+	private final ArrayList<MovableEntity> colliders = new ArrayList<>(40);
+	private final Vector2 tmp = new Vector2();
+	private int pairs;
+
+	/**
+	 * Finds and resolves the colliding pairs of the registered movable
+	 * entities.
+	 *
+	 * @param registry
+	 */
+	public void update(EntityTypeRegistry registry) {
+		colliders.clear();
+		registry.forEach(MovableEntity.class, (MovableEntity entity) -> {
+			if (entity.isColiding() && !entity.shouldBeDisposed()) {
+				colliders.add(entity);
+			}
+		});
+		colliders.sort((MovableEntity a, MovableEntity b) -> Float.compare(a.getPosition().x, b.getPosition().x));
+
+		pairs = 0;
+		int size = colliders.size();
+		for (int i = 0; i < size; i++) {
+			MovableEntity a = colliders.get(i);
+			if (!a.hasPosition()) {
+				continue;//removed by a collision event
+			}
+			float reach = a.getPosition().x + a.colissionRadius;
+			for (int j = i + 1; j < size && a.hasPosition(); j++) {
+				MovableEntity b = colliders.get(j);
+				if (!b.hasPosition()) {
+					continue;
+				}
+				if (b.getPosition().x - b.colissionRadius >= reach) {
+					break;//sorted, no later entity can overlap
+				}
+				if ((a.isPushing() || b.isPushing()) && a.collidesWith(b)) {
+					pairs++;
+					if (a.isPushing()) {
+						a.resolveCollision(b, tmp);
+					} else {
+						b.resolveCollision(a, tmp);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the amount of colliding pairs in the last update
+	 */
+	public int getPairs() {
+		return pairs;
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.badlogic.gdx.utils.IntArray;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Stores the entities of the map densely. Removing swaps the last entity into
+ * the gap so the order is not kept. Removals are queued and applied by the map
+ * after the entities are updated. Additions are queued too while the entities
+ * are updated so that indices stay stable during an iteration.<br>
+ * Adding and removing is thread safe while changes are queued.<br>
+ * Every stored entity has a handle which can be kept instead of a reference.
+ * A handle of a removed entity does not resolve to a later entity.
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public class EntityStore {
+
+	/**
+	 * handle of entities which are not stored
+	 */
+	public static final long NO_HANDLE = -1;
+
+	private final ArrayList<AbstractEntity> entities = new ArrayList<>(40);
+	private final ArrayList<AbstractEntity> pendingAdd = new ArrayList<>(10);
+	private final ArrayList<AbstractEntity> pendingRemove = new ArrayList<>(10);
+	private boolean deferring;
+
+	/**
+	 * the entity of every handle slot
+	 */
+	private AbstractEntity[] slots = new AbstractEntity[40];
+	/**
+	 * counts the reuses of every handle slot
+	 */
+	private int[] generations = new int[40];
+	private final IntArray freeSlots = new IntArray(10);
+	private int usedSlots;
+
+	private final SpatialHash spatialHash;
+	private final EntityTypeRegistry typeRegistry;
+
+	/**
+	 *
+	 * @param spatialHash updated when an entity is added or removed
+	 * @param typeRegistry updated when an entity is added or removed
+	 */
+	public EntityStore(SpatialHash spatialHash, EntityTypeRegistry typeRegistry) {
+		this.spatialHash = spatialHash;
+		this.typeRegistry = typeRegistry;
+	}
+
+	/**
+	 * The stored entities. Do not modify the list.
+	 *
+	 * @return
+	 */
+	public ArrayList<AbstractEntity> getEntities() {
+		return entities;
+	}
+
+	/**
+	 * Adds an entity. Entities already stored are ignored.
+	 *
+	 * @param entity
+	 */
+	public synchronized void add(AbstractEntity entity) {
+		if (entity.handle == NO_HANDLE) {
+			entity.handle = allocateHandle(entity);
+		}
+		if (deferring) {
+			pendingAdd.add(entity);
+		} else {
+			insert(entity);
+		}
+	}
+
+	/**
+	 * Queues the removal of an entity until {@link #applyChanges()} is called.
+	 *
+	 * @param entity
+	 */
+	public synchronized void remove(AbstractEntity entity) {
+		pendingRemove.add(entity);
+	}
+
+	/**
+	 * Queues additions until {@link #applyChanges()} is called.
+	 */
+	public void defer() {
+		deferring = true;
+	}
+
+	/**
+	 * Applies the queued changes. Queued removals are only applied to entities
+	 * which are still not on the map. Stops queueing additions.
+	 */
+	public void applyChanges() {
+		deferring = false;
+		for (int i = 0; i < pendingRemove.size(); i++) {
+			AbstractEntity entity = pendingRemove.get(i);
+			if (!entity.hasPosition() || entity.shouldBeDisposed()) {
+				erase(entity);
+			}
+		}
+		pendingRemove.clear();
+		for (int i = 0; i < pendingAdd.size(); i++) {
+			AbstractEntity entity = pendingAdd.get(i);
+			if (entity.hasPosition() && !entity.shouldBeDisposed()) {
+				insert(entity);
+			} else if (entity.storeIndex < 0) {
+				freeHandle(entity);
+			}
+		}
+		pendingAdd.clear();
+	}
+
+	private void insert(AbstractEntity entity) {
+		if (entity.storeIndex >= 0) {
+			spatialHash.update(entity);
+			return;
+		}
+		if (entity.handle == NO_HANDLE) {
+			entity.handle = allocateHandle(entity);
+		}
+		entity.storeIndex = entities.size();
+		entities.add(entity);
+		spatialHash.update(entity);
+		typeRegistry.add(entity);
+	}
+
+	private void erase(AbstractEntity entity) {
+		int i = entity.storeIndex;
+		if (i < 0) {
+			return;
+		}
+		AbstractEntity last = entities.remove(entities.size() - 1);
+		if (last != entity) {
+			entities.set(i, last);
+			last.storeIndex = i;
+		}
+		entity.storeIndex = -1;
+		spatialHash.remove(entity);
+		typeRegistry.remove(entity);
+		freeHandle(entity);
+	}
+
+	/**
+	 * Removes every entity without disposing them.
+	 */
+	public void clear() {
+		for (AbstractEntity entity : entities) {
+			entity.storeIndex = -1;
+			entity.handle = NO_HANDLE;
+		}
+		for (AbstractEntity entity : pendingAdd) {
+			entity.handle = NO_HANDLE;
+		}
+		entities.clear();
+		pendingAdd.clear();
+		pendingRemove.clear();
+		spatialHash.clear();
+		typeRegistry.clear();
+		Arrays.fill(slots, null);
+		for (int i = 0; i < usedSlots; i++) {
+			generations[i]++;
+		}
+		freeSlots.clear();
+		usedSlots = 0;
+	}
+
+	private long allocateHandle(AbstractEntity entity) {
+		int slot;
+		if (freeSlots.size > 0) {
+			slot = freeSlots.pop();
+		} else {
+			slot = usedSlots++;
+			if (slot >= slots.length) {
+				slots = Arrays.copyOf(slots, slots.length * 2);
+				generations = Arrays.copyOf(generations, generations.length * 2);
+			}
+		}
+		slots[slot] = entity;
+		return ((long) generations[slot] << 32) | slot;
+	}
+
+	private void freeHandle(AbstractEntity entity) {
+		if (entity.handle != NO_HANDLE) {
+			int slot = (int) entity.handle;
+			if (slots[slot] == entity) {
+				slots[slot] = null;
+				generations[slot]++;
+				freeSlots.add(slot);
+			}
+			entity.handle = NO_HANDLE;
+		}
+	}
+
+	/**
+	 *
+	 * @param entity
+	 * @return {@link #NO_HANDLE} if not stored
+	 */
+	public static long getHandle(AbstractEntity entity) {
+		return entity.handle;
+	}
+
+	/**
+	 *
+	 * @param handle
+	 * @return null if the entity was removed
+	 */
+	public AbstractEntity get(long handle) {
+		if (handle == NO_HANDLE) {
+			return null;
+		}
+		int slot = (int) handle;
+		if (slot < 0 || slot >= usedSlots || generations[slot] != (int) (handle >>> 32)) {
+			return null;
+		}
+		return slots[slot];
+	}
+
+	/**
+	 *
+	 * @return amount of stored entities
+	 */
+	public int size() {
+		return entities.size();
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the entities of the map in one list per class so that queries by type
+ * only visit matching entities. Queries fill a collection of the caller or
+ * call a visitor, so no memory is allocated after the first query of a type.
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public class EntityTypeRegistry {
+
+	/**
+	 * the entities by their class
+	 */
+	private final HashMap<Class<?>, ArrayList<AbstractEntity>> byClass = new HashMap<>(20);
+	/**
+	 * the classes with entities which are instances of the queried type
+	 */
+	private final HashMap<Class<?>, ArrayList<ArrayList<AbstractEntity>>> byFilter = new HashMap<>(20);
+
+	/**
+	 *
+	 * @param entity
+	 */
+	public void add(AbstractEntity entity) {
+		ArrayList<AbstractEntity> list = byClass.get(entity.getClass());
+		if (list == null) {
+			list = new ArrayList<>(10);
+			byClass.put(entity.getClass(), list);
+			byFilter.clear();//a new class can match every cached filter
+		}
+		entity.typeIndex = list.size();
+		list.add(entity);
+	}
+
+	/**
+	 *
+	 * @param entity
+	 */
+	public void remove(AbstractEntity entity) {
+		ArrayList<AbstractEntity> list = byClass.get(entity.getClass());
+		int i = entity.typeIndex;
+		if (list != null && i >= 0 && i < list.size() && list.get(i) == entity) {
+			//swap with the last to avoid shifting
+			AbstractEntity last = list.remove(list.size() - 1);
+			if (last != entity) {
+				list.set(i, last);
+				last.typeIndex = i;
+			}
+		}
+		entity.typeIndex = -1;
+	}
+
+	/**
+	 * Removes every entity.
+	 */
+	public void clear() {
+		for (ArrayList<AbstractEntity> list : byClass.values()) {
+			for (AbstractEntity entity : list) {
+				entity.typeIndex = -1;
+			}
+		}
+		byClass.clear();
+		byFilter.clear();
+	}
+
+	/**
+	 * The lists of the classes which are instances of a type.
+	 *
+	 * @param filter
+	 * @return
+	 */
+	private ArrayList<ArrayList<AbstractEntity>> getLists(Class<?> filter) {
+		ArrayList<ArrayList<AbstractEntity>> lists = byFilter.get(filter);
+		if (lists == null) {
+			lists = new ArrayList<>(4);
+			for (java.util.Map.Entry<Class<?>, ArrayList<AbstractEntity>> entry : byClass.entrySet()) {
+				if (filter.isAssignableFrom(entry.getKey())) {
+					lists.add(entry.getValue());
+				}
+			}
+			byFilter.put(filter, lists);
+		}
+		return lists;
+	}
+
+	/**
+	 * Adds every entity with a position which is an instance of the filter.
+	 *
+	 * @param <T>
+	 * @param <C>
+	 * @param filter
+	 * @param result the found entities are added to this collection
+	 * @return the result
+	 */
+	@SuppressWarnings("unchecked")
+	public <T, C extends Collection<? super T>> C query(Class<T> filter, C result) {
+		ArrayList<ArrayList<AbstractEntity>> lists = getLists(filter);
+		for (int i = 0; i < lists.size(); i++) {
+			ArrayList<AbstractEntity> list = lists.get(i);
+			for (int j = 0; j < list.size(); j++) {
+				AbstractEntity entity = list.get(j);
+				if (entity.hasPosition()) {
+					result.add((T) entity);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calls the visitor for every entity with a position which is an instance
+	 * of the filter. Entities added by the visitor may be visited too.
+	 *
+	 * @param <T>
+	 * @param filter
+	 * @param visitor
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void forEach(Class<T> filter, Consumer<? super T> visitor) {
+		ArrayList<ArrayList<AbstractEntity>> lists = getLists(filter);
+		for (int i = 0; i < lists.size(); i++) {
+			ArrayList<AbstractEntity> list = lists.get(i);
+			for (int j = 0; j < list.size(); j++) {
+				AbstractEntity entity = list.get(j);
+				if (entity.hasPosition()) {
+					visitor.accept((T) entity);
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param filter
+	 * @return amount of entities with a position which are an instance of the filter
+	 */
+	public int count(Class<?> filter) {
+		int count = 0;
+		ArrayList<ArrayList<AbstractEntity>> lists = getLists(filter);
+		for (int i = 0; i < lists.size(); i++) {
+			ArrayList<AbstractEntity> list = lists.get(i);
+			for (int j = 0; j < list.size(); j++) {
+				if (list.get(j).hasPosition()) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
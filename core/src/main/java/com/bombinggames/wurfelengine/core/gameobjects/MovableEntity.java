@@ -264,7 +264,7 @@ public class MovableEntity extends AbstractEntity  {
 			if (collider && collidesWithWorld(newPos, colissionRadius)) {
 				//stop
 				setHorMovement(new Vector2());
-				MessageManager.getInstance().dispatchMessage(this, Events.collided.getId());
+				dispatchMessage(Events.collided.getId());
 			}
 
 			/*VERTICAL MOVEMENT*/
@@ -283,11 +283,8 @@ public class MovableEntity extends AbstractEntity  {
 				newPos = newPos.set(getPosition()).add(movement.cpy().scl(GAME_EDGELENGTH * t));
 			}
 			
-			//check collision with other entities
-			if (getMass() > 0.5f && collider) {
-				checkEntColl();
-			}
-			
+			//collisions with other entities are resolved by the CollisionSystem of the map
+
 			//apply movement
 			getPosition().set(newPos);
 
@@ -306,13 +303,13 @@ public class MovableEntity extends AbstractEntity  {
 
 				//set on ground level of block
 				//send event
-				MessageManager.getInstance().dispatchMessage(this, Events.collided.getId());
+				dispatchMessage(Events.collided.getId());
 				if (!hasPosition()) {
 					return;//object may be destroyed during colission event
 				}
 
 				if (!floating) {
-					MessageManager.getInstance().dispatchMessage(this, Events.landed.getId());
+					dispatchMessage(Events.landed.getId());
 					if (!hasPosition()) {
 						return;//object may be destroyed during colission
 					}
@@ -908,43 +905,61 @@ public class MovableEntity extends AbstractEntity  {
 	}
 
 	/**
-	 * checks the outgoing colissions with entities, O(n)
+	 * Checks if this entity pushes other entities away. Light entities are
+	 * only pushed.
+	 *
+	 * @return
+	 * @see CollisionSystem
+	 * @since v.1.9.2
 	 */
-	private void checkEntColl() {
-		Iterable<MovableEntity> nearbyEnts = getCollidingEntities(MovableEntity.class);
-		Vector2 colVec2 = new Vector2();
-		for (MovableEntity ent : nearbyEnts) {
-			if (ent.collider) {
-				Vector3 colVec3 = getPosition().sub(ent.getPosition());
-				colVec2.set(colVec3.x, colVec3.y);
-				float d = colVec2.len();
-
-				// minimum translation distance to push balls apart after intersecting
-				colVec2.scl(((colissionRadius + ent.colissionRadius) - d) / d);
-
-				// impact speed
-				float vn = getMovementHor().sub(ent.getMovementHor()).dot(colVec2.nor());
-
-				// sphere intersecting but moving away from each other already
-				if (vn <= 0.0f) {
-					// resolve intersection --
-					// inverse mass quantities
-					float im1 = 1 / getMass();
-					float im2 = 1 / ent.getMass();
-					// collision impulse
-					Vector2 impulse = colVec2.scl((-2*vn) / (im1 + im2));//the factor 2 is a hack because pushing is to little, you can walk through objects
+	public boolean isPushing() {
+		return collider && getMass() > 0.5f;
+	}
 
-					
-					impulse.scl(im1);
-					// change in momentum
-					//hack to prevent ultra fast speed, clamps
-					impulse.limit(20);
-					
-					addMovement(impulse);
-					ent.addMovement(impulse.scl(-im2));
+	/**
+	 * Pushes this entity and another colliding entity apart. Called once per
+	 * pair by the {@link CollisionSystem}.
+	 *
+	 * @param ent an entity which is a collider
+	 * @param colVec2 temporary vector
+	 */
+	void resolveCollision(MovableEntity ent, Vector2 colVec2) {
+		Point pos = getPosition();
+		Point otherPos = ent.getPosition();
+		colVec2.set(pos.x - otherPos.x, pos.y - otherPos.y);
+		float d = colVec2.len();
+		if (d == 0) {
+			return;//no direction
+		}
 
-					MessageManager.getInstance().dispatchMessage(this, Events.collided.getId());
-				}
+		// minimum translation distance to push balls apart after intersecting
+		colVec2.scl(((colissionRadius + ent.colissionRadius) - d) / d);
+
+		// impact speed
+		float vn = (movement.x - ent.movement.x) * colVec2.x + (movement.y - ent.movement.y) * colVec2.y;
+		vn /= colVec2.len();
+		colVec2.nor();
+
+		// sphere intersecting but moving away from each other already
+		if (vn <= 0.0f) {
+			// resolve intersection --
+			// inverse mass quantities
+			float im1 = 1 / getMass();
+			float im2 = 1 / ent.getMass();
+			// collision impulse
+			Vector2 impulse = colVec2.scl((-2*vn) / (im1 + im2));//the factor 2 is a hack because pushing is to little, you can walk through objects
+
+			impulse.scl(im1);
+			// change in momentum
+			//hack to prevent ultra fast speed, clamps
+			impulse.limit(20);
+
+			addMovement(impulse);
+			ent.addMovement(impulse.scl(-im2));
+
+			dispatchMessage(Events.collided.getId());
+			if (ent.isPushing()) {
+				ent.dispatchMessage(Events.collided.getId());
 			}
 		}
 	}
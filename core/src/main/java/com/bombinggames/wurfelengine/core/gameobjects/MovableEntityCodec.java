@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.Vector3;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Stores the fields of {@link MovableEntity}.
+ *
+ * @author Benedikt Vogler
+ * @param <T> the class of entities
+ * @since v.1.9.2
+ */
+public class MovableEntityCodec<T extends MovableEntity> extends BasicEntityCodec<T> {
+
+	/**
+	 *
+	 * @param factory creates an entity with default values, e.g. a constructor reference
+	 */
+	public MovableEntityCodec(Supplier<T> factory) {
+		super(factory);
+	}
+
+	@Override
+	protected void writeFields(T entity, DataOutput out) throws IOException {
+		Vector2 orientation = entity.getOrientation();
+		out.writeFloat(orientation.x);
+		out.writeFloat(orientation.y);
+		Vector3 movement = entity.getMovement();
+		out.writeFloat(movement.x);
+		out.writeFloat(movement.y);
+		out.writeFloat(movement.z);
+		out.writeFloat(entity.getFriction());
+		out.writeBoolean(entity.isFloating());
+		out.writeBoolean(entity.isColiding());
+	}
+
+	@Override
+	protected void readFields(T entity, DataInput in) throws IOException {
+		entity.setOrientation(new Vector2(in.readFloat(), in.readFloat()));
+		entity.setMovement(new Vector3(in.readFloat(), in.readFloat(), in.readFloat()));
+		entity.setFriction(in.readFloat());
+		entity.setFloating(in.readBoolean());
+		entity.setColiding(in.readBoolean());
+	}
+}
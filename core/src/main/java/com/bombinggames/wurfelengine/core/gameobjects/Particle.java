@@ -4,6 +4,8 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.Interpolation;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Pool;
+import com.bombinggames.wurfelengine.core.Controller;
+import com.bombinggames.wurfelengine.core.map.Map;
 
 /**
  *
@@ -175,10 +177,20 @@ public class Particle extends MovableEntity {
 
 	@Override
 	public void dispose() {
+		Map map = Controller.getMap();
+		if (map != null && map.isUpdatingInParallel()) {
+			map.disposeEntity(this);//removing the listeners is not thread safe
+			return;
+		}
 		super.dispose();
 		if (pool != null) {
 			pool.free(this);
 		}
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 }
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.badlogic.gdx.utils.LongMap;
+import com.bombinggames.wurfelengine.core.map.Point;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A uniform grid over the x and y axis which stores the entities by their
+ * position. Cells are as wide as a block so that a query only visits the
+ * entities near the queried area.<br>
+ * The map refreshes an entity after its update and when its position is set.
+ * Positions changed in place by other objects are noticed in the next refresh.
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public class SpatialHash {
+
+	/**
+	 * cell key of entities which are not in the grid
+	 */
+	static final long NOT_INDEXED = Long.MIN_VALUE;
+	/**
+	 * size of a cell in game space
+	 */
+	private static final int CELLSIZE = RenderCell.GAME_DIAGLENGTH;
+
+	private final LongMap<ArrayList<AbstractEntity>> cells = new LongMap<>(64);
+	private int size;
+
+	private static long getKey(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	private static int toCell(float pos) {
+		return Math.floorDiv((int) Math.floor(pos), CELLSIZE);
+	}
+
+	/**
+	 * Moves the entity to the cell of its position. Entities without position
+	 * are removed.
+	 *
+	 * @param entity
+	 */
+	public void update(AbstractEntity entity) {
+		Point pos = entity.getPosition();
+		if (pos == null || entity.shouldBeDisposed()) {
+			remove(entity);
+			return;
+		}
+		long key = getKey(toCell(pos.x), toCell(pos.y));
+		if (key != entity.spatialCell) {
+			remove(entity);
+			ArrayList<AbstractEntity> cell = cells.get(key);
+			if (cell == null) {
+				cell = new ArrayList<>(4);
+				cells.put(key, cell);
+			}
+			cell.add(entity);
+			entity.spatialCell = key;
+			size++;
+		}
+	}
+
+	/**
+	 *
+	 * @param entity
+	 */
+	public void remove(AbstractEntity entity) {
+		if (entity.spatialCell == NOT_INDEXED) {
+			return;
+		}
+		ArrayList<AbstractEntity> cell = cells.get(entity.spatialCell);
+		if (cell != null) {
+			int i = cell.indexOf(entity);
+			if (i >= 0) {
+				//swap with the last to avoid shifting
+				int last = cell.size() - 1;
+				cell.set(i, cell.get(last));
+				cell.remove(last);
+				size--;
+				if (cell.isEmpty()) {
+					cells.remove(entity.spatialCell);
+				}
+			}
+		}
+		entity.spatialCell = NOT_INDEXED;
+	}
+
+	/**
+	 * Removes every entity.
+	 */
+	public void clear() {
+		for (ArrayList<AbstractEntity> cell : cells.values()) {
+			for (AbstractEntity entity : cell) {
+				entity.spatialCell = NOT_INDEXED;
+			}
+		}
+		cells.clear();
+		size = 0;
+	}
+
+	/**
+	 *
+	 * @return amount of entities in the grid
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds the entities inside an axis aligned box. The borders are included.
+	 *
+	 * @param <T>
+	 * @param minX
+	 * @param minY
+	 * @param minZ
+	 * @param maxX
+	 * @param maxY
+	 * @param maxZ
+	 * @param filter only instances of this class are added
+	 * @param result the found entities are added to this collection
+	 * @return the result
+	 */
+	public <T, C extends Collection<? super T>> C query(
+		float minX, float minY, float minZ,
+		float maxX, float maxY, float maxZ,
+		Class<T> filter,
+		C result
+	) {
+		int left = toCell(minX);
+		int right = toCell(maxX);
+		int top = toCell(minY);
+		int bottom = toCell(maxY);
+		if ((long) (right - left + 1) * (bottom - top + 1) > cells.size) {
+			//fewer occupied cells than cells in the area
+			for (ArrayList<AbstractEntity> cell : cells.values()) {
+				addInBox(cell, minX, minY, minZ, maxX, maxY, maxZ, filter, result);
+			}
+		} else {
+			for (int x = left; x <= right; x++) {
+				for (int y = top; y <= bottom; y++) {
+					ArrayList<AbstractEntity> cell = cells.get(getKey(x, y));
+					if (cell != null) {
+						addInBox(cell, minX, minY, minZ, maxX, maxY, maxZ, filter, result);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> void addInBox(
+		ArrayList<AbstractEntity> cell,
+		float minX, float minY, float minZ,
+		float maxX, float maxY, float maxZ,
+		Class<T> filter,
+		Collection<? super T> result
+	) {
+		for (int i = 0; i < cell.size(); i++) {
+			AbstractEntity entity = cell.get(i);
+			Point pos = entity.getPosition();
+			if (pos != null
+				&& pos.x >= minX && pos.x <= maxX
+				&& pos.y >= minY && pos.y <= maxY
+				&& pos.z >= minZ && pos.z <= maxZ
+				&& filter.isInstance(entity)
+			) {
+				result.add((T) entity);
+			}
+		}
+	}
+
+	/**
+	 * Finds the entities inside a sphere.
+	 *
+	 * @param <T>
+	 * @param center
+	 * @param radius
+	 * @param filter only instances of this class are added
+	 * @param result the found entities are added to this collection
+	 * @return the result
+	 */
+	public <T, C extends Collection<? super T>> C queryRadius(Point center, float radius, Class<T> filter, C result) {
+		int left = toCell(center.x - radius);
+		int right = toCell(center.x + radius);
+		int top = toCell(center.y - radius);
+		int bottom = toCell(center.y + radius);
+		if ((long) (right - left + 1) * (bottom - top + 1) > cells.size) {
+			for (ArrayList<AbstractEntity> cell : cells.values()) {
+				addInSphere(cell, center, radius * radius, filter, result);
+			}
+		} else {
+			for (int x = left; x <= right; x++) {
+				for (int y = top; y <= bottom; y++) {
+					ArrayList<AbstractEntity> cell = cells.get(getKey(x, y));
+					if (cell != null) {
+						addInSphere(cell, center, radius * radius, filter, result);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> void addInSphere(
+		ArrayList<AbstractEntity> cell,
+		Point center,
+		float radiusSquared,
+		Class<T> filter,
+		Collection<? super T> result
+	) {
+		for (int i = 0; i < cell.size(); i++) {
+			AbstractEntity entity = cell.get(i);
+			Point pos = entity.getPosition();
+			if (pos != null
+				&& pos.dst2(center) <= radiusSquared
+				&& filter.isInstance(entity)
+			) {
+				result.add((T) entity);
+			}
+		}
+	}
+}
@@ -33,9 +33,7 @@ package com.bombinggames.wurfelengine.core.lightengine;
 import com.bombinggames.wurfelengine.core.map.Chunk;
 import com.bombinggames.wurfelengine.core.map.Coordinate;
 import com.bombinggames.wurfelengine.core.map.BlockConfig;
-import com.bombinggames.wurfelengine.core.map.Iterators.DataIterator3D;
 import com.bombinggames.wurfelengine.core.map.Map;
-import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderStorage;
 
@@ -48,151 +46,205 @@ public class AmbientOcclusionCalculator {
 	/**
 	 * calcualtes the ambient occlusion for a chunk.
 	 *
-	 * @param rS the renderStorage where this calculation is performed
+	 * @param rS the renderStorage where this calculation is performed. If null
+	 * only cells of the chunk are read, so the cells at the border must be
+	 * calculated again when the chunk is in a render storage.
 	 * @param chunk
 	 */
 	public static void calcAO(RenderStorage rS, RenderChunk chunk) {
 		if (chunk==null) throw new IllegalArgumentException("Chunk can not be null.");
 		//iterate over every block in chunk
 		Coordinate coord = new Coordinate(0, 0, 0);
-		DataIterator3D<RenderCell> iterator = chunk.getIterator(0, Chunk.getBlocksZ() - 1);
 		BlockConfig config = Map.getBlockConfig();
 		
 		//Algorithm runs similar to marching cubes, could be optimized to cache neighbor row at the side and below todo
-		while (iterator.hasNext()) {
-			RenderCell next = iterator.next();
-			//skip air and blocks without sides
-			if (next.hasSides()) {
-				//analyze top side
-				coord = coord.set(
-					chunk.getTopLeftCoordinateX() + iterator.getCurrentIndex()[0],
-					chunk.getTopLeftCoordinateY() + iterator.getCurrentIndex()[1],
-					iterator.getCurrentIndex()[2] + 1
-				);
-
-				int aoFlags = 0;
-				//first check 0,2,4,6 then check 1,3,5,7
-				for (int side = 0; side < 9; side += 2) {//first round even sides
-					//second round odd sides
-					if (side == 8) {
-						side = 1;
-					}
-					RenderCell neighBlock = coord.goToNeighbour(side).getRenderCell(rS);
-					byte neighborId = neighBlock.getSpriteId();
-					byte neighborValue = neighBlock.getSpriteValue();
-					if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-						aoFlags |= 1 << (side + 8);
-						//don't double draw the sides in between
-						if (side % 2 == 1) {
-							aoFlags &= ~(1 << (((side + 1) % 8) + 8));//set next to false
-							aoFlags &= ~(1 << (((side + 7) % 8) + 8));//Set previous to false
-						}
-					} else {
-						aoFlags &= ~(1 << (side + 8));
-					}
-					coord.goToNeighbour((side+4) % 8);//go back to center
+		for (int x = 0; x < Chunk.getBlocksX(); x++) {
+			for (int y = 0; y < Chunk.getBlocksY(); y++) {
+				for (int z = 0; z < Chunk.getBlocksZ(); z++) {
+					calcAO(rS, chunk, x, y, z, coord, config);
 				}
-				
-				//analyze right side of block, side id 2
-				//check right half, which is equivalent to top right at pos 1
-				coord = coord.set(
-					chunk.getTopLeftCoordinateX() + iterator.getCurrentIndex()[0],
-					chunk.getTopLeftCoordinateY() + iterator.getCurrentIndex()[1],
-					iterator.getCurrentIndex()[2]
-				);//get current coordinate
+			}
+		}
+	}
+	
+	/**
+	 * calculates the ambient occlusion for a single cell.
+	 *
+	 * @param rS the renderStorage where this calculation is performed
+	 * @param chunk the chunk containing the cell
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @since v.1.9.2
+	 */
+	public static void calcAO(RenderStorage rS, RenderChunk chunk, int x, int y, int z) {
+		calcAO(rS, chunk, x, y, z, new Coordinate(), Map.getBlockConfig());
+	}
+	
+	/**
+	 *
+	 * @param rS
+	 * @param chunk the chunk containing the cell, neighbours are read from it if rS is null
+	 * @param xIndex index of the cell
+	 * @param yIndex index of the cell
+	 * @param zIndex index of the cell
+	 * @param coord temporary object, gets altered
+	 * @param config
+	 */
+	private static void calcAO(RenderStorage rS, RenderChunk chunk, int xIndex, int yIndex, int zIndex, Coordinate coord, BlockConfig config) {
+		byte id = chunk.getSpriteId(xIndex, yIndex, zIndex);
+		//skip air and blocks without sides
+		if (id != 0 && config.hasSides(id, chunk.getSpriteValue(xIndex, yIndex, zIndex))) {
+			int x = chunk.getTopLeftCoordinateX() + xIndex;
+			int y = chunk.getTopLeftCoordinateY() + yIndex;
+			int z = zIndex;
+			//analyze top side
+			coord = coord.set(x, y, z + 1);
 
-				//left side, side 0
-				//right corner
-				RenderCell neighBlock = coord.add(0, 2, -1).getRenderCell(rS);
-				byte neighborId = neighBlock.getSpriteId();
-				byte neighborValue = neighBlock.getSpriteValue();
-				if (!config.isTransparent(neighborId, neighborValue)&& config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 3;//first byte position 3
+			int aoFlags = 0;
+			//first check 0,2,4,6 then check 1,3,5,7
+			for (int side = 0; side < 9; side += 2) {//first round even sides
+				//second round odd sides
+				if (side == 8) {
+					side = 1;
 				}
-				coord.add(0, -2, 1);//revert
-
-				//check bottom left
-				neighBlock = coord.add(-1, 0, -1).getRenderCell(rS);
-				neighborId = neighBlock.getSpriteId();
-				neighborValue = neighBlock.getSpriteValue();
+				int neighBlock = getCell(rS, chunk, coord.goToNeighbour(side));
+				byte neighborId = (byte) neighBlock;
+				byte neighborValue = (byte) (neighBlock >> 8);
 				if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 5;//first byte position 5
+					aoFlags |= 1 << (side + 8);
+					//don't double draw the sides in between
+					if (side % 2 == 1) {
+						aoFlags &= ~(1 << (((side + 1) % 8) + 8));//set next to false
+						aoFlags &= ~(1 << (((side + 7) % 8) + 8));//Set previous to false
+					}
+				} else {
+					aoFlags &= ~(1 << (side + 8));
 				}
-				coord.add(1, 0, 1);
+				coord.goToNeighbour((side+4) % 8);//go back to center
+			}
+			
+			//analyze right side of block, side id 2
+			//check right half, which is equivalent to top right at pos 1
+			coord = coord.set(x, y, z);//get current coordinate
 
-				//check left half, which is equivalent to top right at pos 7
-				neighBlock = coord.add(-1, 0, 0).getRenderCell(rS);//go to left
-				neighborId = neighBlock.getSpriteId();
-				neighborValue = neighBlock.getSpriteValue();
-				if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 6;//first byte position 6
-					aoFlags &= ~(1 << 5);//set next to false
-					aoFlags &= ~(1 << 7);//Set previous to false
-				}
-				coord.add(1, 0, 0);//revert
+			//left side, side 0
+			//right corner
+			int neighBlock = getCell(rS, chunk, coord.add(0, 2, -1));
+			byte neighborId = (byte) neighBlock;
+			byte neighborValue = (byte) (neighBlock >> 8);
+			if (!config.isTransparent(neighborId, neighborValue)&& config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 3;//first byte position 3
+			}
+			coord.add(0, -2, 1);//revert
 
-				//check bottom side, which is equivalent ot top right at pos 5
-				neighBlock = coord.add(0, 0, -1).goToNeighbour(5).getRenderCell(rS);//revert changes and go to neighbor
-				neighborId = neighBlock.getSpriteId();
-				neighborValue = neighBlock.getSpriteValue();
-				if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 4;//first byte position 4
-					aoFlags &= ~(1 << 5);//set next to false
-					aoFlags &= ~(1 << 3);//Set previous to false
-				}
-				coord.goToNeighbour(1).add(0, 0, 1);//revert
+			//check bottom left
+			neighBlock = getCell(rS, chunk, coord.add(-1, 0, -1));
+			neighborId = (byte) neighBlock;
+			neighborValue = (byte) (neighBlock >> 8);
+			if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 5;//first byte position 5
+			}
+			coord.add(1, 0, 1);
 
-				//right side, side 2
-				//check bottom left
-				neighBlock =coord.add(1, 0, -1).getRenderCell(rS);
-				neighborId = neighBlock.getSpriteId();
-				neighborValue = neighBlock.getSpriteValue();
-				if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 19;//third byte position 3
-				}
-				coord.add(-1, 0, 1);
+			//check left half, which is equivalent to top right at pos 7
+			neighBlock = getCell(rS, chunk, coord.add(-1, 0, 0));//go to left
+			neighborId = (byte) neighBlock;
+			neighborValue = (byte) (neighBlock >> 8);
+			if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 6;//first byte position 6
+				aoFlags &= ~(1 << 5);//set next to false
+				aoFlags &= ~(1 << 7);//Set previous to false
+			}
+			coord.add(1, 0, 0);//revert
 
-				//check left corner
-				neighBlock = coord.add(0, 2, -1).getRenderCell(rS);//revert changes and go to neighbor
-				neighborId = neighBlock.getSpriteId();
-				neighborValue = neighBlock.getSpriteValue();
-				if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 21;//third byte position 5
-				}
-				coord.add(0, -2, 1);
+			//check bottom side, which is equivalent ot top right at pos 5
+			neighBlock = getCell(rS, chunk, coord.add(0, 0, -1).goToNeighbour(5));//revert changes and go to neighbor
+			neighborId = (byte) neighBlock;
+			neighborValue = (byte) (neighBlock >> 8);
+			if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 4;//first byte position 4
+				aoFlags &= ~(1 << 5);//set next to false
+				aoFlags &= ~(1 << 3);//Set previous to false
+			}
+			coord.goToNeighbour(1).add(0, 0, 1);//revert
 
-				//right
-				neighBlock = coord.add(1, 0, 0).getRenderCell(rS);
-				neighborId = neighBlock.getSpriteId();
-				neighborValue = neighBlock.getSpriteValue();
-				if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 18;//third byte position 2
-					aoFlags &= ~(1 << 17);//set next to false
-					aoFlags &= ~(1 << 19);//Set previous to false
-				}
-				coord.add(-1, 0, 0);
+			//right side, side 2
+			//check bottom left
+			neighBlock =getCell(rS, chunk, coord.add(1, 0, -1));
+			neighborId = (byte) neighBlock;
+			neighborValue = (byte) (neighBlock >> 8);
+			if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 19;//third byte position 3
+			}
+			coord.add(-1, 0, 1);
 
-				//check bottom side, which is equivalent to top right at pos 3
-				neighBlock = coord.add(0, 0, -1).goToNeighbour(3).getRenderCell(rS);//revert changes and go to neighbor
-				neighborId = neighBlock.getSpriteId();
-				neighborValue = neighBlock.getSpriteValue();
-				if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 20;//third byte position 4
-					aoFlags &= ~(1 << 21);//set next to false
-					aoFlags &= ~(1 << 19);//Set previous to false
-				}
-				coord.goToNeighbour(7).add(0, 0, 1);
+			//check left corner
+			neighBlock = getCell(rS, chunk, coord.add(0, 2, -1));//revert changes and go to neighbor
+			neighborId = (byte) neighBlock;
+			neighborValue = (byte) (neighBlock >> 8);
+			if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 21;//third byte position 5
+			}
+			coord.add(0, -2, 1);
 
-				neighBlock = coord.add(0, 2, 0).getRenderCell(rS);//revert changes and go to neighbor
-				neighborId = neighBlock.getSpriteId();
-				neighborValue = neighBlock.getSpriteValue();
-				if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
-					aoFlags |= 1 << 2;//first byte position 2
-					aoFlags |= 1 << 22;//third byte position 6
-				}
-				next.setAoFlags(aoFlags);
+			//right
+			neighBlock = getCell(rS, chunk, coord.add(1, 0, 0));
+			neighborId = (byte) neighBlock;
+			neighborValue = (byte) (neighBlock >> 8);
+			if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 18;//third byte position 2
+				aoFlags &= ~(1 << 17);//set next to false
+				aoFlags &= ~(1 << 19);//Set previous to false
 			}
+			coord.add(-1, 0, 0);
+
+			//check bottom side, which is equivalent to top right at pos 3
+			neighBlock = getCell(rS, chunk, coord.add(0, 0, -1).goToNeighbour(3));//revert changes and go to neighbor
+			neighborId = (byte) neighBlock;
+			neighborValue = (byte) (neighBlock >> 8);
+			if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 20;//third byte position 4
+				aoFlags &= ~(1 << 21);//set next to false
+				aoFlags &= ~(1 << 19);//Set previous to false
+			}
+			coord.goToNeighbour(7).add(0, 0, 1);
+
+			neighBlock = getCell(rS, chunk, coord.add(0, 2, 0));//revert changes and go to neighbor
+			neighborId = (byte) neighBlock;
+			neighborValue = (byte) (neighBlock >> 8);
+			if (neighborId != 0 && !config.isTransparent(neighborId, neighborValue) && config.hasSides(neighborId, neighborValue)) {
+				aoFlags |= 1 << 2;//first byte position 2
+				aoFlags |= 1 << 22;//third byte position 6
+			}
+			chunk.setAOFlags(xIndex, yIndex, zIndex, aoFlags);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param rS if null reads from the chunk
+	 * @param chunk
+	 * @param coord
+	 * @return sprite id in the first byte, sprite value in the second byte.
+	 * Cells which are not loaded are air.
+	 */
+	private static int getCell(RenderStorage rS, RenderChunk chunk, Coordinate coord) {
+		if (coord.getZ() < 0 || coord.getZ() >= Chunk.getBlocksZ()) {
+			return 0;
+		}
+		if (rS != null) {
+			chunk = rS.getChunk(coord);
+			if (chunk == null) {
+				return 0;
+			}
+		}
+		int x = coord.getX() - chunk.getTopLeftCoordinateX();
+		int y = coord.getY() - chunk.getTopLeftCoordinateY();
+		if (x < 0 || y < 0 || x >= Chunk.getBlocksX() || y >= Chunk.getBlocksY()) {
+			return 0;
 		}
+		return (chunk.getSpriteId(x, y, coord.getZ()) & 255) | (chunk.getSpriteValue(x, y, coord.getZ()) & 255) << 8;
 	}
 
 }
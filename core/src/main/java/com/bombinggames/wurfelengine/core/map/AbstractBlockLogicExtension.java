@@ -12,7 +12,10 @@ import java.util.logging.Logger;
  * changes it will be removed via
  * {@link  com.bombinggames.wurfelengine.core.map.Map}. Check if is about to be
  * removed via {@link #isValid() }.<br> If you want to save information in the
- * save file you have to use and spawn an {@link com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity}.
+ * save file you have to use and spawn an {@link com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity}.<br>
+ * By default {@link #update(float)} is called every frame. Logic blocks which
+ * only act occasionally should use {@link #scheduleUpdate(float)} or
+ * {@link #sleep()} so that the chunk skips them until they are due.
  *
  * @author Benedikt Vogler
  */
@@ -20,6 +23,10 @@ public abstract class AbstractBlockLogicExtension {
 
 	private static final long serialVersionUID = 2L;
 	private static final HashMap<Byte, Class<? extends AbstractBlockLogicExtension>> LOGICREGISTER = new HashMap<>(20);
+	/**
+	 * update states
+	 */
+	static final int TICKING = 0, SCHEDULED = 1, SLEEPING = 2, REMOVED = 3;
 
 	/**
 	 * Register a block id with a logic block class.
@@ -71,6 +78,30 @@ public abstract class AbstractBlockLogicExtension {
 	 * Is only used for validity check.
 	 */
 	private byte id;
+	/**
+	 * the chunk which updates this logic block, null if not added yet
+	 */
+	Chunk chunk;
+	/**
+	 * how the chunk updates this logic block
+	 */
+	int state = TICKING;
+	/**
+	 * requested delay of a scheduled update in ms
+	 */
+	float delay;
+	/**
+	 * game time of the chunk when the scheduled update is due
+	 */
+	double dueTime;
+	/**
+	 * game time of the chunk of the last update
+	 */
+	double lastUpdate;
+	/**
+	 * true if in the ticking list or in the queue of the chunk
+	 */
+	boolean inTickingList, queued;
 
 	/**
 	 * Called when spawned. Should not access the map because during map
@@ -102,10 +133,82 @@ public abstract class AbstractBlockLogicExtension {
 
 	/**
 	 *
-	 * @param dt time in ms
+	 * @param dt time in ms since the last update of this logic block
 	 */
 	public abstract void update(float dt);
 
+	/**
+	 * Calls {@link #update(float)} every frame. This is the default.
+	 *
+	 * @since v.1.9.2
+	 */
+	public void updateEveryFrame() {
+		setState(TICKING);
+	}
+
+	/**
+	 * Calls {@link #update(float)} once after a delay instead of every frame.
+	 * Replaces a previously scheduled update. After the update the logic block
+	 * sleeps unless it schedules again.
+	 *
+	 * @param delay game time in ms, 0 updates in the next frame
+	 * @since v.1.9.2
+	 */
+	public void scheduleUpdate(float delay) {
+		this.delay = delay;
+		setState(SCHEDULED);
+	}
+
+	/**
+	 * Stops updates until {@link #scheduleUpdate(float)} is called or a
+	 * neighbour changes.
+	 *
+	 * @since v.1.9.2
+	 */
+	public void sleep() {
+		setState(SLEEPING);
+	}
+
+	/**
+	 * Updates a logic block which does not tick every frame in the next frame.
+	 *
+	 * @since v.1.9.2
+	 */
+	public void wakeUp() {
+		if (state != TICKING) {
+			scheduleUpdate(0);
+		}
+	}
+
+	/**
+	 *
+	 * @return true if neither updated every frame nor scheduled
+	 * @since v.1.9.2
+	 */
+	public boolean isSleeping() {
+		return state == SLEEPING;
+	}
+
+	/**
+	 * Called when a block next to this one was set or its value changed. Wakes
+	 * up this logic block by default.
+	 *
+	 * @param neighbour the changed cell
+	 * @since v.1.9.2
+	 */
+	public void onNeighbourChanged(Coordinate neighbour) {
+		wakeUp();
+	}
+
+	private void setState(int state) {
+		if (this.state != REMOVED) {
+			this.state = state;
+			if (chunk != null) {
+				chunk.scheduleLogic(this);
+			}
+		}
+	}
+
 	/**
 	 * called when removed
 	 */
@@ -35,21 +35,37 @@ import com.badlogic.gdx.ai.msg.MessageManager;
 import com.badlogic.gdx.ai.msg.Telegram;
 import com.badlogic.gdx.ai.msg.Telegraph;
 import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.IntSet;
 import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.Events;
+import com.bombinggames.wurfelengine.core.cvar.CVarSystemMap;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
+import com.bombinggames.wurfelengine.core.gameobjects.EntityCodec;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderStorage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.PriorityQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,6 +76,10 @@ import java.util.logging.Logger;
 public class Chunk implements Telegraph {
     /**The suffix of a chunk files.*/
     protected static final String CHUNKFILESUFFIX = "wec";
+	/**
+	 * buffer for reading chunk files, one per loading thread
+	 */
+	private static final ThreadLocal<ByteBuffer> READBUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(1 << 14));
 
 	/**
 	 * dimensions of the chunk in X
@@ -78,9 +98,19 @@ public class Chunk implements Telegraph {
 	 * special signs for the save file
 	 */
 	private final static char SIGN_ENTITIES = '|';//124 OR 0x7c
-	private final static char SIGN_COMMAND = '~';//126 OR 0x7e
-	private final static char SIGN_EMTPYLAYER = 'e';//only valid after a command sign
-	private final static char SIGN_ENDBLOCKS = 'b';//only valid after a command sign
+	final static char SIGN_COMMAND = '~';//126 OR 0x7e
+	final static char SIGN_EMTPYLAYER = 'e';//only valid after a command sign
+	final static char SIGN_ENDBLOCKS = 'b';//only valid after a command sign
+	final static char SIGN_CODEC = 'c';//only valid at the start of the file, followed by the codec id
+	/**
+	 * how an entity in the entity block is stored
+	 */
+	private final static byte ENTITYFORMAT_CODEC = 0;
+	/**
+	 * upper limit of entities in a chunk file
+	 */
+	private final static int MAXENTITIES = 10000;
+	private final static byte ENTITYFORMAT_SERIALIZED = 1;
 
 	/**
 	 * The amount of blocks in X direction
@@ -155,18 +185,79 @@ public class Chunk implements Telegraph {
 	private final int chunkX, chunkY;
 	
 	/**
-	 * the ids are stored here. A block is defined by three fields. In the last dimension first is id, second value, third is health.
+	 * the ids are stored here in one flat array. A block is defined by three
+	 * consecutive fields. First is id, second value, third is damage. The
+	 * position of a cell is calculated with {@link #getIndex(int, int, int)}.
+	 * Cells with the same x and y are next to each other.
+	 */
+    private byte[] data;
+	/**
+	 * true if {@link #data} is used by a {@link Snapshot} and must be copied before it is changed
 	 */
-    private final byte data[][][];
+	private boolean shared;
 	
 	/**
-	 * A list containing the logic blocks to be updated. Each logic block object points to some block inside this chunk.
+	 * The logic blocks of this chunk by cell index. Each logic block object points to some block inside this chunk.
+	 */
+	private final IntMap<AbstractBlockLogicExtension> logicBlocks = new IntMap<>(4);
+	/**
+	 * logic blocks which are updated every frame
+	 */
+	private final ArrayList<AbstractBlockLogicExtension> tickingLogic = new ArrayList<>(4);
+	/**
+	 * logic blocks waiting for a wake-up, the earliest first
+	 */
+	private final PriorityQueue<AbstractBlockLogicExtension> scheduledLogic = new PriorityQueue<>(
+		4,
+		(AbstractBlockLogicExtension a, AbstractBlockLogicExtension b) -> Double.compare(a.dueTime, b.dueTime)
+	);
+	/**
+	 * temporary list of scheduled logic blocks which are due in this frame
 	 */
-	private final ArrayList<AbstractBlockLogicExtension> logicBlocks = new ArrayList<>(4);
+	private final ArrayList<AbstractBlockLogicExtension> dueLogic = new ArrayList<>(4);
+	/**
+	 * game time in ms this chunk was updated
+	 */
+	private double time;
+	/**
+	 * cell indices of blocks with registered logic which are not instantiated
+	 * yet, a set so that repeated changes of a cell are queued only once
+	 * @see #activateLogic() 
+	 */
+	private final IntSet pendingLogic = new IntSet(4);
+	/**
+	 * if false pending logic blocks are not instantiated
+	 */
+	private boolean active = true;
 	/**
 	 * keeps track of a change in this frame
 	 */
 	private boolean modified;
+	/**
+	 * true if the blocks differ from the file on storage
+	 */
+	private volatile boolean unsaved;
+	/**
+	 * the save slot the blocks were last loaded from or saved to, -1 if none
+	 */
+	private volatile int savedSlot = -1;
+	/**
+	 * the frame when this chunk was last used, for evicting the least recently used chunks
+	 */
+	private long lastUsed;
+	/**
+	 * if more cells are changed the whole chunk is saved instead of a delta
+	 */
+	private final static int MAXDELTAS = 512;
+	/**
+	 * position in {@link #data} of the cells changed since the last snapshot
+	 */
+	private final IntArray changedCells = new IntArray(false, 16);
+	/**
+	 * true if storage contains the state of the last snapshot, so that only the
+	 * changed cells must be saved
+	 */
+	private volatile boolean journalBase;
 
 	/**
 	 * contains the entities on this chunk
@@ -188,33 +279,63 @@ public class Chunk implements Telegraph {
 	 * @param coordY
      */
     public Chunk(final Map map, final int coordX, final int coordY) {
+		this(coordX, coordY, map.getCVars());
+    }
+
+	/**
+	 * Creates a chunk filled with empty cells which does not belong to a map.
+	 * The chunk dimensions of the last created chunk are used.
+	 *
+	 * @param coordX
+	 * @param coordY
+	 * @since v.1.9.2
+	 */
+	public Chunk(final int coordX, final int coordY) {
+		this(coordX, coordY, null);
+	}
+
+	/**
+	 *
+	 * @param coordX
+	 * @param coordY
+	 * @param mapCVars sets the chunk dimensions if not null
+	 */
+	private Chunk(final int coordX, final int coordY, final CVarSystemMap mapCVars) {
         this.chunkX = coordX;
 		this.chunkY = coordY;
 
 		//set chunk dimensions
-		blocksX = map.getCVars().getValueI("chunkBlocksX");
-		blocksY = map.getCVars().getValueI("chunkBlocksY");
-		blocksZ = map.getCVars().getValueI("chunkBlocksZ");
+		if (mapCVars != null) {
+			blocksX = mapCVars.getValueI("chunkBlocksX");
+			blocksY = mapCVars.getValueI("chunkBlocksY");
+			blocksZ = mapCVars.getValueI("chunkBlocksZ");
+		}
 
 		topleftX = coordX*blocksX;
 		topleftY = coordY*blocksY;
-		data = new byte[blocksX][blocksY][blocksZ*3];
+		data = new byte[blocksX * blocksY * blocksZ * 3];
 
-       for (int x = 0; x < blocksX; x++) {
-			for (int y = 0; y < blocksY; y++) {
-				for (int z = 0; z < blocksZ*3; z++) {
-					if (z % 3 == 2) {//every third is health
-						data[x][y][z] = 100;
-					} else {
-						data[x][y][z] = 0;
-					}
-				}
-			}
+		for (int i = 2; i < data.length; i += 3) {
+			data[i] = 100;//every third is health
 		}
 		
 		modified = true;
+		unsaved = true;
     }
 
+	/**
+	 * Get the position of a cell in the flat data array. The value and the
+	 * damage follow at the next two positions.
+	 *
+	 * @param x index pos
+	 * @param y index pos
+	 * @param z index pos
+	 * @return position of the id
+	 */
+	private static int getIndex(int x, int y, int z) {
+		return ((x * blocksY + y) * blocksZ + z) * 3;
+	}
+
 	/**
 	 * Creates a chunk by trying to load and if this fails it generates a new
 	 * one.
@@ -228,7 +349,7 @@ public class Chunk implements Telegraph {
 	public Chunk(final Map map, final File path, final int coordX, final int coordY, final Generator generator) {
 		this(map, coordX, coordY);
 		if (path != null && WE.getCVars().getValueB("shouldLoadMap")) {
-			if (!load(path, map.getCurrentSaveSlot(), coordX, coordY)) {
+			if (!load(path, map.getCurrentSaveSlot(), coordX, coordY, map.usesRegionFiles())) {
 				fill(generator);
 			}
 		} else {
@@ -236,6 +357,44 @@ public class Chunk implements Telegraph {
 		}
 	}
 
+	/**
+	 * Reads a chunk from storage without changing the files. A chunk missing
+	 * in the save slot is not restored from the map root or generated.
+	 *
+	 * @param map
+	 * @param path the map directory
+	 * @param saveSlot
+	 * @param coordX the chunk coordinate
+	 * @param coordY the chunk coordinate
+	 * @param regionFile true if the chunk is stored in a {@link RegionFile}
+	 * @param fromRoot true if the chunk is read from the map root instead of
+	 * the save slot
+	 * @return null if the chunk is not on storage
+	 * @throws IOException if the chunk could not be read
+	 */
+	static Chunk readFromStorage(final Map map, final File path, int saveSlot, final int coordX, final int coordY, boolean regionFile, boolean fromRoot) throws IOException {
+		File directory = fromRoot ? path : new File(path, "save" + saveSlot);
+		Chunk chunk = new Chunk(map, coordX, coordY);
+		if (regionFile) {
+			RegionFile region = RegionFile.getIfExists(directory, coordX, coordY);
+			byte[] chunkData = region == null ? null : region.read(coordX, coordY);
+			if (chunkData == null) {
+				return null;
+			}
+			chunk.load(ByteBuffer.wrap(chunkData), path, region.getDeltas(coordX, coordY));
+		} else {
+			File file = new File(directory, "chunk" + coordX + "," + coordY + "." + CHUNKFILESUFFIX);
+			if (!file.isFile()) {
+				return null;
+			}
+			chunk.load(readFile(file), path, null);
+		}
+		if (!fromRoot) {
+			chunk.savedSlot = saveSlot;
+		}
+		return chunk;
+	}
+
 	/**
 	 * Updates the chunk. should be called once per frame.
 	 *
@@ -243,21 +402,255 @@ public class Chunk implements Telegraph {
 	 */
 	public void update(float dt) {
 		processModification();
+		time += dt;
+
+		if (active && pendingLogic.size > 0) {
+			activateLogic();
+		}
+		if (tickingLogic.isEmpty()
+			&& (scheduledLogic.isEmpty() || scheduledLogic.peek().dueTime > time)
+		) {
+			return;//sleeping
+		}
 
-		//update logicblocks
-		for (AbstractBlockLogicExtension logicBlock : logicBlocks) {
-			if (logicBlock.isValid()) {
-				logicBlock.update(dt);
+		//update logicblocks which tick every frame, logic blocks which left the list are removed
+		int size = tickingLogic.size();
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			AbstractBlockLogicExtension logicBlock = tickingLogic.get(i);
+			if (logicBlock.state == AbstractBlockLogicExtension.TICKING) {
+				updateLogic(logicBlock, dt);
 			}
+			if (logicBlock.state == AbstractBlockLogicExtension.TICKING) {
+				tickingLogic.set(kept++, logicBlock);
+			} else {
+				logicBlock.inTickingList = false;
+			}
+		}
+		//keep logic blocks added during the iteration
+		for (int i = size; i < tickingLogic.size(); i++) {
+			tickingLogic.set(kept++, tickingLogic.get(i));
 		}
-		//check if block at position corespodends to saved, garbage collection
-		logicBlocks.removeIf((AbstractBlockLogicExtension lb) -> {
-			boolean remove = !lb.isValid();
-			if (remove) {
-				lb.dispose();
+		tickingLogic.subList(kept, tickingLogic.size()).clear();
+
+		//wake up due logic blocks
+		while (!scheduledLogic.isEmpty() && scheduledLogic.peek().dueTime <= time) {
+			AbstractBlockLogicExtension logicBlock = scheduledLogic.poll();
+			logicBlock.queued = false;
+			dueLogic.add(logicBlock);
+		}
+		for (AbstractBlockLogicExtension logicBlock : dueLogic) {
+			if (logicBlock.state == AbstractBlockLogicExtension.SCHEDULED) {
+				logicBlock.state = AbstractBlockLogicExtension.SLEEPING;//one-shot wake-up
+				updateLogic(logicBlock, (float) (time - logicBlock.lastUpdate));
 			}
-			return remove;
-		});
+		}
+		dueLogic.clear();
+	}
+
+	/**
+	 * Updates a logic block or removes it if the block at its position changed.
+	 *
+	 * @param logicBlock
+	 * @param dt time since the last update of this logic block
+	 */
+	private void updateLogic(AbstractBlockLogicExtension logicBlock, float dt) {
+		if (logicBlock.isValid()) {
+			logicBlock.lastUpdate = time;
+			logicBlock.update(dt);
+		} else {
+			removeLogic(logicBlock);
+		}
+	}
+
+	/**
+	 * Instantiates the logic of every pending block. Called on the main thread
+	 * when the chunk becomes active or a logic block is requested.
+	 *
+	 * @see #getLogic(com.bombinggames.wurfelengine.core.map.Coordinate)
+	 * @since v.1.9.2
+	 */
+	public void activateLogic() {
+		IntArray cells = pendingLogic.iterator().toArray();
+		pendingLogic.clear();
+		for (int j = 0; j < cells.size; j++) {
+			int i = cells.items[j];
+			byte id = data[i];
+			if (id != 0 && !hasValidLogic(i)) {
+				int cell = i / 3;
+				AbstractBlockLogicExtension logic = AbstractBlockLogicExtension.newLogicInstance(
+					id,
+					data[i + 1],
+					new Coordinate(
+						topleftX + cell / (blocksY * blocksZ),
+						topleftY + (cell / blocksZ) % blocksY,
+						cell % blocksZ
+					)
+				);
+				if (logic != null) {
+					insertLogic(i, logic);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks for an existing logic block at a cell. An invalid one is removed.
+	 *
+	 * @param i index of the cell
+	 * @return true if a valid logic block exists
+	 */
+	private boolean hasValidLogic(int i) {
+		AbstractBlockLogicExtension logic = logicBlocks.get(i);
+		if (logic == null) {
+			return false;
+		}
+		if (logic.isValid()) {
+			return true;
+		}
+		removeLogic(logic);
+		return false;
+	}
+
+	/**
+	 * Adds a logic block at a cell and schedules it by its requested state.
+	 *
+	 * @param i index of the cell
+	 * @param logic
+	 */
+	private void insertLogic(int i, AbstractBlockLogicExtension logic) {
+		AbstractBlockLogicExtension old = logicBlocks.put(i, logic);
+		if (old != null && old != logic) {
+			removeLogic(old);
+			logicBlocks.put(i, logic);
+		}
+		logic.chunk = this;
+		logic.lastUpdate = time;
+		scheduleLogic(logic);
+	}
+
+	/**
+	 * Removes a logic block from this chunk and disposes it.
+	 *
+	 * @param logic
+	 */
+	private void removeLogic(AbstractBlockLogicExtension logic) {
+		int i = getLogicIndex(logic.getPosition());
+		if (logicBlocks.get(i) == logic) {
+			logicBlocks.remove(i);
+		}
+		if (logic.queued) {
+			scheduledLogic.remove(logic);
+			logic.queued = false;
+		}
+		logic.state = AbstractBlockLogicExtension.REMOVED;//dropped from the ticking list in the next update
+		logic.chunk = null;
+		logic.dispose();
+	}
+
+	/**
+	 * Moves a logic block to the list or queue of its state. Called when a
+	 * logic block changes how it wants to be updated.
+	 *
+	 * @param logic
+	 * @see AbstractBlockLogicExtension#scheduleUpdate(float)
+	 */
+	void scheduleLogic(AbstractBlockLogicExtension logic) {
+		if (logic.queued) {
+			scheduledLogic.remove(logic);
+			logic.queued = false;
+		}
+		if (logic.state == AbstractBlockLogicExtension.TICKING) {
+			if (!logic.inTickingList) {
+				logic.inTickingList = true;
+				tickingLogic.add(logic);
+			}
+		} else if (logic.state == AbstractBlockLogicExtension.SCHEDULED) {
+			logic.dueTime = time + logic.delay;
+			logic.queued = true;
+			scheduledLogic.add(logic);
+		}
+	}
+
+	/**
+	 * Informs the logic blocks at a changed cell and the cells around it.
+	 *
+	 * @param coord the changed cell
+	 */
+	private void notifyLogic(Coordinate coord) {
+		Map map = null;
+		int x = coord.getX();
+		int y = coord.getY();
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				int nx = x + dx;
+				int ny = y + dy;
+				Chunk chunk = this;
+				if (nx < topleftX || nx >= topleftX + blocksX || ny < topleftY || ny >= topleftY + blocksY) {
+					if (map == null) {
+						map = Controller.getMap();
+						if (map == null) {
+							continue;
+						}
+					}
+					chunk = map.getChunkContaining(nx, ny);
+					if (chunk == null) {
+						continue;
+					}
+				}
+				if (chunk.logicBlocks.size == 0) {
+					continue;
+				}
+				for (int dz = -1; dz <= 1; dz++) {
+					int nz = coord.getZ() + dz;
+					if (nz >= 0 && nz < blocksZ) {
+						AbstractBlockLogicExtension logic = chunk.logicBlocks.get(
+							getIndex(nx - chunk.topleftX, ny - chunk.topleftY, nz)
+						);
+						if (logic != null) {
+							if (dx == 0 && dy == 0 && dz == 0) {
+								logic.wakeUp();//own cell, check if still valid
+							} else {
+								logic.onNeighbourChanged(coord);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param coord a coordinate inside this chunk
+	 * @return index of the cell
+	 */
+	private int getLogicIndex(Coordinate coord) {
+		return getIndex(coord.getX() - topleftX, coord.getY() - topleftY, coord.getZ());
+	}
+
+	/**
+	 * Inactive chunks keep the logic of loaded or placed blocks pending until
+	 * they become active. Set every frame by the map depending on the distance
+	 * to the cameras ("mapLogicRadius").
+	 *
+	 * @param active
+	 * @since v.1.9.2
+	 */
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	/**
+	 * A chunk is sleeping if there is no logic block to update in this frame.
+	 *
+	 * @return true if {@link #update(float)} only checks for modifications
+	 * @since v.1.9.2
+	 */
+	public boolean isSleeping() {
+		return tickingLogic.isEmpty()
+			&& (scheduledLogic.isEmpty() || scheduledLogic.peek().dueTime > time)
+			&& (!active || pendingLogic.size == 0);
 	}
 
 	/**
@@ -275,44 +668,46 @@ public class Chunk implements Telegraph {
 	}
 
    /**
-	 * Fills the chunk's block using a generator.
+	 * Fills the chunk's block using a generator and spawns its entities.
 	 *
 	 * @param generator
 	 */
 	public void fill(final Generator generator) {
+		fillBlocks(generator);
+		generator.spawnEntities(blocksX * chunkX, blocksY * chunkY, blocksX, blocksY, blocksZ);
+	}
+
+	/**
+	 * Fills the chunk's block using a generator. Entities are not spawned.
+	 * Can be called on any thread if the generator is thread safe.
+	 *
+	 * @param generator
+	 * @see Generator#isThreadSafe()
+	 */
+	public void fillBlocks(final Generator generator) {
 		int left = blocksX * chunkX;
 		int top = blocksY * chunkY;
+		copyOnWrite();
+		byte[] data = this.data;
+		int[] column = new int[blocksZ];
+		int i = 0;//cells are visited in storage order
 		for (int x = 0; x < blocksX; x++) {
 			for (int y = 0; y < blocksY; y++) {
-				for (int z = 0; z < blocksZ * 3; z += 3) {
-					int generated = generator.generate(
-						left + x,
-						top + y,
-						z
-					);
-					data[x][y][z] = (byte) (generated&255);
-					data[x][y][z + 1] = (byte) ((generated>>8)&255);
-					data[x][y][z + 2] = 0;//damage
-					if (data[x][y][z] != 0) {
-						AbstractBlockLogicExtension logic = AbstractBlockLogicExtension.newLogicInstance(
-							data[x][y][z],
-							data[x][y][z + 1],
-							new Coordinate(left + x, top + y, z)
-						);
-						if (logic != null) {
-							logicBlocks.add(logic);
-						}
+				generator.generateColumn(left + x, top + y, column);
+				for (int z = 0; z < blocksZ; z++, i += 3) {
+					int generated = column[z];
+					data[i] = (byte) (generated&255);
+					data[i + 1] = (byte) ((generated>>8)&255);
+					data[i + 2] = 0;//damage
+					if (data[i] != 0 && AbstractBlockLogicExtension.isRegistered(data[i])) {
+						pendingLogic.add(i);
 					}
-
-					generator.spawnEntities(
-						left + x,
-						top + y,
-						z
-					);
 				}
 			}
 		}
 		modified = true;
+		unsaved = true;
+		journalBase = false;
 	}
 
 	/**
@@ -324,121 +719,203 @@ public class Chunk implements Telegraph {
 	 * @return
 	 */
 	public boolean restoreFromRoot(final File path, int saveSlot, int coordX, int coordY){
+		return restoreFromRoot(path, saveSlot, coordX, coordY, false);
+	}
+
+	/**
+	 * Copies the chunk from the map root into the save slot and loads it.
+	 *
+	 * @param path
+	 * @param saveSlot
+	 * @param coordX
+	 * @param coordY
+	 * @param regionFile true if the chunk is stored in a {@link RegionFile}
+	 * @return
+	 */
+	public boolean restoreFromRoot(final File path, int saveSlot, int coordX, int coordY, boolean regionFile){
+		if (regionFile) {
+			try {
+				RegionFile rootRegion = RegionFile.getIfExists(path, coordX, coordY);
+				byte[] chunkData = rootRegion == null ? null : rootRegion.read(coordX, coordY);
+				if (chunkData != null) {
+					IntArray deltas = rootRegion.getDeltas(coordX, coordY);
+					if (deltas != null) {
+						chunkData = applyDeltasToFile(chunkData, deltas);
+					}
+					new File(path, "save" + saveSlot).mkdirs();
+					RegionFile.get(new File(path, "save" + saveSlot), coordX, coordY).write(coordX, coordY, chunkData);
+					return true;
+				}
+			} catch (IOException ex) {
+				Gdx.app.error("Chunk", "Restoring " + coordX + "," + coordY + " from root region failed: " + ex);
+			}
+			Gdx.app.log("Chunk","Restoring "+ coordX+","+coordY + " from root failed.");
+			return false;
+		}
 		FileHandle chunkInRoot = Gdx.files.absolute(path+"/chunk"+coordX+","+coordY+"."+CHUNKFILESUFFIX);
 		if (chunkInRoot.exists() && !chunkInRoot.isDirectory()){
 			chunkInRoot.copyTo(Gdx.files.absolute(path+"/save"+saveSlot+"/chunk"+coordX+","+coordY+"."+CHUNKFILESUFFIX));
-			load(path, saveSlot, coordX, coordY);
+			return load(path, saveSlot, coordX, coordY, false);
 		} else {
 			Gdx.app.log("Chunk","Restoring "+ coordX+","+coordY + " from root failed.");
 			return false;
 		}
-		return true;
 	}
 
 	/**
+	 * Reads a whole file into a direct buffer which is reused by the calling
+	 * thread.
 	 *
-	 * @param fis
-	 * @return -1 if eof, if sucessuf read then {@link #SIGN_ENDBLOCKS}
+	 * @param file
+	 * @return the content of the file, valid until the next call on this thread
 	 * @throws IOException
 	 */
-	private byte loadBlocks(FileInputStream fis) throws IOException{
-		byte[][][] data = this.data;
-		int z = 0;
-		int x = 0;
-		int y = 0;
-		byte id = -1;//undefined
-
-		byte bChar;
-		boolean command = false;
-		//read a byte for the blocks
-		do {
-			bChar = (byte) fis.read();//read while not eof
-			if (bChar == -1) return bChar;
-			boolean skip = false;
+	private static ByteBuffer readFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			int size = (int) channel.size();
+			ByteBuffer buffer = READBUFFER.get();
+			if (buffer.capacity() < size) {
+				buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+				READBUFFER.set(buffer);
+			}
+			buffer.clear();
+			buffer.limit(size);
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+			}
+			buffer.flip();
+			return buffer;
+		}
+	}
 
-			if (bChar == SIGN_COMMAND) {
-				command = true;
-			} else {
-				if (command) {
-					command = false;
-					if (bChar == SIGN_EMTPYLAYER) {
-						for (x = 0; x < blocksX; x++) {
-							for (y = 0; y < blocksY; y++) {
-								data[x][y][z * 3] = 0;//id
-								data[x][y][z * 3 + 1] = 0;//value
-								data[x][y][z * 3 + 2] = 0;//damage
-							}
-						}
-						skip = true;
-					}
+	/**
+	 * Loads the blocks and the entities.
+	 *
+	 * @param buffer the content of a chunk file
+	 * @param path
+	 * @param deltas changes from the journal, can be null
+	 * @throws IOException
+	 */
+	private void load(ByteBuffer buffer, File path, IntArray deltas) throws IOException {
+		loadBlocks(buffer, deltas);
+		if (buffer.hasRemaining()) {//not eof
+			byte[] entityData = new byte[buffer.remaining()];
+			buffer.get(entityData);
+			if (entityData.length > 1 && entityData[0] == SIGN_COMMAND && entityData[1] == SIGN_ENTITIES) {
+				loadEntities(entityData, path);
+			} else {//written with java serialization
+				loadEntities(new ByteArrayInputStream(entityData), path);
+			}
+		}
+		modified = true;
+		unsaved = false;
+		changedCells.clear();
+		journalBase = true;
+	}
 
-					if (bChar == SIGN_ENDBLOCKS || bChar == -1) {
-						return bChar;
-					}
-				}
+	/**
+	 * Reads the blocks with the codec named in the header. Files without a
+	 * header use {@link ChunkCodec#LEGACY}.
+	 *
+	 * @param buffer
+	 * @param deltas changes from the journal, can be null
+	 * @throws IOException
+	 */
+	private void loadBlocks(ByteBuffer buffer, IntArray deltas) throws IOException{
+		copyOnWrite();
+		decodeBlocks(buffer, data);
+		if (deltas != null) {
+			applyDeltas(data, deltas);
+		}
 
-				if (!skip) {
-					try {
-						//fill layer block by block
-						if (id == -1) {
-							id = bChar;
-							
-							if (id == 0) {
-								data[x][y][z * 3] = id;
-								data[x][y][z * 3 + 1] = 0;//value
-								data[x][y][z * 3 + 2] = 0;//damage
-								id = -1;
-								x++;
-								if (x == blocksX) {
-									y++;
-									x = 0;
-								}
-								if (y == blocksY) {
-									x = 0;
-									y = 0;
-									z++;
-								}
-							}
-						} else {
-							data[x][y][z * 3] = id;
-							data[x][y][z * 3 + 1] = bChar;
-							data[x][y][z * 3 + 2] = 0;//damage
-							//if has logicblock then add logicblock
-							if (id != 0) {
-								if (AbstractBlockLogicExtension.isRegistered(id)) {
-									AbstractBlockLogicExtension logic = AbstractBlockLogicExtension.newLogicInstance(
-										id,
-										bChar,
-										new Coordinate(
-											chunkX * blocksX + x,
-											chunkY * blocksY + y,
-											z
-										)
-									);
-									if (logic!=null)
-										logicBlocks.add(logic);
-								}
-							}
-							x++;
-							if (x == blocksX) {
-								y++;
-								x = 0;
-							}
-							if (y == blocksY) {
-								x = 0;
-								y = 0;
-								z++;
-							}
-							id = -1;
-						}
-					} catch (ArrayIndexOutOfBoundsException ex) {
-						Gdx.app.error("Chunk", "too much blocks loaded in chunk "+chunkX+","+chunkY+" position" + x + "," + y + "," + z + ". Map file corrrupt?");
-						break;
-					}
-				}
+		//logicblocks are instantiated when the chunk becomes active
+		for (int i = 0; i < data.length; i += 3) {
+			byte id = data[i];
+			if (id != 0 && AbstractBlockLogicExtension.isRegistered(id)) {
+				pendingLogic.add(i);
 			}
-		} while (bChar != -1);
-		return bChar;
+		}
+	}
+
+	/**
+	 * Reads the blocks with the codec named in the header. Files without a
+	 * header use {@link ChunkCodec#LEGACY}.
+	 *
+	 * @param buffer position is after the blocks afterwards
+	 * @param blocks
+	 * @return the codec used
+	 * @throws IOException
+	 */
+	private static ChunkCodec decodeBlocks(ByteBuffer buffer, byte[] blocks) throws IOException {
+		ChunkCodec codec = ChunkCodec.LEGACY;
+		int pos = buffer.position();
+		if (buffer.remaining() > 2 && buffer.get(pos) == SIGN_COMMAND && buffer.get(pos + 1) == SIGN_CODEC) {
+			byte codecId = buffer.get(pos + 2);
+			codec = ChunkCodec.get(codecId);
+			if (codec == null) {
+				throw new IOException("Unknown chunk codec " + codecId);
+			}
+			buffer.position(pos + 3);
+		}
+		try {
+			codec.decode(buffer, blocks, blocksX, blocksY, blocksZ);
+		} catch (BufferUnderflowException ex) {
+			throw new IOException("Chunk data ends too early.", ex);
+		}
+		return codec;
+	}
+
+	/**
+	 * Writes changed cells into a block array.
+	 *
+	 * @param blocks
+	 * @param deltas pairs of position in the block array and the cell packed by {@link #packCell(byte[], int)}
+	 */
+	private static void applyDeltas(byte[] blocks, IntArray deltas) {
+		for (int d = 0; d < deltas.size - 1; d += 2) {
+			int i = deltas.get(d);
+			if (i >= 0 && i + 2 < blocks.length) {
+				int cell = deltas.get(d + 1);
+				blocks[i] = (byte) (cell >> 16);
+				blocks[i + 1] = (byte) (cell >> 8);
+				blocks[i + 2] = (byte) cell;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param blocks
+	 * @param i position of the id
+	 * @return id, value and health in one int
+	 */
+	private static int packCell(byte[] blocks, int i) {
+		return ((blocks[i] & 255) << 16) | ((blocks[i + 1] & 255) << 8) | (blocks[i + 2] & 255);
+	}
+
+	/**
+	 * Applies journal entries to the content of a chunk file. The blocks are
+	 * encoded again with the codec they were written with. Used for compacting
+	 * the journal of a {@link RegionFile}.
+	 *
+	 * @param chunkFile the content of a chunk file
+	 * @param deltas pairs of position in the block array and the packed cell
+	 * @return the content of the chunk file with the changes
+	 * @throws IOException
+	 */
+	static byte[] applyDeltasToFile(byte[] chunkFile, IntArray deltas) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(chunkFile);
+		byte[] blocks = new byte[blocksX * blocksY * blocksZ * 3];
+		ChunkCodec codec = decodeBlocks(buffer, blocks);
+		applyDeltas(blocks, deltas);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(chunkFile.length + 16);
+		if (codec != ChunkCodec.LEGACY) {
+			out.write(SIGN_COMMAND);
+			out.write(SIGN_CODEC);
+			out.write(codec.getId());
+		}
+		codec.encode(blocks, blocksX, blocksY, blocksZ, out);
+		out.write(chunkFile, buffer.position(), buffer.remaining());//entities
+		return out.toByteArray();
 	}
 
 	/**
@@ -447,7 +924,7 @@ public class Chunk implements Telegraph {
 	 * @param fis
 	 * @param path
 	 */
-	private void loadEntities(FileInputStream fis, File path) {
+	private void loadEntities(InputStream fis, File path) {
 		//ends with a sign for logic or entitiesinSaveFile or eof
 		try (ObjectInputStream ois = new ObjectInputStream(fis)) {
 			byte bChar = ois.readByte();
@@ -496,7 +973,10 @@ public class Chunk implements Telegraph {
     /**
      * Tries to load a chunk from storage.
      */
-    private boolean load(final File path, int saveSlot, int coordX, int coordY) {
+    private boolean load(final File path, int saveSlot, int coordX, int coordY, boolean regionFile) {
+		if (regionFile) {
+			return loadFromRegion(path, saveSlot, coordX, coordY);
+		}
 
 		//FileHandle path = Gdx.files.internal("/map/chunk"+coordX+","+chunkY+"."+CHUNKFILESUFFIX);
 		FileHandle savepath = Gdx.files.absolute(path+"/save"+saveSlot+"/chunk"+coordX+","+coordY+"."+CHUNKFILESUFFIX);
@@ -505,17 +985,8 @@ public class Chunk implements Telegraph {
 			Gdx.app.debug("Chunk","Loading Chunk: "+ coordX + ", "+ coordY);
 			//Reading map files test
 			try {
-				FileInputStream fis = new FileInputStream(savepath.file());
-
-				byte bChar = loadBlocks(fis);
-				//if (bChar == SIGN_ENDBLOCKS)
-					//Gdx.app.debug("Chunk","Loaded blocks sucessfull");
-
-				if (fis.available() > 0) {//not eof
-					loadEntities(fis, path);
-				}
-
-				modified = true;
+				load(readFile(savepath.file()), path, null);
+				savedSlot = saveSlot;
 				return true;
 
 			} catch (IOException ex){
@@ -523,13 +994,38 @@ public class Chunk implements Telegraph {
 			}
 		} else {
 			Gdx.app.log("Chunk", coordX+","+coordY + " could not be found on storage. Trying to load from root next.");
-			if (restoreFromRoot(path, saveSlot, coordX, coordY))
-				load(path, saveSlot, coordX, coordY);
+			return restoreFromRoot(path, saveSlot, coordX, coordY);
 		}
 
         return false;
     }
 
+	/**
+	 * Tries to load a chunk from the region file of the save slot. If it is
+	 * not there it is restored from the region file in the map root.
+	 */
+	private boolean loadFromRegion(final File path, int saveSlot, int coordX, int coordY) {
+		try {
+			RegionFile region = RegionFile.getIfExists(new File(path, "save" + saveSlot), coordX, coordY);
+			byte[] chunkData = region == null ? null : region.read(coordX, coordY);
+			if (chunkData == null) {
+				Gdx.app.log("Chunk", coordX + "," + coordY + " could not be found in region. Trying to load from root next.");
+				if (!restoreFromRoot(path, saveSlot, coordX, coordY, true)) {
+					return false;
+				}
+				region = RegionFile.get(new File(path, "save" + saveSlot), coordX, coordY);
+				chunkData = region.read(coordX, coordY);
+			}
+			Gdx.app.debug("Chunk", "Loading Chunk from region: " + coordX + ", " + coordY);
+			load(ByteBuffer.wrap(chunkData), path, region.getDeltas(coordX, coordY));
+			savedSlot = saveSlot;
+			return true;
+		} catch (IOException ex) {
+			Gdx.app.error("Chunk", "Loading of chunk " + coordX + "," + coordY + " from region failed: " + ex);
+		}
+		return false;
+	}
+
 	/**
 	 * Returns entitiesinSaveFile spawned on this chunk. Can only called once.
 	 * @return list of entitiesinSaveFile on this chunk, can be null if empty
@@ -552,70 +1048,360 @@ public class Chunk implements Telegraph {
      */
     public boolean save(Map map, File path, int saveSlot) throws IOException {
         if (path == null) return false;
-        Gdx.app.log("Chunk","Saving "+chunkX + ","+ chunkY +".");
-		File savepath = new File(path + "/save" + saveSlot + "/chunk" + chunkX + "," + chunkY + "." + CHUNKFILESUFFIX);
-
-        savepath.createNewFile();
-
-		FileOutputStream fos = new FileOutputStream(savepath);
-		for (byte z = 0; z < blocksZ; z++) {
-			//check if layer is empty
-			boolean dirty = false;
-			for (int x = 0; x < blocksX; x++) {
-				for (int y = 0; y < blocksY; y++) {
-					if (data[x][y][z*3] != 0) {
-						dirty = true;
+		byte[] entityData = serializeEntities(map.getEntitiesOnChunkSavedOnly(chunkX, chunkY));
+		if (map.usesRegionFiles()) {
+			snapshot(entityData, map.getChunkCodec(), saveSlot).writeToRegion(path, saveSlot);//synced when the region is closed
+			return true;
+		}
+		return save(path, saveSlot, entityData, map.getChunkCodec());
+	}
+
+	/**
+	 * Serializes the entities so that they can be written by
+	 * {@link #save(File, int, byte[], ChunkCodec)} later, e.g. after they were removed from the map.
+	 *
+	 * @param entities the entities on this chunk which should be saved
+	 * @return null if there are no entities
+	 * @throws IOException
+	 */
+	public byte[] serializeEntities(ArrayList<AbstractEntity> entities) throws IOException {
+		if (entities == null || entities.isEmpty()) {
+			return null;
+		}
+		ByteArrayOutputStream entityBytes = new ByteArrayOutputStream(64);
+		DataOutputStream entityOut = new DataOutputStream(entityBytes);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(entities.size() * 64 + 6);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.write(new byte[]{SIGN_COMMAND, SIGN_ENTITIES});
+		out.writeInt(0);//count, set later
+		int count = 0;
+		for (AbstractEntity ent : entities){
+			Gdx.app.debug("Chunk", "Saving entity:"+ent.getName());
+			entityBytes.reset();
+			String codecName = AbstractEntity.getCodecName(ent.getClass());
+			try {
+				if (codecName != null) {
+					@SuppressWarnings("unchecked")
+					EntityCodec<AbstractEntity> codec = (EntityCodec<AbstractEntity>) AbstractEntity.getCodec(codecName);
+					codec.write(ent, entityOut);
+					out.writeByte(ENTITYFORMAT_CODEC);
+					out.writeUTF(codecName);
+				} else {
+					try (ObjectOutputStream oos = new ObjectOutputStream(entityBytes)) {
+						oos.writeObject(ent);
 					}
+					out.writeByte(ENTITYFORMAT_SERIALIZED);
 				}
+			} catch(java.io.NotSerializableException ex){
+				Gdx.app.error("Chunk", "A class used in "+ent.getClass().getName()+" is not NotSerializable: "+ ex.toString());
+				continue;
 			}
-			if (dirty) {
-				for (int y = 0; y < blocksY; y++) {
-					for (int x = 0; x < blocksX; x++) {
-						if (data[x][y][z * 3] == 0) {
-							fos.write(0);//value would be redundand
+			out.writeInt(entityBytes.size());
+			entityBytes.writeTo(out);
+			count++;
+		}
+		byte[] result = bytes.toByteArray();
+		ByteBuffer.wrap(result).putInt(2, count);
+		return result;
+	}
+
+	/**
+	 * Loads the entities written by {@link #serializeEntities(ArrayList)}.
+	 * Every entity is prefixed with its length so that entities which can not
+	 * be read are skipped.
+	 *
+	 * @param entityData
+	 * @param path
+	 */
+	private void loadEntities(byte[] entityData, File path) {
+		if (!WE.getCVars().getValueB("loadEntities")) {
+			return;
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(entityData, 2, entityData.length - 2));
+		try {
+			int entCount = in.readInt();
+			//every entity needs at least a format byte and a payload length
+			if (entCount < 0 || entCount > MAXENTITIES || entCount > in.available() / 5) {
+				throw new IOException("Invalid amount of entities " + entCount);
+			}
+			Gdx.app.debug("Chunk", "Loading " + entCount + " entities.");
+			entitiesinSaveFile = new ArrayList<>(entCount);
+			for (int i = 0; i < entCount; i++) {
+				byte format = in.readByte();
+				String codecName = format == ENTITYFORMAT_CODEC ? in.readUTF() : null;
+				int length = in.readInt();
+				if (length < 0 || length > in.available()) {
+					throw new IOException("Invalid entity length " + length);
+				}
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				try {
+					AbstractEntity ent = null;
+					if (format == ENTITYFORMAT_CODEC) {
+						EntityCodec<?> codec = AbstractEntity.getCodec(codecName);
+						if (codec == null) {
+							Gdx.app.error("Chunk", "No codec registered for entity " + codecName + ". Skipping it.");
 						} else {
-							fos.write(new byte[]{data[x][y][z * 3], data[x][y][z * 3 + 1]});
+							ent = codec.read(new DataInputStream(new ByteArrayInputStream(payload)));
+						}
+					} else {
+						try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+							ent = (AbstractEntity) ois.readObject();
 						}
 					}
+					if (ent != null) {
+						entitiesinSaveFile.add(ent);
+						Gdx.app.debug("Chunk", "Loaded entity: " + ent.getName());
+					}
+				} catch (IOException | ClassNotFoundException | ClassCastException ex) {
+					Gdx.app.error("Chunk", "An entity could not be loaded: " + ex);
 				}
+			}
+		} catch (IOException ex) {
+			entitiesinSaveFile = null;
+			Gdx.app.error("Chunk", "Loading of entities in chunk " + path + "/" + chunkX + "," + chunkY + " failed. Chunk file corrupt: " + ex);
+		}
+	}
+
+	/**
+	 * Save the blocks of this chunk and already serialized entities on storage.
+	 * Does not access the map.
+	 *
+	 * @param path the map name on storage
+	 * @param saveSlot
+	 * @param entityData created by {@link #serializeEntities(ArrayList)}, can be null
+	 * @param codec
+	 * @return
+	 * @throws IOException
+	 * @see ChunkSaver for saving in the background
+	 */
+	public boolean save(File path, int saveSlot, byte[] entityData, ChunkCodec codec) throws IOException {
+        if (path == null) return false;
+		Snapshot snapshot = snapshot(entityData, codec, saveSlot);
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(snapshot.getFile(path, saveSlot)))) {
+			snapshot.write(out);
+		}
+		return true;
+    }
+
+	/**
+	 * Creates a snapshot of the current blocks which can be written on another
+	 * thread. The block array is shared with the snapshot and only copied if
+	 * this chunk is changed before the snapshot is written. Marks the chunk as
+	 * saved in the save slot.
+	 *
+	 * @param entityData created by {@link #serializeEntities(ArrayList)}, can be null
+	 * @param codec used for the blocks
+	 * @param saveSlot the slot the snapshot is written to
+	 * @return
+	 */
+	public Snapshot snapshot(byte[] entityData, ChunkCodec codec, int saveSlot) {
+		shared = true;
+		unsaved = false;
+		savedSlot = saveSlot;
+		changedCells.clear();
+		journalBase = true;
+		return new Snapshot(this, data, entityData, codec, null, true);
+	}
+
+	/**
+	 * Creates a snapshot of the current blocks for a save slot which is not
+	 * used by the map. Unlike {@link #snapshot(byte[], ChunkCodec, int)} the
+	 * chunk is not marked as saved, so the active save slot still gets every
+	 * change.
+	 *
+	 * @param entityData created by {@link #serializeEntities(ArrayList)}, can be null
+	 * @param codec used for the blocks
+	 * @return
+	 */
+	public Snapshot copySnapshot(byte[] entityData, ChunkCodec codec) {
+		shared = true;
+		return new Snapshot(this, data, entityData, codec, null, false);
+	}
+
+	/**
+	 * Check if a snapshot of only the changed cells can be saved.
+	 *
+	 * @param saveSlot the slot the snapshot is written to
+	 * @return false if the whole chunk must be saved
+	 * @see #deltaSnapshot()
+	 */
+	public boolean canSaveDelta(int saveSlot) {
+		return journalBase && savedSlot == saveSlot && changedCells.size <= MAXDELTAS;
+	}
+
+	/**
+	 * Creates a snapshot containing only the cells changed since the last
+	 * snapshot. It can only be written into a {@link RegionFile}, which
+	 * appends it to its journal. Entities are not saved. Marks the chunk as saved.
+	 *
+	 * @return
+	 * @see #canSaveDelta(int)
+	 */
+	public Snapshot deltaSnapshot() {
+		IntArray deltas = new IntArray(changedCells.size * 2);
+		for (int c = 0; c < changedCells.size; c++) {
+			int i = changedCells.get(c);
+			deltas.add(i);
+			deltas.add(packCell(data, i));
+		}
+		changedCells.clear();
+		unsaved = false;
+		return new Snapshot(this, null, null, null, deltas, true);
+	}
+
+	/**
+	 * Must be called after a cell was changed.
+	 *
+	 * @param i position of the id in {@link #data}
+	 */
+	private void cellChanged(int i) {
+		modified = true;
+		unsaved = true;
+		if (changedCells.size <= MAXDELTAS) {
+			changedCells.add(i);
+		}
+	}
+
+	/**
+	 * Must be called before the block array is changed.
+	 */
+	private void copyOnWrite() {
+		if (shared) {
+			data = data.clone();
+			shared = false;
+		}
+	}
+
+	/**
+	 * The content of a chunk at one point of time. Can be written to storage on any thread.
+	 */
+	public static class Snapshot {
+
+		private final Chunk chunk;
+		private final byte[] blocks;
+		private final byte[] entityData;
+		private final ChunkCodec codec;
+		/**
+		 * if not null this is a delta snapshot
+		 */
+		private final IntArray deltas;
+		/**
+		 * true if the chunk was marked as saved when this snapshot was created
+		 */
+		private final boolean marksSaved;
+		private final int blocksX, blocksY, blocksZ;
+
+		private Snapshot(Chunk chunk, byte[] blocks, byte[] entityData, ChunkCodec codec, IntArray deltas, boolean marksSaved) {
+			this.chunk = chunk;
+			this.marksSaved = marksSaved;
+			this.blocks = blocks;
+			this.entityData = entityData;
+			this.codec = codec;
+			this.deltas = deltas;
+			this.blocksX = Chunk.blocksX;
+			this.blocksY = Chunk.blocksY;
+			this.blocksZ = Chunk.blocksZ;
+		}
+
+		/**
+		 * 
+		 * @return chunk coordinate
+		 */
+		public int getChunkX() {
+			return chunk.chunkX;
+		}
+
+		/**
+		 * 
+		 * @return chunk coordinate
+		 */
+		public int getChunkY() {
+			return chunk.chunkY;
+		}
+
+		/**
+		 * 
+		 * @param path the map name on storage
+		 * @param saveSlot
+		 * @return the file of this chunk
+		 */
+		public File getFile(File path, int saveSlot) {
+			return new File(path + "/save" + saveSlot + "/chunk" + chunk.chunkX + "," + chunk.chunkY + "." + CHUNKFILESUFFIX);
+		}
+
+		/**
+		 * Stores the snapshot in the region file of the save slot. The region
+		 * file is not synced.
+		 *
+		 * @param path the map name on storage
+		 * @param saveSlot
+		 * @return the region file which was written to
+		 * @throws IOException
+		 */
+		public RegionFile writeToRegion(File path, int saveSlot) throws IOException {
+			File slotPath = new File(path, "save" + saveSlot);
+			slotPath.mkdirs();
+			RegionFile region = RegionFile.get(slotPath, chunk.chunkX, chunk.chunkY);
+			if (deltas != null) {
+				region.appendDeltas(chunk.chunkX, chunk.chunkY, deltas);
 			} else {
-				fos.write(new byte[]{SIGN_COMMAND, SIGN_EMTPYLAYER});
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(blocks.length / 2);
+				write(bytes);
+				region.write(chunk.chunkX, chunk.chunkY, bytes.toByteArray());
 			}
+			return region;
 		}
-		fos.write(new byte[]{SIGN_COMMAND, SIGN_ENDBLOCKS});
-		fos.flush();
 
-		ArrayList<AbstractEntity> entities = map.getEntitiesOnChunkSavedOnly(chunkX, chunkY);
+		/**
+		 * Writes the blocks and the entities.
+		 *
+		 * @param out should be buffered
+		 * @throws IOException
+		 */
+		public void write(OutputStream out) throws IOException {
+			if (deltas != null) {
+				throw new IllegalStateException("A delta snapshot can only be written into a region file.");
+			}
+			Gdx.app.log("Chunk","Saving "+chunk.chunkX + ","+ chunk.chunkY +".");
+			if (codec != ChunkCodec.LEGACY) {
+				out.write(SIGN_COMMAND);
+				out.write(SIGN_CODEC);
+				out.write(codec.getId());
+			}
+			codec.encode(blocks, blocksX, blocksY, blocksZ, out);
 
-		if (entities.size() > 0){
-			try (ObjectOutputStream fileOut = new ObjectOutputStream(fos)) {
-				//save entitiesinSaveFile
-				if (entities.size() > 0) {
-					fileOut.write(new byte[]{SIGN_COMMAND, SIGN_ENTITIES, (byte) entities.size()});
-					for (AbstractEntity ent : entities){
-						Gdx.app.debug("Chunk", "Saving entity:"+ent.getName());
-						try {
-							fileOut.writeObject(ent);
-						} catch(java.io.NotSerializableException ex){
-							Gdx.app.error("Chunk", "A class used in "+ent.getClass().getName()+" is not NotSerializable: "+ ex.toString());
-						}
-					}
-				}
-				fileOut.close();
-			} catch (IOException ex){
-			  throw ex;
+			if (entityData != null) {
+				out.write(entityData);
 			}
+			out.flush();
 		}
 
-		return true;
-    }
+		/**
+		 * Call if writing failed so that the chunk is saved again the next time.
+		 */
+		public void failed() {
+			if (marksSaved) {
+				chunk.unsaved = true;
+				chunk.journalBase = false;
+			}
+		}
+	}
 
 	/**
-     * Returns the data of the chunk. each block uses three bytes, id, value and damage
+     * Returns a copy of the data of the chunk. each block uses three bytes, id, value and damage. Changes to the returned array are not written back.
      * @return
+	 * @deprecated only a compatibility view, use {@link #getBlockByIndex(int, int, int)} instead
      */
+	@Deprecated
     public byte[][][] getData() {
-        return data;
+		byte[][][] copy = new byte[blocksX][blocksY][blocksZ * 3];
+		for (int x = 0; x < blocksX; x++) {
+			for (int y = 0; y < blocksY; y++) {
+				System.arraycopy(data, getIndex(x, y, 0), copy[x][y], 0, blocksZ * 3);
+			}
+		}
+        return copy;
     }
 
 	/**
@@ -660,13 +1446,14 @@ public class Chunk implements Telegraph {
 	@Override
 	public String toString() {
 		String strg = null;
-		for (int z = 0; z < blocksZ*3; z+=3) {
+		for (int z = 0; z < blocksZ; z++) {
 			for (int y = 0; y < blocksY; y++) {
 				for (int x = 0; x < blocksX; x++) {
-					if (data[x][y][z]==0)
+					int i = getIndex(x, y, z);
+					if (data[i]==0)
 						strg += "  ";
 					else
-						strg += data[x][y][z] + " ";
+						strg += data[i] + " ";
 				}
 				strg += "\n";
 			}
@@ -675,6 +1462,44 @@ public class Chunk implements Telegraph {
 		return strg;
 	}
 
+	/**
+	 * 
+	 * @param saveSlot
+	 * @return true if the blocks were changed since the last save or load or
+	 * if they were not saved to or loaded from this save slot
+	 */
+	public boolean isUnsaved(int saveSlot) {
+		return unsaved || savedSlot != saveSlot;
+	}
+
+	/**
+	 * Estimates the heap memory used by this chunk.
+	 *
+	 * @return bytes
+	 */
+	public int getMemoryUsage() {
+		return data.length + 128;//block data and a rough estimate for this object
+	}
+
+	/**
+	 * 
+	 * @return the frame when this chunk was last used
+	 * @see #setLastUsed(long) 
+	 */
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	/**
+	 * Marks when this chunk was used. Chunks which were not used for a long
+	 * time are unloaded first.
+	 *
+	 * @param frame
+	 */
+	public void setLastUsed(long frame) {
+		lastUsed = frame;
+	}
+
 	/**
 	 * Get the chunk coordinate of this chunk.
 	 * @return
@@ -721,17 +1546,16 @@ public class Chunk implements Telegraph {
 		int yIndex = y - topleftY;
 		z = z*3;//because each block uses three bytes
 		if (z >= 0){
-			data[xIndex][yIndex][z] = id;
-			data[xIndex][yIndex][z+1] = 0;
-			data[xIndex][yIndex][z+2] = 100;
-			modified = true;
-			//get corresponding logic and update
-			if (id != 0) {
-				AbstractBlockLogicExtension logic = AbstractBlockLogicExtension.newLogicInstance(id, (byte) 0, new Coordinate(x, y, z));
-				if (logic != null)
-					logicBlocks.add(logic);
-			}
-			MessageManager.getInstance().dispatchMessage(Events.cellChanged.getId(), new Coordinate(x, y, z));
+			int i = getIndex(xIndex, yIndex, 0) + z;
+			copyOnWrite();
+			data[i] = id;
+			data[i+1] = 0;
+			data[i+2] = 100;
+			cellChanged(i);
+			logicChanged(i);
+			Coordinate coord = new Coordinate(x, y, z/3);
+			notifyLogic(coord);
+			MessageManager.getInstance().dispatchMessage(Events.cellChanged.getId(), coord);
 		}
 	}
 	
@@ -775,18 +1599,15 @@ public class Chunk implements Telegraph {
 		int yIndex = coord.getY() - topleftY;
 		int z = coord.getZ() * 3;
 		if (z >= 0) {
-			data[xIndex][yIndex][z] = id;
-			data[xIndex][yIndex][z + 1] = value;
-			data[xIndex][yIndex][z + 2] = (byte) (100-health);
-			modified = true;
-
-			//get corresponding logic and update
-			if (id != 0) {
-				AbstractBlockLogicExtension logic = AbstractBlockLogicExtension.newLogicInstance(id, value, coord);
-				if (logic != null) {
-					logicBlocks.add(logic);//maybe this leads to duplicates
-				}
-			}
+			int i = getIndex(xIndex, yIndex, 0) + z;
+			copyOnWrite();
+			data[i] = id;
+			data[i + 1] = value;
+			data[i + 2] = (byte) (100-health);
+			cellChanged(i);
+
+			logicChanged(i);
+			notifyLogic(coord);
 
 			MessageManager.getInstance().dispatchMessage(Events.cellChanged.getId(), coord);
 		}
@@ -804,9 +1625,12 @@ public class Chunk implements Telegraph {
 		int z = coord.getZ() * 3;
 		if (z >= 0) {
 			//check if actually changed
-			if (data[xIndex][yIndex][z + 1] != value) {
-				data[xIndex][yIndex][z + 1] = value;
-				modified = true;
+			int i = getIndex(xIndex, yIndex, 0) + z;
+			if (data[i + 1] != value) {
+				copyOnWrite();
+				data[i + 1] = value;
+				cellChanged(i);
+				notifyLogic(coord);
 				MessageManager.getInstance().dispatchMessage(Events.cellChanged.getId(), coord);
 			}
 		}
@@ -823,19 +1647,34 @@ public class Chunk implements Telegraph {
 		int yIndex = coord.getY() - topleftY;
 		int z = coord.getZ()*3;
 		if (z >= 0) {
-			if (data[xIndex][yIndex][z+2] != 100-health) {
-				data[xIndex][yIndex][z+2] = (byte) (100-health);
-				modified = true;
+			int i = getIndex(xIndex, yIndex, 0) + z;
+			if (data[i+2] != 100-health) {
+				copyOnWrite();
+				data[i+2] = (byte) (100-health);
+				cellChanged(i);
 			}
 		}
 	}
 
+	/**
+	 * Queues the logic for a changed cell. An old logic block at this cell
+	 * becomes invalid and is removed in the next update.
+	 * @see #notifyLogic(com.bombinggames.wurfelengine.core.map.Coordinate) 
+	 *
+	 * @param i index of the cell
+	 */
+	private void logicChanged(int i) {
+		if (data[i] != 0 && AbstractBlockLogicExtension.isRegistered(data[i])) {
+			pendingLogic.add(i);
+		}
+	}
+
 	/**
 	 *
 	 * @param block
 	 */
 	protected void addLogic(AbstractBlockLogicExtension block) {
-		logicBlocks.add(block);
+		insertLogic(getLogicIndex(block.getPosition()), block);
 	}
 
 	/**
@@ -846,11 +1685,12 @@ public class Chunk implements Telegraph {
 	 */
 	public AbstractBlockLogicExtension getLogic(Coordinate coord) {
 		if (coord.getBlockId() != 0) {
-			//find the logicBlock
-			for (AbstractBlockLogicExtension logicBlock : logicBlocks) {
-				if (logicBlock.getPosition().equals(coord) && logicBlock.isValid()) {
-					return logicBlock;
-				}
+			if (pendingLogic.size > 0) {
+				activateLogic();
+			}
+			AbstractBlockLogicExtension logicBlock = logicBlocks.get(getLogicIndex(coord));
+			if (logicBlock != null && logicBlock.isValid()) {
+				return logicBlock;
 			}
 		}
 		return null;
@@ -905,7 +1745,7 @@ public class Chunk implements Telegraph {
 		}
 		int xIndex = x - topleftX;
 		int yIndex = y - topleftY;
-		return data[xIndex][yIndex][z * 3];
+		return data[getIndex(xIndex, yIndex, z)];
 	}
 
 	/**
@@ -921,7 +1761,7 @@ public class Chunk implements Telegraph {
 		}
 		int xIndex = x - topleftX;
 		int yIndex = y - topleftY;
-		return data[xIndex][yIndex][z * 3 + 1];
+		return data[getIndex(xIndex, yIndex, z) + 1];
 	}
 
 	/**
@@ -937,7 +1777,7 @@ public class Chunk implements Telegraph {
 		}
 		int xIndex = x - topleftX;
 		int yIndex = y - topleftY;
-		return data[xIndex][yIndex][z * 3 + 2];
+		return data[getIndex(xIndex, yIndex, z) + 2];
 	}
 
 	/**
@@ -954,7 +1794,8 @@ public class Chunk implements Telegraph {
 		}
 		int xIndex = x - topleftX;
 		int yIndex = y - topleftY;
-		return data[xIndex][yIndex][z * 3] + (data[xIndex][yIndex][z * 3 + 1] << 8) + (data[xIndex][yIndex][z * 3 + 2] << 16);
+		int i = getIndex(xIndex, yIndex, z);
+		return data[i] + (data[i + 1] << 8) + (data[i + 2] << 16);
 	}
 
 	/**
@@ -965,9 +1806,38 @@ public class Chunk implements Telegraph {
 	 * @return first byte id, second value, third is damage.
 	 */
 	public int getBlockByIndex(int x, int y, int z) {
+		return getBlockByIndex(data, x, y, z);
+	}
+
+	/**
+	 * Get the block data at this index position of a shared block array.
+	 *
+	 * @param blocks obtained by {@link #shareBlocks()}
+	 * @param x only valid index
+	 * @param y only valid index
+	 * @param z only valid index
+	 * @return first byte id, second value, third is damage.
+	 * @since v.1.9.2
+	 */
+	public static int getBlockByIndex(byte[] blocks, int x, int y, int z) {
 		if (z >= Chunk.blocksZ) {
 			return 0;
 		}
-		return data[x][y][z * 3] + (data[x][y][z * 3 + 1] << 8) + (data[x][y][z * 3 + 2] << 16);
+		int i = getIndex(x, y, z);
+		return blocks[i] + (blocks[i + 1] << 8) + (blocks[i + 2] << 16);
+	}
+
+	/**
+	 * Shares the block array so that it can be read on another thread. The
+	 * array is copied before this chunk is changed, so the returned array
+	 * keeps the current state.
+	 *
+	 * @return must not be altered
+	 * @see #getBlockByIndex(byte[], int, int, int)
+	 * @since v.1.9.2
+	 */
+	public byte[] shareBlocks() {
+		shared = true;
+		return data;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes the blocks of a chunk for storage. Every codec has an id which is
+ * written in front of the blocks so that a map can contain chunks written with
+ * different codecs. The block array has the layout of {@link Chunk}: three bytes
+ * (id, value, health) per cell, z changing fastest, then y, then x.
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public interface ChunkCodec {
+
+	/**
+	 * the format used before codecs were introduced. Files written with it have no codec header.
+	 */
+	ChunkCodec LEGACY = new LegacyChunkCodec();
+	/**
+	 * palette and run-length encoding
+	 */
+	ChunkCodec PALETTE = new PaletteChunkCodec((byte) 1, "palette", false);
+	/**
+	 * palette and run-length encoding compressed with deflate
+	 */
+	ChunkCodec PALETTEDEFLATE = new PaletteChunkCodec((byte) 2, "palettedeflate", true);
+
+	/**
+	 * registered codecs by name. Use {@link #register(ChunkCodec)} to add one.
+	 */
+	ConcurrentHashMap<String, ChunkCodec> CODECS = registerDefaults();
+
+	private static ConcurrentHashMap<String, ChunkCodec> registerDefaults() {
+		ConcurrentHashMap<String, ChunkCodec> codecs = new ConcurrentHashMap<>(4);
+		codecs.put(LEGACY.getName(), LEGACY);
+		codecs.put(PALETTE.getName(), PALETTE);
+		codecs.put(PALETTEDEFLATE.getName(), PALETTEDEFLATE);
+		return codecs;
+	}
+
+	/**
+	 * Make a codec available for reading and writing.
+	 *
+	 * @param codec
+	 */
+	static void register(ChunkCodec codec) {
+		CODECS.put(codec.getName(), codec);
+	}
+
+	/**
+	 *
+	 * @param name the name used in the map CVar "chunkCodec"
+	 * @return null if not registered
+	 */
+	static ChunkCodec get(String name) {
+		return CODECS.get(name);
+	}
+
+	/**
+	 *
+	 * @param id the id written in a chunk file
+	 * @return null if not registered
+	 */
+	static ChunkCodec get(byte id) {
+		for (ChunkCodec codec : CODECS.values()) {
+			if (codec.getId() == id) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @return the id written in the chunk file. Must be unique.
+	 */
+	byte getId();
+
+	/**
+	 *
+	 * @return the name used in the map CVar "chunkCodec"
+	 */
+	String getName();
+
+	/**
+	 * Writes the blocks. The written data must show where it ends because the
+	 * entities follow.
+	 *
+	 * @param blocks
+	 * @param blocksX
+	 * @param blocksY
+	 * @param blocksZ
+	 * @param out
+	 * @throws IOException
+	 */
+	void encode(byte[] blocks, int blocksX, int blocksY, int blocksZ, OutputStream out) throws IOException;
+
+	/**
+	 * Reads the blocks written by {@link #encode(byte[], int, int, int, OutputStream)}.
+	 * After the call the position of the buffer is after the blocks.
+	 *
+	 * @param in
+	 * @param blocks every cell is overwritten
+	 * @param blocksX
+	 * @param blocksY
+	 * @param blocksZ
+	 * @throws IOException if the data is corrupt
+	 */
+	void decode(ByteBuffer in, byte[] blocks, int blocksX, int blocksY, int blocksZ) throws IOException;
+}
@@ -33,16 +33,24 @@ package com.bombinggames.wurfelengine.core.map;
 import java.io.File;
 
 /**
- *
+ * A request to load or generate a chunk. Executed by the loading threads of the {@link Map}.
  * @author Benedikt Vogler
  */
 public class ChunkLoader implements Runnable{
-	private Chunk chunk;
+	private volatile Chunk chunk;
 	private final Generator generator;
 	private final File path;
 	private final int coordY;
 	private final int coordX;
 	private final Map map;
+	/**
+	 * if true the request may be dropped if it leaves the view before it is started
+	 */
+	private final boolean cancelable;
+	/**
+	 * lower values are loaded first
+	 */
+	private float priority;
 
 	/**
 	 *
@@ -53,7 +61,21 @@ public class ChunkLoader implements Runnable{
 	 * @param generator
 	 */
 	public ChunkLoader(final Map map, final File path, final int coordX, final int coordY, final Generator generator) {
+		this(map, path, coordX, coordY, generator, false);
+	}
+
+	/**
+	 *
+	 * @param map
+	 * @param path
+	 * @param coordX
+	 * @param coordY
+	 * @param generator
+	 * @param cancelable if true the request may be dropped if no camera needs the chunk anymore before it is started
+	 */
+	public ChunkLoader(final Map map, final File path, final int coordX, final int coordY, final Generator generator, boolean cancelable) {
 		this.map = map;
+		this.cancelable = cancelable;
 		this.coordX = coordX;
 		this.coordY = coordY;
 		this.path = path;
@@ -89,5 +111,29 @@ public class ChunkLoader implements Runnable{
 	public int getCoordY() {
 		return coordY;
 	}
+
+	/**
+	 *
+	 * @return true if the request may be dropped before it is started
+	 */
+	public boolean isCancelable() {
+		return cancelable;
+	}
+
+	/**
+	 * lower values are loaded first
+	 * @return
+	 */
+	public float getPriority() {
+		return priority;
+	}
+
+	/**
+	 * lower values are loaded first
+	 * @param priority
+	 */
+	public void setPriority(float priority) {
+		this.priority = priority;
+	}
 	
 }
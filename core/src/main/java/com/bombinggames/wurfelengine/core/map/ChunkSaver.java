@@ -0,0 +1,283 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.LongMap;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link Chunk.Snapshot}s on a background thread. Files are written
+ * buffered and synced to the disk in batches. Journals of region files are
+ * compacted on this thread. Callbacks are called on the
+ * thread calling {@link #update()}.
+ *
+ * @author Benedikt Vogler
+ */
+public class ChunkSaver {
+
+	/**
+	 * Called after a save request was written.
+	 */
+	public interface Callback {
+
+		/**
+		 *
+		 * @param success false if at least one chunk could not be written
+		 */
+		void saved(boolean success);
+	}
+
+	/**
+	 * amount of files which are synced to the disk together
+	 */
+	private static final int BATCHSIZE = 32;
+
+	private final ExecutorService thread;
+	/**
+	 * saves which may not be finished. Key is {@link Map#getChunkKey(int, int)}.
+	 */
+	private final LongMap<Future<?>> pendingSaves = new LongMap<>(8);
+	/**
+	 * callbacks of finished saves
+	 */
+	private final ConcurrentLinkedQueue<Runnable> finished = new ConcurrentLinkedQueue<>();
+
+	/**
+	 *
+	 */
+	public ChunkSaver() {
+		thread = Executors.newSingleThreadExecutor((Runnable r) -> {
+			Thread t = new Thread(r, "saveChunk");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Writes the snapshots in the background.
+	 *
+	 * @param path the map directory
+	 * @param saveSlot
+	 * @param regionFiles if true the chunks are written into {@link RegionFile}s
+	 * @param snapshots
+	 * @param callback can be null
+	 */
+	public void save(final File path, final int saveSlot, final boolean regionFiles, final List<Chunk.Snapshot> snapshots, final Callback callback) {
+		Future<?> future = thread.submit(() -> {
+			boolean success = regionFiles ? writeRegions(path, saveSlot, snapshots) : write(path, saveSlot, snapshots);
+			if (callback != null) {
+				finished.add(() -> callback.saved(success));
+			}
+		});
+		synchronized (pendingSaves) {
+			//forget finished saves
+			Iterator<Future<?>> saves = pendingSaves.values().iterator();
+			while (saves.hasNext()) {
+				if (saves.next().isDone()) {
+					saves.remove();
+				}
+			}
+			for (Chunk.Snapshot snapshot : snapshots) {
+				pendingSaves.put(Map.getChunkKey(snapshot.getChunkX(), snapshot.getChunkY()), future);
+			}
+		}
+	}
+
+	/**
+	 * Writes every snapshot and syncs the files in batches.
+	 *
+	 * @param path
+	 * @param saveSlot
+	 * @param snapshots
+	 * @return false if a chunk could not be written
+	 */
+	private boolean write(File path, int saveSlot, List<Chunk.Snapshot> snapshots) {
+		boolean success = true;
+		ArrayList<FileOutputStream> unsynced = new ArrayList<>(BATCHSIZE);
+		for (int i = 0; i < snapshots.size(); i++) {
+			Chunk.Snapshot snapshot = snapshots.get(i);
+			FileOutputStream fos = null;
+			try {
+				fos = new FileOutputStream(snapshot.getFile(path, saveSlot));
+				snapshot.write(new BufferedOutputStream(fos));
+				unsynced.add(fos);
+			} catch (IOException ex) {
+				Gdx.app.error("ChunkSaver", "Chunk " + snapshot.getChunkX() + "," + snapshot.getChunkY() + " could not be saved: " + ex);
+				snapshot.failed();
+				success = false;
+				if (fos != null) {
+					try {
+						fos.close();
+					} catch (IOException ex1) {
+					}
+				}
+			}
+			if (unsynced.size() >= BATCHSIZE || i == snapshots.size() - 1) {
+				success &= sync(unsynced);
+			}
+		}
+		return success;
+	}
+
+	/**
+	 * Writes every snapshot into the region files and syncs the touched
+	 * regions in batches.
+	 *
+	 * @param path
+	 * @param saveSlot
+	 * @param snapshots
+	 * @return false if a chunk could not be written
+	 */
+	private boolean writeRegions(File path, int saveSlot, List<Chunk.Snapshot> snapshots) {
+		boolean success = true;
+		HashSet<RegionFile> unsynced = new HashSet<>(4);
+		for (int i = 0; i < snapshots.size(); i++) {
+			Chunk.Snapshot snapshot = snapshots.get(i);
+			try {
+				unsynced.add(snapshot.writeToRegion(path, saveSlot));
+			} catch (IOException ex) {
+				Gdx.app.error("ChunkSaver", "Chunk " + snapshot.getChunkX() + "," + snapshot.getChunkY() + " could not be saved: " + ex);
+				snapshot.failed();
+				success = false;
+			}
+			if ((i + 1) % BATCHSIZE == 0 || i == snapshots.size() - 1) {
+				for (RegionFile region : unsynced) {
+					try {
+						region.sync();
+						if (region.shouldCompact()) {
+							region.compact();
+						}
+					} catch (IOException ex) {
+						Gdx.app.error("ChunkSaver", "Sync failed: " + ex);
+						success = false;
+					}
+				}
+				unsynced.clear();
+			}
+		}
+		return success;
+	}
+
+	/**
+	 * Forces the files to the disk and closes them.
+	 *
+	 * @param files is cleared
+	 * @return false if a file could not be synced
+	 */
+	private boolean sync(ArrayList<FileOutputStream> files) {
+		boolean success = true;
+		for (FileOutputStream fos : files) {
+			try {
+				fos.getFD().sync();
+			} catch (IOException ex) {
+				Gdx.app.error("ChunkSaver", "Sync failed: " + ex);
+				success = false;
+			}
+			try {
+				fos.close();
+			} catch (IOException ex) {
+				success = false;
+			}
+		}
+		files.clear();
+		return success;
+	}
+
+	/**
+	 * Blocks until a chunk is written to storage. A chunk must not be read
+	 * while its save is pending.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 */
+	public void awaitSave(int chunkX, int chunkY) {
+		Future<?> save;
+		synchronized (pendingSaves) {
+			save = pendingSaves.remove(Map.getChunkKey(chunkX, chunkY));
+		}
+		if (save != null) {
+			try {
+				save.get();
+			} catch (InterruptedException | ExecutionException ex) {
+				Gdx.app.error("ChunkSaver", "Waiting for save of chunk " + chunkX + "," + chunkY + " failed: " + ex);
+			}
+		}
+	}
+
+	/**
+	 * Blocks until every pending save is written to storage.
+	 */
+	public void awaitAll() {
+		try {
+			thread.submit(() -> {
+			}).get();
+		} catch (InterruptedException | ExecutionException ex) {
+			Gdx.app.error("ChunkSaver", "Waiting for saves failed: " + ex);
+		}
+	}
+
+	/**
+	 * Calls the callbacks of finished saves. Should be called once per frame.
+	 */
+	public void update() {
+		Runnable callback;
+		while ((callback = finished.poll()) != null) {
+			callback.run();
+		}
+	}
+
+	/**
+	 * Finishes every pending save and stops the thread.
+	 */
+	public void dispose() {
+		thread.shutdown();
+		try {
+			thread.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Gdx.app.error("ChunkSaver", "Interrupted while saving chunks.");
+		}
+		update();
+	}
+}
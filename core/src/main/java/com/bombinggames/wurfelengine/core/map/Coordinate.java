@@ -678,13 +678,7 @@ public class Coordinate implements Position {
 	@Override
 	public <T> LinkedList<T> getEntitiesNearby(float radius, Class<T> type) {
 		LinkedList<T> result = new LinkedList<>();
-		LinkedList<T> entities = Controller.getMap().getEntitys(type);
-		for (T entity : entities) {
-			if (getPoint().distanceToSquared(((AbstractEntity)entity).getPosition()) < radius*radius) {
-				result.add(entity);
-			}
-		}
-
+		Controller.getMap().getSpatialHash().queryRadius(getPoint(), radius, type, result);
 		return result;
 	}
 
@@ -57,4 +57,51 @@ public interface Generator {
 	 * @param z
 	 */
 	public abstract void spawnEntities(int x, int y, int z);
+
+	/**
+	 * Generates a whole column of cells. Override this if the cells of a
+	 * column share work, e.g. the height of the terrain.
+	 *
+	 * @param x absolute coord
+	 * @param y absolute coord
+	 * @param column receives the result of {@link #generate(int, int, int)} for every z starting at 0
+	 * @since v.1.9.2
+	 */
+	default void generateColumn(int x, int y, int[] column) {
+		for (int z = 0; z < column.length; z++) {
+			column[z] = generate(x, y, z);
+		}
+	}
+
+	/**
+	 * Spawns the entities of a whole chunk. Is called after the blocks are generated.
+	 *
+	 * @param left absolute coord of the first column
+	 * @param top absolute coord of the first column
+	 * @param blocksX
+	 * @param blocksY
+	 * @param blocksZ
+	 * @since v.1.9.2
+	 */
+	default void spawnEntities(int left, int top, int blocksX, int blocksY, int blocksZ) {
+		for (int x = left; x < left + blocksX; x++) {
+			for (int y = top; y < top + blocksY; y++) {
+				for (int z = 0; z < blocksZ; z++) {
+					spawnEntities(x, y, z);
+				}
+			}
+		}
+	}
+
+	/**
+	 * If true {@link #generate(int, int, int)} and
+	 * {@link #generateColumn(int, int, int[])} may be called from several
+	 * threads at the same time, so that chunks are generated in parallel.
+	 *
+	 * @return
+	 * @since v.1.9.2
+	 */
+	default boolean isThreadSafe() {
+		return false;
+	}
 }
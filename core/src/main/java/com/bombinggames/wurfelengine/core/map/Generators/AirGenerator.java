@@ -32,6 +32,7 @@
 package com.bombinggames.wurfelengine.core.map.Generators;
 
 import com.bombinggames.wurfelengine.core.map.Generator;
+import java.util.Arrays;
 
 /**
  * A simple generator who returns only air.
@@ -45,8 +46,22 @@ public class AirGenerator implements Generator {
         return 0;
     }
 
+	@Override
+	public void generateColumn(int x, int y, int[] column) {
+		Arrays.fill(column, 0);
+	}
+
 	@Override
 	public void spawnEntities(int x, int y, int z) {
 	}
 
+	@Override
+	public void spawnEntities(int left, int top, int blocksX, int blocksY, int blocksZ) {
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 }
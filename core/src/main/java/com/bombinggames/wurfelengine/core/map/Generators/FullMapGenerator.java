@@ -31,6 +31,7 @@
 package com.bombinggames.wurfelengine.core.map.Generators;
 
 import com.bombinggames.wurfelengine.core.map.Generator;
+import java.util.Arrays;
 
 /**
  * Fills the complete map with a block of a specific id.
@@ -55,8 +56,22 @@ public class FullMapGenerator implements Generator {
         return id;
     }
 
+	@Override
+	public void generateColumn(int x, int y, int[] column) {
+		Arrays.fill(column, id);
+	}
+
 	@Override
 	public void spawnEntities(int x, int y, int z) {
 	}
 
+	@Override
+	public void spawnEntities(int left, int top, int blocksX, int blocksY, int blocksZ) {
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 }
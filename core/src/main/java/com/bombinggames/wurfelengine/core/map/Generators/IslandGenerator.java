@@ -77,7 +77,38 @@ public class IslandGenerator implements Generator {
         //if (Math.random() < 0.15f && height < getBlocksZ()-1 && height > 2) data[x][y][height+1] = new Cell(35);
     }
 
+	@Override
+	public void generateColumn(int x, int y, int[] column) {
+		int height = Chunk.getBlocksZ()-1- Math.abs(mountainY-y)- Math.abs(mountainX-x);
+		for (int z = 0; z < column.length; z++) {
+			if (z == 0) {
+				column[z] = 8;
+			} else if (height > 0 && z < height) {//part of mountain?
+				if (height - 1 == z && z > 2) {
+					column[z] = 1;//grass on top
+				} else if (z > 2) {
+					column[z] = 2;
+				} else {
+					column[z] = 8;//sand
+				}
+			} else if (z == 1 || z == 2) {//water
+				column[z] = 9;
+			} else {
+				column[z] = 0;
+			}
+		}
+	}
+
 	@Override
 	public void spawnEntities(int x, int y, int z) {
 	}
+
+	@Override
+	public void spawnEntities(int left, int top, int blocksX, int blocksY, int blocksZ) {
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
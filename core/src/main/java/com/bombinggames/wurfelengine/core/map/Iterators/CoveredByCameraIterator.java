@@ -54,7 +54,7 @@ public class CoveredByCameraIterator implements Iterator<RenderCell> {
 	/**
 	 * Always points to a block. Iterates over a chunk.
 	 */
-	private DataIterator3D<RenderCell> blockIterator;
+	private RenderChunkIterator blockIterator;
 	private RenderChunk currentChunk;
 
 	private int topLevel;
@@ -107,27 +107,37 @@ public class CoveredByCameraIterator implements Iterator<RenderCell> {
 	 */
 	@Override
 	public RenderCell next() throws NoSuchElementException {
+		if (moveToCell()) {
+			return blockIterator.next();
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Moves to the next chunk if the end of the current chunk is reached.
+	 * Chunks without cells are skipped because air is not iterated.
+	 *
+	 * @return false if there is no cell left
+	 */
+	private boolean moveToCell() {
 		//reached end of chunk?-> move to next chunk
-		if (blockIterator == null || !blockIterator.hasNext()) {
-			currentChunk = null;
-			blockIterator = null;
-			while (currentChunk == null && getNextChunk(chunkNum) != null) {//if has one move to next
-				currentChunk = getNextChunk(chunkNum);
-				chunkNum++;
+		while (blockIterator == null || !blockIterator.hasNext()) {
+			if (chunkNum >= 8) {
+				return false;
 			}
-			//found chunk
+			chunkNum++;
+			currentChunk = renderStorage.getChunk(
+				centerChunkX - 1 + chunkNum % 3,
+				centerChunkY - 1 + chunkNum / 3
+			);
 			if (currentChunk != null) {
 				blockIterator = currentChunk.getIterator(startingZ, topLevel);//reset chunkIterator
-			} else {//can not find a new  block iterator
-				return null;
+			} else {
+				blockIterator = null;
 			}
 		}
-
-		if (chunkNum < 9) {
-			return blockIterator.next();
-		} else {
-			return null;
-		}
+		return true;
 	}
 
 	/**
@@ -144,32 +154,13 @@ public class CoveredByCameraIterator implements Iterator<RenderCell> {
 		};
 	}
 
-	/**
-	 *
-	 * @param current starting index: [0-8]
-	 * @return
-	 */
-	private RenderChunk getNextChunk(int current) {
-		while (current < 8) { //if has one move to next
-			current++;
-			RenderChunk chunk = renderStorage.getChunk(
-				centerChunkX - 1 + current % 3,
-				centerChunkY - 1 + current / 3
-			);
-			if (chunk != null) {
-				return chunk;
-			}
-		}
-		return null;
-	}
-
 	/**
 	 *
 	 * @return
 	 */
 	@Override
 	public boolean hasNext() {
-		return chunkNum < 9 && ((blockIterator != null && blockIterator.hasNext()) || getNextChunk(chunkNum) != null);
+		return moveToCell();
 	}
 
 }
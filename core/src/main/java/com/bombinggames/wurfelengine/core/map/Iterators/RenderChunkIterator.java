@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map.Iterators;
+
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderChunk;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator iterating over the cells of a {@link RenderChunk}. Air is
+ * skipped so that no view is created for it. First iterates z then x then y.
+ *
+ * @author Benedikt Vogler
+ */
+public class RenderChunkIterator implements Iterator<RenderCell> {
+
+	/**
+	 * index position of the cell returned last
+	 */
+	private final int[] pos = new int[3];
+	/**
+	 * index position of the next cell which is not air
+	 */
+	private final int[] nextPos = new int[3];
+	/**
+	 * true if {@link #nextPos} is searched for the current position
+	 */
+	private boolean searched;
+	private boolean found;
+	private final RenderChunk chunk;
+	private final int startingZ;
+	private int limitZ;
+
+	/**
+	 *
+	 * @param chunk
+	 * @param startingZ the starting layer
+	 * @param limitZ the last layer (including).
+	 */
+	public RenderChunkIterator(RenderChunk chunk, final int startingZ, final int limitZ) {
+		if (chunk == null) {
+			throw new IllegalArgumentException();
+		}
+		this.chunk = chunk;
+		this.startingZ = startingZ;
+		this.limitZ = limitZ;
+		if (this.limitZ >= Chunk.getBlocksZ()) {
+			this.limitZ = Chunk.getBlocksZ() - 1;
+		}
+		if (this.limitZ <= startingZ) {
+			this.limitZ = startingZ + 1;
+		}
+		pos[2] = startingZ - 1; //start at -1 because the first call of next should return the first element
+	}
+
+	/**
+	 * set the top/last limit of the iteration (including).
+	 *
+	 * @param zLimit
+	 */
+	public void setTopLimitZ(int zLimit) {
+		this.limitZ = zLimit;
+		searched = false;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!searched) {
+			searchNext();
+		}
+		return found;
+	}
+
+	@Override
+	public RenderCell next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		pos[0] = nextPos[0];
+		pos[1] = nextPos[1];
+		pos[2] = nextPos[2];
+		searched = false;
+		return chunk.getCellByIndex(pos[0], pos[1], pos[2]);
+	}
+
+	/**
+	 * finds the next cell which is not air
+	 */
+	private void searchNext() {
+		int x = pos[0];
+		int y = pos[1];
+		int z = pos[2];
+		found = false;
+		while (!found) {
+			if (z < limitZ) {// go higher if it can
+				z++;
+			} else if (x < Chunk.getBlocksX() - 1) { // go right if it can
+				x++;
+				z = startingZ;
+			} else if (y < Chunk.getBlocksY() - 1) {// go down if it can and start at x=0
+				y++;
+				x = 0;
+				z = startingZ;
+			} else {
+				break;
+			}
+			found = chunk.getCellId(x, y, z) != 0;
+		}
+		nextPos[0] = x;
+		nextPos[1] = y;
+		nextPos[2] = z;
+		searched = true;
+	}
+
+	/**
+	 * get the reference to the indices position of the iterator
+	 *
+	 * @return
+	 */
+	public int[] getCurrentIndex() {
+		return pos;
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.Gdx;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The format of map version 4 and earlier. Stores id and value (for non-air)
+ * per block and skips empty layers. The health is not stored.
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public class LegacyChunkCodec implements ChunkCodec {
+
+	@Override
+	public byte getId() {
+		return 0;
+	}
+
+	@Override
+	public String getName() {
+		return "legacy";
+	}
+
+	@Override
+	public void encode(byte[] blocks, int blocksX, int blocksY, int blocksZ, OutputStream out) throws IOException {
+		for (int z = 0; z < blocksZ; z++) {
+			//check if layer is empty
+			boolean dirty = false;
+			for (int i = z * 3; i < blocks.length; i += blocksZ * 3) {
+				if (blocks[i] != 0) {
+					dirty = true;
+					break;
+				}
+			}
+			if (dirty) {
+				for (int y = 0; y < blocksY; y++) {
+					for (int x = 0; x < blocksX; x++) {
+						int i = ((x * blocksY + y) * blocksZ + z) * 3;
+						out.write(blocks[i]);
+						if (blocks[i] != 0) {//value would be redundand for air
+							out.write(blocks[i + 1]);
+						}
+					}
+				}
+			} else {
+				out.write(Chunk.SIGN_COMMAND);
+				out.write(Chunk.SIGN_EMTPYLAYER);
+			}
+		}
+		out.write(Chunk.SIGN_COMMAND);
+		out.write(Chunk.SIGN_ENDBLOCKS);
+	}
+
+	@Override
+	public void decode(ByteBuffer in, byte[] blocks, int blocksX, int blocksY, int blocksZ) throws IOException {
+		int z = 0;
+		int x = 0;
+		int y = 0;
+		byte id = -1;//undefined
+
+		byte bChar;
+		boolean command = false;
+		//read a byte for the blocks
+		do {
+			if (!in.hasRemaining()) return;//eof
+			bChar = in.get();
+			if (bChar == -1) return;
+			boolean skip = false;
+
+			if (bChar == Chunk.SIGN_COMMAND) {
+				command = true;
+			} else {
+				if (command) {
+					command = false;
+					if (bChar == Chunk.SIGN_EMTPYLAYER) {
+						for (x = 0; x < blocksX; x++) {
+							for (y = 0; y < blocksY; y++) {
+								int i = ((x * blocksY + y) * blocksZ + z) * 3;
+								blocks[i] = 0;//id
+								blocks[i + 1] = 0;//value
+								blocks[i + 2] = 0;//damage
+							}
+						}
+						x = 0;
+						y = 0;
+						z++;
+						skip = true;
+					}
+
+					if (bChar == Chunk.SIGN_ENDBLOCKS) {
+						return;
+					}
+				}
+
+				if (!skip) {
+					try {
+						//fill layer block by block
+						if (id == -1) {
+							id = bChar;
+
+							if (id == 0) {
+								int i = ((x * blocksY + y) * blocksZ + z) * 3;
+								blocks[i] = id;
+								blocks[i + 1] = 0;//value
+								blocks[i + 2] = 0;//damage
+								id = -1;
+								x++;
+								if (x == blocksX) {
+									y++;
+									x = 0;
+								}
+								if (y == blocksY) {
+									x = 0;
+									y = 0;
+									z++;
+								}
+							}
+						} else {
+							int i = ((x * blocksY + y) * blocksZ + z) * 3;
+							blocks[i] = id;
+							blocks[i + 1] = bChar;
+							blocks[i + 2] = 0;//damage
+							x++;
+							if (x == blocksX) {
+								y++;
+								x = 0;
+							}
+							if (y == blocksY) {
+								x = 0;
+								y = 0;
+								z++;
+							}
+							id = -1;
+						}
+					} catch (ArrayIndexOutOfBoundsException ex) {
+						Gdx.app.error("LegacyChunkCodec", "too much blocks loaded at position " + x + "," + y + "," + z + ". Map file corrrupt?");
+						break;
+					}
+				}
+			}
+		} while (bChar != -1);
+	}
+}
@@ -32,6 +32,7 @@ package com.bombinggames.wurfelengine.core.map;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.ai.msg.MessageManager;
+import com.badlogic.gdx.ai.msg.Telegraph;
 import com.badlogic.gdx.ai.pfa.Connection;
 import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
 import com.badlogic.gdx.ai.pfa.Heuristic;
@@ -39,23 +40,37 @@ import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
 import com.badlogic.gdx.ai.pfa.indexed.IndexedGraph;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.LongMap;
 import com.bombinggames.wurfelengine.WE;
+import com.bombinggames.wurfelengine.core.Camera;
 import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.Events;
+import com.bombinggames.wurfelengine.core.GameplayScreen;
 import com.bombinggames.wurfelengine.core.cvar.CVarSystemMap;
 import com.bombinggames.wurfelengine.core.cvar.CVarSystemSave;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
+import com.bombinggames.wurfelengine.core.gameobjects.CollisionSystem;
+import com.bombinggames.wurfelengine.core.gameobjects.EntityStore;
+import com.bombinggames.wurfelengine.core.gameobjects.EntityTypeRegistry;
+import com.bombinggames.wurfelengine.core.gameobjects.SpatialHash;
 import com.bombinggames.wurfelengine.core.map.Generators.AirGenerator;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  * A map stores many chunks in a hash map. It also contains the
@@ -70,7 +85,7 @@ public class Map implements IndexedGraph<PfNode> {
 	/**
 	 *
 	 */
-	public final static Integer MAPVERSION = 4;
+	public final static Integer MAPVERSION = 5;
 
 	/**
 	 * Set the generator used for every new instance.
@@ -155,9 +170,45 @@ public class Map implements IndexedGraph<PfNode> {
 	}
 
 	/**
-	 * every entity on the map is stored in this field
+	 * the entities by position
 	 */
-	private final ArrayList<AbstractEntity> entityList = new ArrayList<>(40);
+	private final SpatialHash spatialHash = new SpatialHash();
+	/**
+	 * the entities by class
+	 */
+	private final EntityTypeRegistry typeRegistry = new EntityTypeRegistry();
+	/**
+	 * every entity on the map
+	 */
+	private final EntityStore entityStore = new EntityStore(spatialHash, typeRegistry);
+	/**
+	 * pushes colliding movable entities apart
+	 */
+	private final CollisionSystem collisions = new CollisionSystem();
+	/**
+	 * thread safe entities which are updated in parallel in this frame
+	 */
+	private final ArrayList<AbstractEntity> parallelEntities = new ArrayList<>(40);
+	/**
+	 * the time passed to the update of {@link #parallelEntities}
+	 */
+	private final FloatArray parallelDts = new FloatArray(40);
+	/**
+	 * the longest step of the update of {@link #parallelEntities}
+	 */
+	private final FloatArray parallelSteps = new FloatArray(40);
+	/**
+	 * true while thread safe entities are updated in parallel
+	 */
+	private volatile boolean updatingInParallel;
+	/**
+	 * messages sent during the parallel update
+	 */
+	private final ConcurrentLinkedQueue<BufferedMessage> bufferedMessages = new ConcurrentLinkedQueue<>();
+	/**
+	 * entities disposed during the parallel update
+	 */
+	private final ConcurrentLinkedQueue<AbstractEntity> bufferedDisposals = new ConcurrentLinkedQueue<>();
 	private boolean modified = true;
 	/**
 	 * observer pattern
@@ -167,23 +218,52 @@ public class Map implements IndexedGraph<PfNode> {
 	private int activeSaveSlot;
 
 	/**
-	 * Stores the data of the map. Hash function is chunkX*chunkDim + chunkY. This means that there are only collision once you are outside the possible range specified in chunkDim. Was a 2d array before with same functionality but limited to dimensions of the array. HashMap now allows (slower) access to out-of-scope areas. TODO: Collisions can be avoided if areas, which are not active are pruned.
+	 * Stores the data of the map. The key contains both chunk coordinates (see {@link #getChunkKey(int, int)}) so there are no collisions and no bounds on the map size. Was a HashMap with key chunkX*chunkDim + chunkY before, which boxed the key on every access.
 	 */
-	private HashMap<Integer, Chunk> data;
+	private final LongMap<Chunk> data;
+	/**
+	 * the chunk which was returned by the last lookup. Most lookups hit the same chunk as the one before.
+	 */
+	private Chunk lastChunk;
 	/**
 	 * contains evey loaded chunk for fast iteration
 	 */
 	private LinkedList<Chunk> loadedChunks;
 	
-	private final ArrayList<ChunkLoader> loadingRunnables = new ArrayList<>(9);
 	/**
-	 * The amount of chunks in memory in one dimension.
+	 * every requested chunk which is not yet added to the map. Key is {@link #getChunkKey(int, int)}.
+	 */
+	private final LongMap<ChunkLoader> loadingRequests = new LongMap<>(16);
+	/**
+	 * requests waiting for a free loading thread, sorted by priority
+	 */
+	private final ArrayList<ChunkLoader> pendingLoaders = new ArrayList<>(9);
+	/**
+	 * filled by the loading threads, drained once per frame
+	 */
+	private final ConcurrentLinkedQueue<ChunkLoader> loadedQueue = new ConcurrentLinkedQueue<>();
+	private final ExecutorService loadingPool;
+	private final int loadingThreads;
+	/**
+	 * amount of requests handed to the loading threads and not yet drained
+	 */
+	private int runningLoaders;
+	/**
+	 * If the loaded chunks use more bytes least recently used chunks are unloaded.
 	 */
-	private final int chunkDim;
+	private final long memoryBudget;
 	/**
-	 * Limits the amount of chunks which can be loaded into memory.
+	 * estimated bytes used by the loaded chunks
 	 */
-	private final int maxChunks;
+	private long memoryUsed;
+	/**
+	 * counts the updates, used as a clock for least recently used chunks
+	 */
+	private long frame;
+	/**
+	 * saves chunks in the background
+	 */
+	private final ChunkSaver chunkSaver = new ChunkSaver();
 	private final CVarSystemMap cVars;
 
 	/**
@@ -212,11 +292,16 @@ public class Map implements IndexedGraph<PfNode> {
 		this.generator = generator;
 		
 		//init data array
-		chunkDim = WE.getCVars().getValueI("mapIndexSpaceSize");
-		data = new HashMap<>(chunkDim*chunkDim, 0.5f);
+		data = new LongMap<>(WE.getCVars().getValueI("mapIndexSpaceSize"));
 		
-		maxChunks = WE.getCVars().getValueI("mapMaxMemoryUseBytes") / (Chunk.getBlocksX()*Chunk.getBlocksY()*Chunk.getBlocksZ()*3); //each block uses three bytes: id, sub id, health
+		memoryBudget = WE.getCVars().getValueI("mapMaxMemoryUseBytes");
 		loadedChunks = new LinkedList<>();
+		loadingThreads = Math.max(1, WE.getCVars().getValueI("mapLoadingThreads"));
+		loadingPool = Executors.newFixedThreadPool(loadingThreads, (Runnable r) -> {
+			Thread thread = new Thread(r, "loadChunk");
+			thread.setDaemon(true);
+			return thread;
+		});
 		WE.getCVars().get("loadedMap").setValue(name.getName());
 		
 		//load map cVars
@@ -238,6 +323,58 @@ public class Map implements IndexedGraph<PfNode> {
 	public CVarSystemMap getCVars() {
 		return cVars;
 	}
+
+	/**
+	 * Check if the chunks are stored in {@link RegionFile}s instead of one file per chunk.
+	 *
+	 * @return
+	 * @since v.1.9.2
+	 */
+	public boolean usesRegionFiles() {
+		return cVars.getValueB("useRegionFiles");
+	}
+
+	/**
+	 * Check if changed cells are appended to the journal of the region files
+	 * instead of saving the whole chunk.
+	 *
+	 * @return
+	 * @since v.1.9.2
+	 */
+	public boolean usesJournal() {
+		return usesRegionFiles() && cVars.getValueB("useJournal");
+	}
+
+	/**
+	 * Get the codec used for writing chunks, set by the map CVar "chunkCodec".
+	 * Chunks are read with the codec they were written with. If it is not the
+	 * legacy codec the version of an older map is raised to {@link #MAPVERSION}.
+	 *
+	 * @return {@link ChunkCodec#PALETTE} if the CVar names no registered codec
+	 * @since v.1.9.2
+	 */
+	public ChunkCodec getChunkCodec() {
+		ChunkCodec codec = ChunkCodec.get(cVars.getValueS("chunkCodec"));
+		if (codec == null) {
+			Gdx.app.error("Map", "Unknown chunk codec \"" + cVars.getValueS("chunkCodec") + "\". Using " + ChunkCodec.PALETTE.getName() + ".");
+			codec = ChunkCodec.PALETTE;
+		}
+		if (codec != ChunkCodec.LEGACY && cVars.getValueI("MapVersion") < MAPVERSION) {
+			updateMapVersion();
+		}
+		return codec;
+	}
+
+	/**
+	 * Marks the map as written by this version because chunks written with a
+	 * codec can not be read by older versions.
+	 */
+	private synchronized void updateMapVersion() {
+		if (cVars.getValueI("MapVersion") < MAPVERSION) {
+			Gdx.app.log("Map", "Updating map version from " + cVars.getValueI("MapVersion") + " to " + MAPVERSION + ".");
+			cVars.get("MapVersion").setValue(MAPVERSION);
+		}
+	}
 	
 	
 	/**
@@ -258,41 +395,181 @@ public class Map implements IndexedGraph<PfNode> {
 	 */
 	public void update(float dt) {
 		dt *= WE.getCVars().getValueF("timespeed");//apply game speed
+		frame++;
+		chunkSaver.update();
 
 		//add parralell loaded chunks serial to avoid conflicts
-		for (int i = 0; i < loadingRunnables.size(); i++) {
-			ChunkLoader runnable = loadingRunnables.get(i);
-			if (runnable.getChunk() != null) {//loaded
-				if (loadedChunks.size() < maxChunks ) {
-					loadedChunks.add(runnable.getChunk());
-					data.put(runnable.getCoordX()*chunkDim+runnable.getCoordY(), runnable.getChunk());
-					addEntities(runnable.getChunk().retrieveEntities());
-					setModified();
-				}
-				loadingRunnables.remove(i);
+		ChunkLoader runnable;
+		while ((runnable = loadedQueue.poll()) != null) {
+			synchronized (loadingRequests) {
+				loadingRequests.remove(getChunkKey(runnable.getCoordX(), runnable.getCoordY()));
+				runningLoaders--;
 			}
+			if (runnable.getChunk() != null
+				&& getChunk(runnable.getCoordX(), runnable.getCoordY()) == null
+			) {
+				addChunk(runnable.getChunk());
+			}
+		}
+		if (memoryUsed > memoryBudget) {
+			unloadChunks();
 		}
+		scheduleChunkLoading();
 		
+		List<Camera> cameras = getLoadingCameras();
+		int logicRadius = WE.getCVars().getValueI("mapLogicRadius");
 		for (Chunk chunk : loadedChunks) {
 			if (chunk != null) {
+				chunk.setActive(isNearCamera(chunk.getChunkX(), chunk.getChunkY(), cameras, logicRadius));
 				chunk.update(dt);
 			}
 		}
 
-		//update every entity
-		//old style for loop because allows modification during loop
-		for (int i = 0; i < entityList.size(); i++) {
-			AbstractEntity entity = entityList.get(i);
+		//update every entity, entities added during the update are added afterwards
+		entityStore.defer();
+		boolean parallel = WE.getCVars().getValueB("mapParallelEntities");
+		int lodRadius = WE.getCVars().getValueI("mapEntityLodRadius");
+		float lodStep = WE.getCVars().getValueF("mapEntityLodStep");
+		float rawDt = Gdx.graphics.getRawDeltaTime() * 1000f;
+		ArrayList<AbstractEntity> entities = entityStore.getEntities();
+		for (int i = 0; i < entities.size(); i++) {
+			AbstractEntity entity = entities.get(i);
 			if (!entity.isInMemoryArea()) {
 				entity.requestChunk();
 			}
 			//entities withouth being spawned are also updated
-			if (!entity.shouldBeDisposed())
-				entity.update(entity.useRawDelta() ? Gdx.graphics.getRawDeltaTime() * 1000f : dt);
+			if (!entity.shouldBeDisposed()) {
+				Point pos = entity.getPosition();
+				boolean distant = pos != null && !isNearCamera(
+					Math.floorDiv((int) pos.x, Chunk.getGameWidth()),
+					Math.floorDiv((int) pos.y, Chunk.getGameDepth()),
+					cameras,
+					lodRadius
+				);
+				float frameDt = entity.useRawDelta() ? rawDt : dt;
+				float entityDt = entity.getLodDelta(frameDt, distant);
+				if (entityDt >= 0) {
+					float maxStep = Math.max(lodStep, frameDt);
+					if (parallel && entity.isThreadSafe()) {
+						parallelEntities.add(entity);
+						parallelDts.add(entityDt);
+						parallelSteps.add(maxStep);
+						continue;
+					}
+					updateInSteps(entity, entityDt, maxStep);
+				}
+			}
+			afterEntityUpdate(entity);
+		}
+
+		if (!parallelEntities.isEmpty()) {
+			updatingInParallel = true;
+			try {
+				IntStream.range(0, parallelEntities.size()).parallel().forEach((int i) -> {
+					updateInSteps(parallelEntities.get(i), parallelDts.get(i), parallelSteps.get(i));
+				});
+			} finally {
+				updatingInParallel = false;
+			}
+			BufferedMessage message;
+			while ((message = bufferedMessages.poll()) != null) {
+				MessageManager.getInstance().dispatchMessage(message.sender, message.msg, message.extraInfo);
+			}
+			AbstractEntity disposed;
+			while ((disposed = bufferedDisposals.poll()) != null) {
+				disposed.dispose();
+			}
+			for (AbstractEntity entity : parallelEntities) {
+				afterEntityUpdate(entity);
+			}
+			parallelEntities.clear();
+			parallelDts.clear();
+			parallelSteps.clear();
 		}
 
+		collisions.update(typeRegistry);
+
 		//remove not spawned objects from list
-		entityList.removeIf((AbstractEntity entity) -> !entity.hasPosition() || entity.shouldBeDisposed());
+		entityStore.applyChanges();
+	}
+
+	/**
+	 * Updates an entity. Time accumulated by the level of detail is passed in
+	 * steps, so that a moving entity can not pass through a block between two
+	 * collision checks.
+	 *
+	 * @param entity
+	 * @param dt
+	 * @param maxStep longest time passed to one update
+	 * @see AbstractEntity#getDistantUpdateInterval()
+	 */
+	private static void updateInSteps(AbstractEntity entity, float dt, float maxStep) {
+		while (maxStep > 0 && dt > maxStep) {
+			entity.update(maxStep);
+			dt -= maxStep;
+			if (entity.shouldBeDisposed()) {
+				return;
+			}
+		}
+		entity.update(dt);
+	}
+
+	/**
+	 * Queues the removal of an entity which left the map or moves it in the
+	 * spatial hash.
+	 *
+	 * @param entity
+	 */
+	private void afterEntityUpdate(AbstractEntity entity) {
+		if (!entity.hasPosition() || entity.shouldBeDisposed()) {
+			entityStore.remove(entity);
+		} else {
+			spatialHash.update(entity);
+		}
+	}
+
+	/**
+	 * Sends a message with the {@link MessageManager}. During the parallel
+	 * entity update the message is delivered on the main thread after it.
+	 *
+	 * @param sender
+	 * @param msg
+	 * @param extraInfo
+	 * @see AbstractEntity#isThreadSafe()
+	 * @since v.1.9.2
+	 */
+	public void dispatchMessage(Telegraph sender, int msg, Object extraInfo) {
+		if (updatingInParallel) {
+			bufferedMessages.add(new BufferedMessage(sender, msg, extraInfo));
+		} else {
+			MessageManager.getInstance().dispatchMessage(sender, msg, extraInfo);
+		}
+	}
+
+	/**
+	 * Disposes an entity. During the parallel entity update the entity is
+	 * disposed on the main thread after it because disposing removes message
+	 * listeners.
+	 *
+	 * @param entity
+	 * @see AbstractEntity#isThreadSafe()
+	 * @since v.1.9.2
+	 */
+	public void disposeEntity(AbstractEntity entity) {
+		if (updatingInParallel) {
+			bufferedDisposals.add(entity);
+		} else {
+			entity.dispose();
+		}
+	}
+
+	/**
+	 *
+	 * @return true while thread safe entities are updated in parallel
+	 * @since v.1.9.2
+	 */
+	public boolean isUpdatingInParallel() {
+		return updatingInParallel;
 	}
 
 	/**
@@ -319,16 +596,116 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param chunkY
 	 */
 	public void loadChunk(int chunkX, int chunkY) {
-		if (loadedChunks.size() < maxChunks && Map.this.getChunk(chunkX, chunkY) == null) {
-			if (!isLoading(chunkX, chunkY)) {
-				ChunkLoader cl = new ChunkLoader(this, getPath(), chunkX, chunkY, getGenerator());
-				loadingRunnables.add(cl);
-				Thread thread = new Thread(cl, "loadChunk " + chunkX + "," + chunkY);
-				thread.start();
+		loadChunk(chunkX, chunkY, false);
+	}
+
+	/**
+	 * Starts loading of a chunk from storage if not already loaded. Non-blocking
+	 * method. Loading is performed by a pool of loading threads. Chunks closer to a camera are loaded first.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @param cancelable if true the request is dropped if it is further away than "mapLoadingCancelRadius" chunks from every camera before it is started
+	 * @since v.1.9.2
+	 */
+	public void loadChunk(int chunkX, int chunkY, boolean cancelable) {
+		if (getChunk(chunkX, chunkY) == null) {
+			synchronized (loadingRequests) {
+				long key = getChunkKey(chunkX, chunkY);
+				if (!loadingRequests.containsKey(key)) {
+					ChunkLoader cl = new ChunkLoader(this, getPath(), chunkX, chunkY, getGenerator(), cancelable);
+					loadingRequests.put(key, cl);
+					pendingLoaders.add(cl);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Drops pending requests which left the view, sorts the rest by the
+	 * distance to the nearest camera and hands them to free loading threads.
+	 */
+	private void scheduleChunkLoading() {
+		synchronized (loadingRequests) {
+			if (pendingLoaders.isEmpty()) {
+				return;
+			}
+			List<Camera> cameras = getLoadingCameras();
+			int cancelRadius = WE.getCVars().getValueI("mapLoadingCancelRadius");
+			pendingLoaders.removeIf((ChunkLoader loader) -> {
+				float minDistance = Float.POSITIVE_INFINITY;
+				int minChunkDistance = Integer.MAX_VALUE;
+				for (Camera camera : cameras) {
+					if (camera.isEnabled()) {
+						int dx = loader.getCoordX() - camera.getCenterChunkX();
+						int dy = loader.getCoordY() - camera.getCenterChunkY();
+						minDistance = Math.min(minDistance, dx * dx + dy * dy);
+						minChunkDistance = Math.min(minChunkDistance, Math.max(Math.abs(dx), Math.abs(dy)));
+					}
+				}
+				if (minChunkDistance == Integer.MAX_VALUE) {//no camera, keep order of requests
+					minDistance = 0;
+				} else if (loader.isCancelable() && minChunkDistance > cancelRadius) {
+					loadingRequests.remove(getChunkKey(loader.getCoordX(), loader.getCoordY()));
+					return true;
+				}
+				loader.setPriority(minDistance);
+				return false;
+			});
+			pendingLoaders.sort((ChunkLoader a, ChunkLoader b) -> Float.compare(a.getPriority(), b.getPriority()));
+
+			while (runningLoaders < loadingThreads && !pendingLoaders.isEmpty()) {
+				ChunkLoader loader = pendingLoaders.remove(0);
+				runningLoaders++;
+				loadingPool.execute(() -> {
+					try {
+						chunkSaver.awaitSave(loader.getCoordX(), loader.getCoordY());
+						loader.run();
+					} finally {
+						loadedQueue.add(loader);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Checks if a chunk is in the radius of an enabled camera.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @param cameras
+	 * @param radius in chunks
+	 * @return true if there is no enabled camera
+	 */
+	private static boolean isNearCamera(int chunkX, int chunkY, List<Camera> cameras, int radius) {
+		boolean noCamera = true;
+		for (Camera camera : cameras) {
+			if (camera.isEnabled()) {
+				if (Math.abs(chunkX - camera.getCenterChunkX()) <= radius
+					&& Math.abs(chunkY - camera.getCenterChunkY()) <= radius
+				) {
+					return true;
+				}
+				noCamera = false;
+			}
+		}
+		return noCamera;
+	}
+
+	/**
+	 * The cameras of the active view.
+	 *
+	 * @return empty if there is no view
+	 */
+	private static List<Camera> getLoadingCameras() {
+		GameplayScreen gameplay = WE.getGameplay();
+		if (gameplay == null || gameplay.getView() == null) {
+			return Collections.emptyList();
+		}
+		return gameplay.getView().getCameras();
+	}
+
 	/**
 	 * Loads a chunk from storage. Blocking method.
 	 *
@@ -339,23 +716,159 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @since v.1.8.1
 	 */
 	public Chunk loadChunkBlocking(int chunkX, int chunkY) {
-		if (loadedChunks.size() < maxChunks && getChunk(chunkX, chunkY) == null) {
+		if (getChunk(chunkX, chunkY) == null) {
 			if (!isLoading(chunkX, chunkY)) {
+				chunkSaver.awaitSave(chunkX, chunkY);
 				Chunk loaddedChunk = new Chunk(this, getPath(), chunkX, chunkY, getGenerator());
-				if (loadedChunks.size() < maxChunks) {
-					loadedChunks.add(loaddedChunk);
-					data.put(chunkX * chunkDim + chunkY, loaddedChunk);
-					addEntities(loaddedChunk.retrieveEntities());
-					setModified();
-					return loaddedChunk;
-				} else {
-					Gdx.app.error("Map", "Chunk failed to load. Maxmimum chunks loaded: " + maxChunks);
-				}
+				addChunk(loaddedChunk);
+				return loaddedChunk;
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Generates new chunks in a rectangle without looking for them on storage.
+	 * The blocks of several chunks are generated in parallel if the generator
+	 * is thread safe, on the fork-join pool of the calling thread or else the
+	 * common pool. The chunks are not added to the map and no entities are
+	 * spawned.
+	 *
+	 * @param left first chunk coordinate x
+	 * @param top first chunk coordinate y
+	 * @param width amount of chunks in x
+	 * @param depth amount of chunks in y
+	 * @param consumer receives every chunk on the thread which generated it
+	 * @see Generator#isThreadSafe()
+	 * @since v.1.9.2
+	 */
+	public void generateChunks(int left, int top, int width, int depth, Consumer<Chunk> consumer) {
+		final Generator gen = getGenerator();
+		IntStream indices = IntStream.range(0, width * depth);
+		if (gen.isThreadSafe()) {
+			indices = indices.parallel();
+		}
+		indices.forEach((int i) -> {
+			Chunk chunk = new Chunk(this, left + i % width, top + i / width);
+			chunk.fillBlocks(gen);
+			consumer.accept(chunk);
+		});
+	}
+
+	/**
+	 * Adds a loaded chunk to the map and spawns its entities.
+	 *
+	 * @param chunk
+	 */
+	private void addChunk(Chunk chunk) {
+		chunk.setLastUsed(frame);
+		loadedChunks.add(chunk);
+		data.put(getChunkKey(chunk.getChunkX(), chunk.getChunkY()), chunk);
+		memoryUsed += chunk.getMemoryUsage();
+		addEntities(chunk.retrieveEntities());
+		setModified();
+	}
+
+	/**
+	 * Unloads the least recently used chunks until the memory budget
+	 * ("mapMaxMemoryUseBytes") is met. Chunks closer than "mapUnloadRadius" to
+	 * a camera are kept.
+	 */
+	private void unloadChunks() {
+		List<Camera> cameras = getLoadingCameras();
+		int keepRadius = WE.getCVars().getValueI("mapUnloadRadius");
+		if (lastChunk != null) {
+			lastChunk.setLastUsed(frame);
+		}
+
+		ArrayList<Chunk> candidates = new ArrayList<>(loadedChunks.size());
+		for (Chunk chunk : loadedChunks) {
+			boolean nearCamera = false;
+			for (Camera camera : cameras) {
+				if (camera.isEnabled()
+					&& Math.abs(chunk.getChunkX() - camera.getCenterChunkX()) <= keepRadius
+					&& Math.abs(chunk.getChunkY() - camera.getCenterChunkY()) <= keepRadius
+				) {
+					nearCamera = true;
+					chunk.setLastUsed(frame);
+					break;
+				}
+			}
+			if (!nearCamera) {
+				candidates.add(chunk);
+			}
+		}
+		if (candidates.isEmpty()) {
+			return;
+		}
+		candidates.sort((Chunk a, Chunk b) -> Long.compare(a.getLastUsed(), b.getLastUsed()));
+
+		int unloaded = 0;
+		for (Chunk chunk : candidates) {
+			if (memoryUsed <= memoryBudget) {
+				break;
+			}
+			unloadChunk(chunk);
+			unloaded++;
+		}
+		if (unloaded > 0) {
+			Gdx.app.debug("Map", "Unloaded " + unloaded + " chunks.");
+			loadedChunks.removeIf((Chunk chunk) -> data.get(getChunkKey(chunk.getChunkX(), chunk.getChunkY())) != chunk);
+			setModified();
+		}
+	}
+
+	/**
+	 * Removes a chunk and its entities from the map. If the chunk must be saved
+	 * the file is written in the background. Does not remove the chunk from
+	 * {@link #loadedChunks}.
+	 *
+	 * @param chunk
+	 */
+	private void unloadChunk(Chunk chunk) {
+		final int chunkX = chunk.getChunkX();
+		final int chunkY = chunk.getChunkY();
+		long key = getChunkKey(chunkX, chunkY);
+		data.remove(key);
+		if (lastChunk == chunk) {
+			lastChunk = null;
+		}
+		memoryUsed -= chunk.getMemoryUsage();
+
+		byte[] entityData = null;
+		boolean save = chunk.isUnsaved(activeSaveSlot);
+		if (getPath() != null) {
+			ArrayList<AbstractEntity> entities = getEntitiesOnChunkSavedOnly(chunkX, chunkY);
+			save |= !entities.isEmpty();
+			try {
+				entityData = chunk.serializeEntities(entities);
+			} catch (IOException ex) {
+				Gdx.app.error("Map", "Entities of chunk " + chunkX + "," + chunkY + " could not be saved: " + ex);
+			}
+		}
+		chunk.dispose(this, null);//entities were serialized so they can be removed
+
+		if (save && getPath() != null) {
+			chunkSaver.save(getPath(), activeSaveSlot, usesRegionFiles(), Collections.singletonList(snapshot(chunk, entityData)), null);
+		}
+	}
+
+	/**
+	 * Creates a snapshot for saving a chunk in the active save slot. Only the
+	 * changed cells are saved if the journal is used and the chunk has no
+	 * entities.
+	 *
+	 * @param chunk
+	 * @param entityData
+	 * @return
+	 */
+	private Chunk.Snapshot snapshot(Chunk chunk, byte[] entityData) {
+		if (entityData == null && usesJournal() && chunk.canSaveDelta(activeSaveSlot)) {
+			return chunk.deltaSnapshot();
+		}
+		return chunk.snapshot(entityData, getChunkCodec(), activeSaveSlot);
+	}
+
 	/**
 	 * Loads a chunk from storage if not already loaded.
 	 *
@@ -381,13 +894,31 @@ public class Map implements IndexedGraph<PfNode> {
 	}
 
 	/**
-	 * Get the data of the map. From range in X [-chunkDim/2,chunkDim/2]
+	 * Get the loaded chunks. The keys are created with {@link #getChunkKey(int, int)}.
 	 *
 	 * @return
+	 * @since v.1.9.2
 	 */
-	public HashMap<Integer, Chunk> getData() {
+	public LongMap<Chunk> getChunkTable() {
 		return data;
 	}
+
+	/**
+	 * Get a copy of the loaded chunks keyed with chunkX*mapIndexSpaceSize + chunkY.
+	 *
+	 * @return
+	 * @deprecated the chunks are stored in a {@link LongMap}, use
+	 * {@link #getChunkTable()}
+	 */
+	@Deprecated
+	public HashMap<Integer, Chunk> getData() {
+		int chunkDim = WE.getCVars().getValueI("mapIndexSpaceSize");
+		HashMap<Integer, Chunk> copy = new HashMap<>(data.size * 2);
+		for (Chunk chunk : data.values()) {
+			copy.put(chunk.getChunkX() * chunkDim + chunk.getChunkY(), chunk);
+		}
+		return copy;
+	}
 	
 	/**
 	 *
@@ -553,8 +1084,7 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return can return null if not loaded
 	 */
 	public Chunk getChunkContaining(final Coordinate coord) {
-		return data.get(Math.floorDiv(coord.getX(), Chunk.getBlocksX())*chunkDim + Math.floorDiv(coord.getY(), Chunk.getBlocksY()));
-	
+		return getChunk(Math.floorDiv(coord.getX(), Chunk.getBlocksX()), Math.floorDiv(coord.getY(), Chunk.getBlocksY()));
 	}
 
 	/**
@@ -565,7 +1095,7 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return can return null if not loaded
 	 */
 	public Chunk getChunkContaining(int x, int y) {
-		return data.get(Math.floorDiv(x, Chunk.getBlocksX())*chunkDim + Math.floorDiv(y, Chunk.getBlocksY()));
+		return getChunk(Math.floorDiv(x, Chunk.getBlocksX()), Math.floorDiv(y, Chunk.getBlocksY()));
 	}
 	
 	/**
@@ -622,7 +1152,27 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return if not in memory returns null
 	 */
 	public Chunk getChunk(int chunkX, int chunkY) {
-		return data.get(chunkX*chunkDim + chunkY);//this is the hash function
+		Chunk chunk = lastChunk;//local copy because the loader threads also read
+		if (chunk != null && chunk.getChunkX() == chunkX && chunk.getChunkY() == chunkY) {
+			return chunk;
+		}
+		chunk = data.get(getChunkKey(chunkX, chunkY));
+		if (chunk != null) {
+			chunk.setLastUsed(frame);
+			lastChunk = chunk;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Packs both chunk coordinates into the key used by the chunk table.
+	 *
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @return upper 32 bit are x, lower 32 bit are y
+	 */
+	public static long getChunkKey(int chunkX, int chunkY) {
+		return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
 	}
 
 	/**
@@ -635,8 +1185,13 @@ public class Map implements IndexedGraph<PfNode> {
 	public ArrayList<AbstractEntity> getEntitiesOnChunk(final int xChunk, final int yChunk) {
 		ArrayList<AbstractEntity> list = new ArrayList<>(10);
 
-		//loop over every loaded entity
-		for (AbstractEntity ent : getEntities()) {
+		//loop over every entity near the chunk
+		for (AbstractEntity ent : spatialHash.query(
+			xChunk * Chunk.getGameWidth(), yChunk * Chunk.getGameDepth(), Float.NEGATIVE_INFINITY,
+			(xChunk + 1) * Chunk.getGameWidth(), (yChunk + 1) * Chunk.getGameDepth(), Float.POSITIVE_INFINITY,
+			AbstractEntity.class,
+			new ArrayList<>(10)
+		)) {
             if (
 					ent.hasPosition()
 				&&
@@ -665,8 +1220,13 @@ public class Map implements IndexedGraph<PfNode> {
 	public ArrayList<AbstractEntity> getEntitiesOnChunkSavedOnly(final int xChunk, final int yChunk) {
 		ArrayList<AbstractEntity> list = new ArrayList<>(10);
 
-		//loop over every loaded entity
-		for (AbstractEntity ent : getEntities()) {
+		//loop over every entity near the chunk
+		for (AbstractEntity ent : spatialHash.query(
+			xChunk * Chunk.getGameWidth(), yChunk * Chunk.getGameDepth(), Float.NEGATIVE_INFINITY,
+			(xChunk + 1) * Chunk.getGameWidth(), (yChunk + 1) * Chunk.getGameDepth(), Float.POSITIVE_INFINITY,
+			AbstractEntity.class,
+			new ArrayList<>(10)
+		)) {
             if (
 					ent.isSavedPersistent() && ent.hasPosition() //save only entities which are flagged
 				&&
@@ -692,19 +1252,44 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return
 	 */
 	public boolean save(int saveSlot) {
+		return save(saveSlot, null);
+	}
+
+	/**
+	 * Saves the chunks on the map in the background. Only chunks which were
+	 * changed, contain entities or are not yet in the save slot are written.
+	 * The blocks are copied only if they are changed before they are written.
+	 *
+	 * @param saveSlot
+	 * @param callback called during {@link #update(float)} after every chunk is written, can be null
+	 * @return false if the entities could not be serialized
+	 * @since v.1.9.2
+	 */
+	public boolean save(int saveSlot, ChunkSaver.Callback callback) {
+		if (getPath() == null) {
+			return false;
+		}
+		boolean success = true;
+		ArrayList<Chunk.Snapshot> snapshots = new ArrayList<>(loadedChunks.size());
+		ChunkCodec codec = getChunkCodec();
 		for (Chunk chunk : loadedChunks) {
-			try {
-				chunk.save(
-					this,
-					getPath(),
-					saveSlot
-				);
-			} catch (IOException ex) {
-				Logger.getLogger(Map.class.getName()).log(Level.SEVERE, null, ex);
-				return false;
+			ArrayList<AbstractEntity> entities = getEntitiesOnChunkSavedOnly(chunk.getChunkX(), chunk.getChunkY());
+			if (chunk.isUnsaved(saveSlot) || !entities.isEmpty()) {
+				try {
+					byte[] entityData = chunk.serializeEntities(entities);
+					if (saveSlot == activeSaveSlot) {
+						snapshots.add(snapshot(chunk, entityData));
+					} else {
+						snapshots.add(chunk.copySnapshot(entityData, codec));
+					}
+				} catch (IOException ex) {
+					Logger.getLogger(Map.class.getName()).log(Level.SEVERE, null, ex);
+					success = false;
+				}
 			}
 		}
-		return true;
+		chunkSaver.save(getPath(), saveSlot, usesRegionFiles(), snapshots, callback);
+		return success;
 	}
 
 	/**
@@ -843,6 +1428,27 @@ public class Map implements IndexedGraph<PfNode> {
 		return directory;
 	}
 
+	/**
+	 * Packs the chunk files of the map root and of every save slot into
+	 * {@link RegionFile}s and uses them from now on. The chunk files are kept.
+	 *
+	 * @return amount of converted chunks
+	 * @throws IOException
+	 * @since v.1.9.2
+	 */
+	public int convertToRegionFiles() throws IOException {
+		chunkSaver.awaitAll();
+		int converted = RegionFile.convert(directory);
+		File[] slots = directory.listFiles((File file) -> file.isDirectory() && file.getName().startsWith("save"));
+		if (slots != null) {
+			for (File slot : slots) {
+				converted += RegionFile.convert(slot);
+			}
+		}
+		cVars.get("useRegionFiles").setValue(true);
+		return converted;
+	}
+
 	/**
 	 * set the modified flag to true. usually not manually called.
 	 */
@@ -875,12 +1481,46 @@ public class Map implements IndexedGraph<PfNode> {
 	}
 
 	/**
-	 * Returns a copy of the entityList.
+	 * Returns the list of the entities. Do not modify it, use
+	 * {@link #addEntities(AbstractEntity...)} and
+	 * {@link AbstractEntity#removeFromMap()} instead.
 	 *
 	 * @return every item on the map
 	 */
 	public ArrayList<AbstractEntity> getEntities() {
-		return entityList;
+		return entityStore.getEntities();
+	}
+
+	/**
+	 * 
+	 * @return the storage of the entities
+	 * @since v.1.9.2
+	 */
+	public EntityStore getEntityStore() {
+		return entityStore;
+	}
+
+	/**
+	 * Get a handle to keep instead of a reference to an entity.
+	 *
+	 * @param entity
+	 * @return {@link EntityStore#NO_HANDLE} if the entity is not on the map
+	 * @see #getEntity(long)
+	 * @since v.1.9.2
+	 */
+	public long getHandle(AbstractEntity entity) {
+		return EntityStore.getHandle(entity);
+	}
+
+	/**
+	 * Resolves a handle.
+	 *
+	 * @param handle
+	 * @return null if the entity was removed from the map
+	 * @since v.1.9.2
+	 */
+	public AbstractEntity getEntity(long handle) {
+		return entityStore.get(handle);
 	}
 
 	/**
@@ -889,11 +1529,9 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param ent entities should be already spawned
 	 */
 	public void addEntities(AbstractEntity... ent) {
-		//remove duplicates
 		for (AbstractEntity e : ent) {
-			entityList.remove(e);
+			entityStore.add(e);//duplicates are ignored
 		}
-		entityList.addAll(Arrays.asList(ent));
 	}
 	
 	/**
@@ -903,11 +1541,9 @@ public class Map implements IndexedGraph<PfNode> {
 	 */
 	public void addEntities(Collection<AbstractEntity> ent) {
 		if (ent != null) {
-			//remove duplicates
 			for (AbstractEntity e : ent) {
-				entityList.remove(e);
+				entityStore.add(e);//duplicates are ignored
 			}
-			entityList.addAll(ent);
 		}
 	}
 	
@@ -916,8 +1552,47 @@ public class Map implements IndexedGraph<PfNode> {
 	 * Disposes every entity on the map and clears the list.
 	 */
 	public void disposeEntities() {
-		entityList.forEach((AbstractEntity e) -> e.dispose());
-		entityList.clear();
+		ArrayList<AbstractEntity> entities = new ArrayList<>(entityStore.getEntities());
+		entityStore.clear();
+		entities.forEach((AbstractEntity e) -> e.dispose());
+	}
+
+	/**
+	 * The index of the entities by position. Use it for spatial queries.
+	 *
+	 * @return
+	 * @since v.1.9.2
+	 */
+	public SpatialHash getSpatialHash() {
+		return spatialHash;
+	}
+
+	/**
+	 * Find every entity inside a sphere.
+	 *
+	 * @param <T> the class you want to filter.
+	 * @param center
+	 * @param radius in game space
+	 * @param filter the class you want to filter.
+	 * @return a list with the entitys
+	 * @since v.1.9.2
+	 */
+	public <T> ArrayList<T> getEntitiesInRadius(final Point center, final float radius, final Class<T> filter) {
+		return spatialHash.queryRadius(center, radius, filter, new ArrayList<>(4));
+	}
+
+	/**
+	 * Find every entity inside an axis aligned box. The borders are included.
+	 *
+	 * @param <T> the class you want to filter.
+	 * @param min the corner with the lowest values
+	 * @param max the corner with the highest values
+	 * @param filter the class you want to filter.
+	 * @return a list with the entitys
+	 * @since v.1.9.2
+	 */
+	public <T> ArrayList<T> getEntitiesInBox(final Point min, final Point max, final Class<T> filter) {
+		return spatialHash.query(min.x, min.y, min.z, max.x, max.y, max.z, filter, new ArrayList<>(4));
 	}
 
 	/**
@@ -928,18 +1603,41 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param filter the class you want to filter.
 	 * @return a list with the entitys
 	 */
-	@SuppressWarnings(value = {"unchecked"})
 	public <T> LinkedList<T> getEntitys(final Class<T> filter) {
-		LinkedList<T> result = new LinkedList<>();
+		return getEntitys(filter, new LinkedList<>());
+	}
+
+	/**
+	 * Find every instance of a special class without allocating a new list.
+	 * They must be spawned to appear in the results.
+	 *
+	 * @param <T> the class you want to filter.
+	 * @param <C> the type of the collection
+	 * @param filter the class you want to filter.
+	 * @param result the entities are added to this collection. Clear it before reusing it.
+	 * @return the result
+	 * @since v.1.9.2
+	 */
+	public <T, C extends Collection<? super T>> C getEntitys(final Class<T> filter, final C result) {
 		if (filter == null) {
 			throw new IllegalArgumentException();
 		}
-		for (AbstractEntity entity : entityList) {
-			if (entity.hasPosition() && filter.isInstance(entity)) {
-				result.add((T) entity);
-			}
+		return typeRegistry.query(filter, result);
+	}
+
+	/**
+	 * Calls the visitor for every spawned instance of a special class.
+	 *
+	 * @param <T> the class you want to filter.
+	 * @param filter the class you want to filter.
+	 * @param visitor
+	 * @since v.1.9.2
+	 */
+	public <T> void forEachEntity(final Class<T> filter, final Consumer<? super T> visitor) {
+		if (filter == null) {
+			throw new IllegalArgumentException();
 		}
-		return result;
+		typeRegistry.forEach(filter, visitor);
 	}
 
 	/**
@@ -949,15 +1647,7 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return a list with the entitys
 	 */
 	public LinkedList<AbstractEntity> getEntitysOnCoord(final Coordinate coord) {
-		LinkedList<AbstractEntity> result = new LinkedList<>();
-
-		for (AbstractEntity ent : entityList) {
-			if (ent.getPosition() != null && coord.contains(ent.getPosition())) {
-				result.add(ent);
-			}
-		}
-
-		return result;
+		return getEntitysOnCoord(coord, AbstractEntity.class);
 	}
 
 	/**
@@ -971,10 +1661,17 @@ public class Map implements IndexedGraph<PfNode> {
 	@SuppressWarnings("unchecked")
 	public <T> LinkedList<T> getEntitysOnCoord(final Coordinate coord, final Class<T> filter) {
 		LinkedList<T> result = new LinkedList<>();
-
-		for (AbstractEntity ent : entityList) {
-			if (ent.hasPosition()
-				&& coord.contains(ent.getPosition())//on coordinate?
+		//the box around the block, only the cells nearby are checked
+		float x = coord.getX() * RenderCell.GAME_DIAGLENGTH + (coord.getY() % 2 != 0 ? RenderCell.GAME_DIAGLENGTH2 : 0);
+		float y = coord.getY() * RenderCell.GAME_DIAGLENGTH2;
+		float z = coord.getZ() * RenderCell.GAME_EDGELENGTH;
+		for (AbstractEntity ent : spatialHash.query(
+			x - RenderCell.GAME_DIAGLENGTH2, y - RenderCell.GAME_DIAGLENGTH2, z,
+			x + RenderCell.GAME_DIAGLENGTH2, y + RenderCell.GAME_DIAGLENGTH2, z + RenderCell.GAME_EDGELENGTH,
+			AbstractEntity.class,
+			new ArrayList<>(4)
+		)) {
+			if (coord.contains(ent.getPosition())//on coordinate?
 				&& filter.isInstance(ent)//of type of filter?
 			) {
 				result.add((T) ent);//add it to list
@@ -1035,12 +1732,9 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @return 
 	 */
 	public boolean isLoading(int chunkX, int chunkY) {
-		for (ChunkLoader lR : loadingRunnables) {
-			if (lR.getCoordX() == chunkX && lR.getCoordY() == chunkY) {
-				return true;
-			}
+		synchronized (loadingRequests) {
+			return loadingRequests.containsKey(getChunkKey(chunkX, chunkY));
 		}
-		return false;
 	}
 	
 	/**
@@ -1049,6 +1743,8 @@ public class Map implements IndexedGraph<PfNode> {
 	 * @param save
 	 */
 	public void dispose(boolean save) {
+		loadingPool.shutdownNow();
+		chunkSaver.dispose();//finish pending saves before saving synchronously
 		for (Chunk chunk : loadedChunks) {
 			if (save) {
 				chunk.dispose(this, getPath());
@@ -1057,6 +1753,7 @@ public class Map implements IndexedGraph<PfNode> {
 			}
 		}
 		disposeEntities();
+		RegionFile.closeAll();
 	}
 
 	@Override
@@ -1079,4 +1776,20 @@ public class Map implements IndexedGraph<PfNode> {
 			return node.distanceTo(endNode);
 		}
 	}
+
+	/**
+	 * A message sent during the parallel entity update.
+	 */
+	private static class BufferedMessage {
+
+		private final Telegraph sender;
+		private final int msg;
+		private final Object extraInfo;
+
+		BufferedMessage(Telegraph sender, int msg, Object extraInfo) {
+			this.sender = sender;
+			this.msg = msg;
+			this.extraInfo = extraInfo;
+		}
+	}
 }
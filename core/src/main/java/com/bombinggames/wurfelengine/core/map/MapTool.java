@@ -0,0 +1,303 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.bombinggames.wurfelengine.WE;
+import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Command line tool for processing the chunks of a map without a display.
+ * Runs on the headless backend. Usage:<br>
+ * <code>MapTool generate|reencode|validate &lt;map directory&gt; [options]</code><br>
+ * <ul>
+ * <li>generate: generates the chunks with {@link Map#generateChunks} and overwrites them in the save slot</li>
+ * <li>reencode: reads the chunks and writes them again, e.g. with another codec or into region files</li>
+ * <li>validate: reads the chunks and reports which are missing or can not be read</li>
+ * </ul>
+ * Reencode and validate only read the save slot (or the map root with
+ * --root). Missing chunks are not restored from the root.<br>
+ * Options: --slot n, --from chunkX chunkY, --to chunkX chunkY (including),
+ * --generator class, --codec name, --regions, --threads n, --root
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public class MapTool extends ApplicationAdapter {
+
+	/**
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			printUsage();
+			System.exit(1);
+			return;
+		}
+		MapTool tool = new MapTool(args[0], new File(args[1]));
+		for (int i = 2; i < args.length; i++) {
+			try {
+				switch (args[i]) {
+					case "--slot":
+						tool.saveSlot = Integer.parseInt(args[++i]);
+						break;
+					case "--from":
+						tool.fromX = Integer.parseInt(args[++i]);
+						tool.fromY = Integer.parseInt(args[++i]);
+						break;
+					case "--to":
+						tool.toX = Integer.parseInt(args[++i]);
+						tool.toY = Integer.parseInt(args[++i]);
+						break;
+					case "--generator":
+						tool.generatorClass = args[++i];
+						break;
+					case "--codec":
+						tool.codec = args[++i];
+						break;
+					case "--regions":
+						tool.regions = true;
+						break;
+					case "--threads":
+						tool.threads = Integer.parseInt(args[++i]);
+						break;
+					case "--root":
+						tool.fromRoot = true;
+						break;
+					default:
+						System.err.println("Unknown parameter " + args[i]);
+						printUsage();
+						System.exit(1);
+						return;
+				}
+			} catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+				System.err.println("Missing or invalid value after " + args[i - 1]);
+				System.exit(1);
+				return;
+			}
+		}
+		new HeadlessApplication(tool, new HeadlessApplicationConfiguration());
+	}
+
+	private static void printUsage() {
+		System.out.println("MapTool generate|reencode|validate <map directory> [options]");
+		System.out.println("--slot n                 save slot, default 0");
+		System.out.println("--from chunkX chunkY     first chunk, default 0 0");
+		System.out.println("--to chunkX chunkY       last chunk (including), default 0 0");
+		System.out.println("--generator class        generator with a constructor without parameters");
+		System.out.println("--codec name             chunk codec used for writing");
+		System.out.println("--regions                store the chunks in region files");
+		System.out.println("--threads n              amount of worker threads");
+		System.out.println("--root                   read the chunks from the map root instead of the save slot");
+	}
+
+	private final String mode;
+	private final File directory;
+	private int saveSlot = 0;
+	private int fromX, fromY, toX, toY;
+	private String generatorClass;
+	private String codec;
+	private boolean regions;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private final AtomicInteger processed = new AtomicInteger();
+	private final AtomicInteger missing = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	/**
+	 * true if the chunks are read from region files
+	 */
+	private boolean readRegions;
+	/**
+	 * true if the chunks are read from the map root
+	 */
+	private boolean fromRoot;
+
+	/**
+	 *
+	 * @param mode generate, reencode or validate
+	 * @param directory the map directory
+	 */
+	public MapTool(String mode, File directory) {
+		this.mode = mode;
+		this.directory = directory;
+	}
+
+	@Override
+	public void create() {
+		int exitCode = 0;
+		try {
+			exitCode = run();
+		} catch (IOException | ReflectiveOperationException | InterruptedException | ExecutionException | IllegalArgumentException ex) {
+			System.err.println("MapTool failed: " + ex);
+			exitCode = 1;
+		}
+		Gdx.app.exit();
+		System.exit(exitCode);
+	}
+
+	/**
+	 * Processes every chunk in the range.
+	 *
+	 * @return exit code
+	 */
+	private int run() throws IOException, ReflectiveOperationException, InterruptedException, ExecutionException {
+		if (!"generate".equals(mode) && !"reencode".equals(mode) && !"validate".equals(mode)) {
+			printUsage();
+			throw new IllegalArgumentException("Unknown mode " + mode);
+		}
+		if (!"generate".equals(mode)) {
+			//reading must not create the map or the save slot
+			if (!new File(directory, "meta.wecvar").isFile()) {
+				throw new IllegalArgumentException(directory + " contains no map");
+			}
+			if (!new File(directory, "save" + saveSlot).isDirectory()) {
+				throw new IllegalArgumentException("Save slot " + saveSlot + " does not exist");
+			}
+		}
+		//the engine CVars are otherwise only loaded when a game is launched
+		WE.getCVars().load();
+		AbstractEntity.registerEngineEntities();
+		Generator generator = Map.getDefaultGenerator();
+		if (generatorClass != null) {
+			generator = (Generator) Class.forName(generatorClass).getDeclaredConstructor().newInstance();
+		}
+		Map map = new Map(directory, saveSlot, generator);
+		if (codec != null) {
+			if (ChunkCodec.get(codec) == null) {
+				throw new IllegalArgumentException("Unknown codec " + codec);
+			}
+			map.getCVars().get("chunkCodec").setValue(codec);
+		}
+		readRegions = map.usesRegionFiles();
+		if (regions) {
+			map.getCVars().get("useRegionFiles").setValue(true);
+		}
+
+		final int width = Math.abs(toX - fromX) + 1;
+		final int depth = Math.abs(toY - fromY) + 1;
+		final int left = Math.min(fromX, toX);
+		final int top = Math.min(fromY, toY);
+		System.out.println(mode + " " + width * depth + " chunks of " + directory + " in save slot " + saveSlot);
+		if (!"validate".equals(mode)) {
+			System.out.println("Writing with codec " + map.getChunkCodec().getName() + (map.usesRegionFiles() ? " into region files" : ""));
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			pool.submit(() -> {
+				if ("generate".equals(mode)) {
+					map.generateChunks(left, top, width, depth,
+						(Chunk chunk) -> process(map, chunk, chunk.getChunkX(), chunk.getChunkY(), width * depth)
+					);
+				} else {
+					IntStream.range(0, width * depth).parallel().forEach(
+						(int i) -> process(map, null, left + i % width, top + i / width, width * depth)
+					);
+				}
+			}).get();
+		} finally {
+			pool.shutdown();
+			map.dispose(false);
+		}
+		System.out.println("Processed " + processed + ", missing " + missing + ", failed " + failed + " chunks.");
+		return failed.get() > 0 || ("validate".equals(mode) && missing.get() > 0) ? 1 : 0;
+	}
+
+	/**
+	 * Processes one chunk.
+	 *
+	 * @param map
+	 * @param generated the generated chunk in generate mode, else null
+	 * @param chunkX
+	 * @param chunkY
+	 * @param total amount of chunks for the progress
+	 */
+	private void process(Map map, Chunk generated, int chunkX, int chunkY, int total) {
+		try {
+			switch (mode) {
+				case "generate":
+					write(map, generated, null);
+					break;
+				case "reencode": {
+					Chunk chunk = Chunk.readFromStorage(map, directory, saveSlot, chunkX, chunkY, readRegions, fromRoot);
+					if (chunk == null) {
+						missing.incrementAndGet();
+						return;
+					}
+					write(map, chunk, chunk.serializeEntities(chunk.retrieveEntities()));
+					break;
+				}
+				case "validate":
+					if (Chunk.readFromStorage(map, directory, saveSlot, chunkX, chunkY, readRegions, fromRoot) == null) {
+						System.out.println("Chunk " + chunkX + "," + chunkY + " is missing.");
+						missing.incrementAndGet();
+						return;
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown mode " + mode);
+			}
+		} catch (IOException | RuntimeException ex) {//corrupt data may also cause runtime exceptions
+			System.err.println("Chunk " + chunkX + "," + chunkY + " failed: " + ex);
+			failed.incrementAndGet();
+			return;
+		}
+		int done = processed.incrementAndGet();
+		if (done % 64 == 0) {
+			System.out.println(done + "/" + total);
+		}
+	}
+
+	/**
+	 * Writes a chunk into the save slot.
+	 *
+	 * @param map
+	 * @param chunk
+	 * @param entityData can be null
+	 * @throws IOException
+	 */
+	private void write(Map map, Chunk chunk, byte[] entityData) throws IOException {
+		if (map.usesRegionFiles()) {
+			chunk.snapshot(entityData, map.getChunkCodec(), saveSlot).writeToRegion(directory, saveSlot);
+		} else {
+			new File(directory, "save" + saveSlot).mkdirs();
+			chunk.save(directory, saveSlot, entityData, map.getChunkCodec());
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores every different cell (id, value and health) once in a palette. The
+ * cells are then written as runs of equal palette entries in the order of the
+ * block array, so that columns of the same material become one run. Optionally
+ * the result is compressed with deflate.<br>
+ * Layout: palette size (short), palette entries (3 bytes each), runs (palette
+ * index and length as var ints). A chunk can therefore contain at most 65535
+ * different cells. With deflate the layout is prefixed by the
+ * uncompressed and compressed length (ints) and compressed.
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public class PaletteChunkCodec implements ChunkCodec {
+
+	/**
+	 * the palette size is stored in two bytes
+	 */
+	private final static int MAXPALETTESIZE = 0xFFFF;
+
+	private final byte id;
+	private final String name;
+	private final boolean deflate;
+
+	/**
+	 *
+	 * @param id unique id of this codec
+	 * @param name
+	 * @param deflate if true the palette and the runs are compressed with deflate
+	 */
+	public PaletteChunkCodec(byte id, String name, boolean deflate) {
+		this.id = id;
+		this.name = name;
+		this.deflate = deflate;
+	}
+
+	@Override
+	public byte getId() {
+		return id;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void encode(byte[] blocks, int blocksX, int blocksY, int blocksZ, OutputStream out) throws IOException {
+		IntIntMap paletteIndices = new IntIntMap(16);
+		IntArray palette = new IntArray(16);
+		IntArray runs = new IntArray(64);//pairs of palette index and length
+		int lastIndex = -1;
+		for (int i = 0; i < blocks.length; i += 3) {
+			int cell = ((blocks[i] & 255) << 16) | ((blocks[i + 1] & 255) << 8) | (blocks[i + 2] & 255);
+			int index = paletteIndices.get(cell, -1);
+			if (index == -1) {
+				if (palette.size == MAXPALETTESIZE) {
+					throw new IOException("More than " + MAXPALETTESIZE + " different cells in the chunk. Use the legacy codec.");
+				}
+				index = palette.size;
+				palette.add(cell);
+				paletteIndices.put(cell, index);
+			}
+			if (index == lastIndex) {
+				runs.incr(runs.size - 1, 1);
+			} else {
+				runs.add(index);
+				runs.add(1);
+				lastIndex = index;
+			}
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(palette.size * 3 + runs.size * 2 + 2);
+		bytes.write(palette.size >> 8);
+		bytes.write(palette.size);
+		for (int i = 0; i < palette.size; i++) {
+			int cell = palette.get(i);
+			bytes.write(cell >> 16);
+			bytes.write(cell >> 8);
+			bytes.write(cell);
+		}
+		for (int i = 0; i < runs.size; i++) {
+			writeVarInt(bytes, runs.get(i));
+		}
+
+		if (deflate) {
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			deflater.setInput(bytes.toByteArray());
+			deflater.finish();
+			byte[] compressed = new byte[bytes.size() + 64];
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == compressed.length) {
+					compressed = Arrays.copyOf(compressed, compressed.length * 2);
+				}
+				length += deflater.deflate(compressed, length, compressed.length - length);
+			}
+			deflater.end();
+			DataOutputStream dos = new DataOutputStream(out);
+			dos.writeInt(bytes.size());
+			dos.writeInt(length);
+			dos.write(compressed, 0, length);
+		} else {
+			bytes.writeTo(out);
+		}
+	}
+
+	@Override
+	public void decode(ByteBuffer in, byte[] blocks, int blocksX, int blocksY, int blocksZ) throws IOException {
+		if (deflate) {
+			int rawLength = in.getInt();
+			int compressedLength = in.getInt();
+			if (rawLength < 0 || compressedLength < 0 || compressedLength > in.remaining()) {
+				throw new IOException("Invalid compressed chunk length.");
+			}
+			byte[] raw = new byte[rawLength];
+			Inflater inflater = new Inflater();
+			ByteBuffer compressed = in.slice();
+			compressed.limit(compressedLength);
+			inflater.setInput(compressed);
+			try {
+				if (inflater.inflate(raw) != rawLength) {
+					throw new IOException("Compressed chunk data is incomplete.");
+				}
+			} catch (DataFormatException ex) {
+				throw new IOException(ex);
+			} finally {
+				inflater.end();
+			}
+			in.position(in.position() + compressedLength);
+			in = ByteBuffer.wrap(raw);
+		}
+
+		int paletteSize = in.getShort() & 0xFFFF;
+		int[] palette = new int[paletteSize];
+		for (int i = 0; i < paletteSize; i++) {
+			palette[i] = ((in.get() & 255) << 16) | ((in.get() & 255) << 8) | (in.get() & 255);
+		}
+		int i = 0;
+		while (i < blocks.length) {
+			int index = readVarInt(in);
+			int length = readVarInt(in);
+			if (index >= paletteSize || i + length * 3 > blocks.length) {
+				throw new IOException("Chunk data is corrupt.");
+			}
+			int cell = palette[index];
+			byte cellId = (byte) (cell >> 16);
+			byte value = (byte) (cell >> 8);
+			byte health = (byte) cell;
+			for (int end = i + length * 3; i < end; i += 3) {
+				blocks[i] = cellId;
+				blocks[i + 1] = value;
+				blocks[i + 2] = health;
+			}
+		}
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(ByteBuffer in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid var int in chunk data.");
+	}
+}
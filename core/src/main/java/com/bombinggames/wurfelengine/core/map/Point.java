@@ -927,14 +927,8 @@ public class Point extends Vector3 implements Position {
 
 	@Override
 	public <T> LinkedList<T> getEntitiesNearby(float radius, Class<T> type) {
-		LinkedList<T> result = new LinkedList<>();//default size 5
-		LinkedList<T> entities = Controller.getMap().getEntitys(type);
-		for (T entity : entities) {
-			if (distanceTo(((AbstractEntity)entity).getPosition()) < radius) {
-				result.add(entity);
-			}
-		}
-
+		LinkedList<T> result = new LinkedList<>();
+		Controller.getMap().getSpatialHash().queryRadius(this, radius, type, result);
 		return result;
 	}
 
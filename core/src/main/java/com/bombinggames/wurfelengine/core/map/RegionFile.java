@@ -0,0 +1,481 @@
+/*
+ * Copyright 2017 Benedikt Vogler.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * If this software is used for a game the official „Wurfel Engine“ logo or its name must be
+ *   visible in an intro screen or main menu.
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of Benedikt Vogler nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+/**
+ * A region file stores {@link #REGIONSIZE}x{@link #REGIONSIZE} chunks in one
+ * file. The file starts with a table containing offset, length and capacity of
+ * every chunk. The chunk data is the same as in a single chunk file. If a chunk
+ * grows beyond its capacity it is appended at the end of the file.<br>
+ * Changed cells can be appended to a journal next to the region file instead
+ * of rewriting the chunk. The journal is merged into the region file by
+ * {@link #compact()}.<br>
+ * Open region files are cached and must be closed with {@link #closeAll()}.
+ *
+ * @author Benedikt Vogler
+ * @since v.1.9.2
+ */
+public class RegionFile {
+
+	/**
+	 * chunks per region in x and y
+	 */
+	public static final int REGIONSIZE = 32;
+	/**
+	 * The suffix of region files.
+	 */
+	public static final String REGIONFILESUFFIX = "wer";
+	/**
+	 * The suffix of journal files.
+	 */
+	public static final String JOURNALFILESUFFIX = "wej";
+	/**
+	 * size of the journal in bytes after which it should be compacted
+	 */
+	public static final int JOURNALCOMPACTSIZE = 1 << 18;
+	/**
+	 * offset, length and capacity as int for every chunk
+	 */
+	private static final int HEADERBYTES = REGIONSIZE * REGIONSIZE * 3 * 4;
+	/**
+	 * extra space reserved for a chunk so that it can grow without moving
+	 */
+	private static final float GROWTH = 1.25f;
+
+	private static final HashMap<File, RegionFile> OPENFILES = new HashMap<>(8);
+
+	/**
+	 * Get the region file containing the chunk. Opens or creates the file if
+	 * it is not open.
+	 *
+	 * @param path directory of the map or of a save slot
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @return
+	 * @throws IOException
+	 */
+	public static RegionFile get(File path, int chunkX, int chunkY) throws IOException {
+		File file = getFile(path, chunkX, chunkY);
+		synchronized (OPENFILES) {
+			RegionFile region = OPENFILES.get(file);
+			if (region == null) {
+				region = new RegionFile(file);
+				OPENFILES.put(file, region);
+			}
+			return region;
+		}
+	}
+
+	/**
+	 * Get the region file containing the chunk only if it exists on storage.
+	 *
+	 * @param path directory of the map or of a save slot
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @return null if there is no such file
+	 * @throws IOException
+	 */
+	public static RegionFile getIfExists(File path, int chunkX, int chunkY) throws IOException {
+		if (!getFile(path, chunkX, chunkY).exists()) {
+			return null;
+		}
+		return get(path, chunkX, chunkY);
+	}
+
+	/**
+	 *
+	 * @param path directory of the map or of a save slot
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @return the file of the region containing the chunk
+	 */
+	public static File getFile(File path, int chunkX, int chunkY) {
+		return new File(path, "region" + Math.floorDiv(chunkX, REGIONSIZE) + "," + Math.floorDiv(chunkY, REGIONSIZE) + "." + REGIONFILESUFFIX);
+	}
+
+	/**
+	 * Writes every open region file to the disk and closes it.
+	 */
+	public static void closeAll() {
+		synchronized (OPENFILES) {
+			for (RegionFile region : OPENFILES.values()) {
+				try {
+					region.close();
+				} catch (IOException ex) {
+					Gdx.app.error("RegionFile", "Closing " + region.file + " failed: " + ex);
+				}
+			}
+			OPENFILES.clear();
+		}
+	}
+
+	/**
+	 * Copies every single chunk file in a directory into region files. The
+	 * chunk files are kept.
+	 *
+	 * @param path directory of the map or of a save slot
+	 * @return amount of converted chunks
+	 * @throws IOException
+	 */
+	public static int convert(File path) throws IOException {
+		File[] files = path.listFiles();
+		if (files == null) {
+			return 0;
+		}
+		int converted = 0;
+		String prefix = "chunk";
+		String suffix = "." + Chunk.CHUNKFILESUFFIX;
+		for (File chunkFile : files) {
+			String name = chunkFile.getName();
+			if (chunkFile.isFile() && name.startsWith(prefix) && name.endsWith(suffix)) {
+				String[] coords = name.substring(prefix.length(), name.length() - suffix.length()).split(",");
+				try {
+					int chunkX = Integer.parseInt(coords[0]);
+					int chunkY = Integer.parseInt(coords[1]);
+					get(path, chunkX, chunkY).write(chunkX, chunkY, Files.readAllBytes(chunkFile.toPath()));
+					converted++;
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+					Gdx.app.error("RegionFile", "Skipping " + name + ": " + ex);
+				}
+			}
+		}
+		synchronized (OPENFILES) {
+			for (RegionFile region : OPENFILES.values()) {
+				region.sync();
+			}
+		}
+		return converted;
+	}
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private RandomAccessFile journal;
+	/**
+	 * changes in the journal per chunk. Key is {@link Map#getChunkKey(int, int)}.
+	 */
+	private final LongMap<IntArray> deltas = new LongMap<>(8);
+	/**
+	 * copy of the table at the start of the file
+	 */
+	private final int[] offsets = new int[REGIONSIZE * REGIONSIZE];
+	private final int[] lengths = new int[REGIONSIZE * REGIONSIZE];
+	private final int[] capacities = new int[REGIONSIZE * REGIONSIZE];
+
+	/**
+	 * Opens a region file. If the file does not exist it is created with no
+	 * chunks in it.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	private RegionFile(File file) throws IOException {
+		this.file = file;
+		boolean exists = file.exists();
+		raf = new RandomAccessFile(file, "rw");
+		if (!exists || raf.length() < HEADERBYTES) {
+			raf.setLength(0);
+			raf.write(new byte[HEADERBYTES]);
+		} else {
+			byte[] header = new byte[HEADERBYTES];
+			raf.seek(0);
+			raf.readFully(header);
+			for (int i = 0; i < offsets.length; i++) {
+				offsets[i] = readInt(header, i * 12);
+				lengths[i] = readInt(header, i * 12 + 4);
+				capacities[i] = readInt(header, i * 12 + 8);
+			}
+		}
+		File journalFile = getJournalFile();
+		if (journalFile.exists()) {
+			journal = new RandomAccessFile(journalFile, "rw");
+			readJournal();
+		}
+	}
+
+	private File getJournalFile() {
+		String name = file.getName();
+		return new File(file.getParentFile(), name.substring(0, name.length() - REGIONFILESUFFIX.length()) + JOURNALFILESUFFIX);
+	}
+
+	/**
+	 * Reads the journal into memory. An incomplete record at the end, e.g.
+	 * after a crash, is removed.
+	 *
+	 * @throws IOException
+	 */
+	private void readJournal() throws IOException {
+		byte[] bytes = new byte[(int) journal.length()];
+		journal.seek(0);
+		journal.readFully(bytes);
+		int pos = 0;
+		while (pos + 12 <= bytes.length) {
+			int chunkX = readInt(bytes, pos);
+			int chunkY = readInt(bytes, pos + 4);
+			int count = readInt(bytes, pos + 8);
+			int end = pos + 12 + (count > 0 ? count * 8 : 0);
+			if (count < -1 || end > bytes.length) {
+				break;
+			}
+			long key = Map.getChunkKey(chunkX, chunkY);
+			if (count == -1) {
+				deltas.remove(key);
+			} else {
+				IntArray chunkDeltas = deltas.get(key);
+				if (chunkDeltas == null) {
+					chunkDeltas = new IntArray(count * 2);
+					deltas.put(key, chunkDeltas);
+				}
+				for (int i = pos + 12; i < end; i += 4) {
+					chunkDeltas.add(readInt(bytes, i));
+				}
+			}
+			pos = end;
+		}
+		if (pos < bytes.length) {
+			Gdx.app.error("RegionFile", "Removing incomplete journal entry in " + getJournalFile());
+			journal.setLength(pos);
+		}
+	}
+
+	private static int readInt(byte[] bytes, int pos) {
+		return ((bytes[pos] & 255) << 24) | ((bytes[pos + 1] & 255) << 16) | ((bytes[pos + 2] & 255) << 8) | (bytes[pos + 3] & 255);
+	}
+
+	/**
+	 * position of a chunk in the table
+	 */
+	private static int getIndex(int chunkX, int chunkY) {
+		return Math.floorMod(chunkX, REGIONSIZE) + Math.floorMod(chunkY, REGIONSIZE) * REGIONSIZE;
+	}
+
+	/**
+	 * Reads the data of a chunk with one seek and one read.
+	 *
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @return null if the chunk is not in this region
+	 * @throws IOException
+	 */
+	public synchronized byte[] read(int chunkX, int chunkY) throws IOException {
+		int index = getIndex(chunkX, chunkY);
+		if (offsets[index] == 0) {
+			return null;
+		}
+		byte[] data = new byte[lengths[index]];
+		raf.seek(offsets[index]);
+		raf.readFully(data);
+		return data;
+	}
+
+	/**
+	 * Stores the data of a chunk. The file is not synced.
+	 *
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @param data the same content as in a single chunk file
+	 * @throws IOException
+	 * @see #sync()
+	 */
+	public synchronized void write(int chunkX, int chunkY, byte[] data) throws IOException {
+		if (deltas.remove(Map.getChunkKey(chunkX, chunkY)) != null) {
+			writeJournal(chunkX, chunkY, null);//the journal entries are older than the new data
+		}
+		writeChunk(getIndex(chunkX, chunkY), data);
+	}
+
+	/**
+	 * Writes the data of a chunk and updates the table.
+	 *
+	 * @param index position in the table
+	 * @param data
+	 * @throws IOException
+	 */
+	private void writeChunk(int index, byte[] data) throws IOException {
+		if (offsets[index] == 0 || capacities[index] < data.length) {
+			//append at the end
+			offsets[index] = (int) raf.length();
+			capacities[index] = (int) (data.length * GROWTH);
+			raf.setLength(offsets[index] + capacities[index]);
+		}
+		lengths[index] = data.length;
+		raf.seek(offsets[index]);
+		raf.write(data);
+		raf.seek(index * 12);
+		raf.writeInt(offsets[index]);
+		raf.writeInt(lengths[index]);
+		raf.writeInt(capacities[index]);
+	}
+
+	/**
+	 * Appends changed cells of a chunk to the journal. The journal is not synced.
+	 *
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @param changes pairs of position in the block array and packed cell
+	 * @throws IOException
+	 * @see #sync()
+	 */
+	public synchronized void appendDeltas(int chunkX, int chunkY, IntArray changes) throws IOException {
+		if (changes.size == 0) {
+			return;
+		}
+		writeJournal(chunkX, chunkY, changes);
+		long key = Map.getChunkKey(chunkX, chunkY);
+		IntArray chunkDeltas = deltas.get(key);
+		if (chunkDeltas == null) {
+			chunkDeltas = new IntArray(changes.size);
+			deltas.put(key, chunkDeltas);
+		}
+		chunkDeltas.addAll(changes);
+	}
+
+	/**
+	 * Appends a record to the journal.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @param changes if null a record which discards the previous changes of the chunk is written
+	 * @throws IOException
+	 */
+	private void writeJournal(int chunkX, int chunkY, IntArray changes) throws IOException {
+		if (journal == null) {
+			journal = new RandomAccessFile(getJournalFile(), "rw");
+		}
+		ByteBuffer record = ByteBuffer.allocate(12 + (changes == null ? 0 : changes.size * 4));
+		record.putInt(chunkX);
+		record.putInt(chunkY);
+		if (changes == null) {
+			record.putInt(-1);
+		} else {
+			record.putInt(changes.size / 2);
+			for (int i = 0; i < changes.size; i++) {
+				record.putInt(changes.get(i));
+			}
+		}
+		journal.seek(journal.length());
+		journal.write(record.array());
+	}
+
+	/**
+	 * Get the changes stored in the journal for a chunk.
+	 *
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @return a copy, pairs of position in the block array and packed cell. null if there are no changes.
+	 */
+	public synchronized IntArray getDeltas(int chunkX, int chunkY) {
+		IntArray chunkDeltas = deltas.get(Map.getChunkKey(chunkX, chunkY));
+		return chunkDeltas == null ? null : new IntArray(chunkDeltas);
+	}
+
+	/**
+	 *
+	 * @return true if the journal is big enough to be compacted
+	 */
+	public synchronized boolean shouldCompact() {
+		try {
+			return journal != null && journal.length() > JOURNALCOMPACTSIZE;
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the changes in the journal into the chunks and clears the
+	 * journal. Blocks readers and writers of this region until it is done.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void compact() throws IOException {
+		if (journal == null) {
+			return;
+		}
+		LongMap.Entries<IntArray> entries = new LongMap.Entries<>(deltas);
+		for (LongMap.Entry<IntArray> entry : entries) {
+			int chunkX = (int) (entry.key >> 32);
+			int chunkY = (int) entry.key;
+			byte[] chunkData = read(chunkX, chunkY);
+			if (chunkData != null) {
+				writeChunk(getIndex(chunkX, chunkY), Chunk.applyDeltasToFile(chunkData, entry.value));
+			}
+		}
+		raf.getFD().sync();
+		deltas.clear();
+		journal.setLength(0);
+		journal.getFD().sync();
+		Gdx.app.debug("RegionFile", "Compacted journal of " + file);
+	}
+
+	/**
+	 * Check if a chunk is stored in this region.
+	 *
+	 * @param chunkX chunk coordinate
+	 * @param chunkY chunk coordinate
+	 * @return
+	 */
+	public synchronized boolean contains(int chunkX, int chunkY) {
+		return offsets[getIndex(chunkX, chunkY)] != 0;
+	}
+
+	/**
+	 * Forces the written data to the disk.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void sync() throws IOException {
+		raf.getFD().sync();
+		if (journal != null) {
+			journal.getFD().sync();
+		}
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	private synchronized void close() throws IOException {
+		sync();
+		raf.close();
+		if (journal != null) {
+			journal.close();
+		}
+	}
+}
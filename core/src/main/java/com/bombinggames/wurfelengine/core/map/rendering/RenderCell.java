@@ -38,11 +38,13 @@ import com.bombinggames.wurfelengine.core.GameView;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractGameObject;
 import com.bombinggames.wurfelengine.core.gameobjects.Side;
 import com.bombinggames.wurfelengine.core.gameobjects.SimpleEntity;
+import com.bombinggames.wurfelengine.core.map.BlockConfig;
 import com.bombinggames.wurfelengine.core.map.Coordinate;
 import com.bombinggames.wurfelengine.core.map.Map;
 import com.bombinggames.wurfelengine.core.map.Point;
 import com.bombinggames.wurfelengine.core.map.Position;
 import com.bombinggames.wurfelengine.core.sorting.TopoGraphNode;
+import java.util.Arrays;
 
 /**
  * Something which can be rendered and therefore saves render information shared
@@ -52,6 +54,11 @@ import com.bombinggames.wurfelengine.core.sorting.TopoGraphNode;
  * referenced.<br>
  * The block id in teh map can have different id then used for rendering. The
  * rendering sprite id's are set in the constructor or later manualy.<br>
+ * The value, light, AO and clipping of a cell in a {@link RenderChunk} are
+ * stored in the primitive arrays of the chunk. The cell object is only a view
+ * on the arrays which is created when it is requested. A cell which is not in
+ * a chunk uses arrays of its own.<br>
+ * The sprites of the sides are shared between the cells.<br>
  *
  * @author Benedikt Vogler
  */
@@ -61,11 +68,25 @@ public class RenderCell extends AbstractGameObject {
 	 * indexed acces to spritesheet {id}{value}{side}
 	 */
     private static AtlasRegion[][][] blocksprites = new AtlasRegion[RenderCell.OBJECTTYPESNUM][RenderCell.VALUESNUM][3];
+	/**
+	 * The sprites of the sides shared by every cell. Position, color and AO are
+	 * set before every draw.
+	 */
+	private static final GameSpaceSprite[][][] SIDESPRITES = new GameSpaceSprite[RenderCell.OBJECTTYPESNUM][RenderCell.VALUESNUM][3];
 	
     /**
      * a list where a representing color of the block is stored
      */
     private static final Color[][] COLORLIST = new Color[RenderCell.OBJECTTYPESNUM][RenderCell.VALUESNUM];
+	/**
+	 * By id and value: 0 unknown, 1 {@link #newInstance(byte, byte)} creates a
+	 * plain cell, 2 it creates a subclass.
+	 */
+	private static final byte[] INSTANCECLASSES = new byte[256 * 256];
+	/**
+	 * the block config used for {@link #INSTANCECLASSES}
+	 */
+	private static BlockConfig instanceClassesConfig;
 	private static boolean staticShade;
 	private static SimpleEntity destruct = new SimpleEntity((byte) 3,(byte) 0);
 	private static Color tmpColor = new Color();
@@ -152,6 +173,10 @@ public class RenderCell extends AbstractGameObject {
 	 * the max. amount of different values
 	 */
 	public transient static final int VALUESNUM = 64;
+	/**
+	 * Light level 1 of a vertex. 512 base 10 for each color channel.
+	 */
+	static final int DEFAULTLIGHT = 537395712;
 
 	/**
 	 * value between 0-100
@@ -201,6 +226,29 @@ public class RenderCell extends AbstractGameObject {
 		return Map.getBlockConfig().toRenderBlock(id, value);
 	}
 
+	/**
+	 * Cells created as a subclass have a state of their own so they must be
+	 * kept as an object in a {@link RenderChunk}.
+	 *
+	 * @param id
+	 * @param value
+	 * @return true if {@link #newInstance(byte, byte)} creates a subclass of
+	 * RenderCell
+	 * @since v.1.9.2
+	 */
+	static boolean isCustomInstance(byte id, byte value) {
+		BlockConfig config = Map.getBlockConfig();
+		if (config != instanceClassesConfig) {
+			Arrays.fill(INSTANCECLASSES, (byte) 0);
+			instanceClassesConfig = config;
+		}
+		int i = (id & 255) << 8 | (value & 255);
+		if (INSTANCECLASSES[i] == 0) {
+			INSTANCECLASSES[i] = newInstance(id, value).getClass() == RenderCell.class ? (byte) 1 : (byte) 2;
+		}
+		return INSTANCECLASSES[i] == 2;
+	}
+
 	/**
 	 * 
 	 * @param spriteIdValue id and value in one int
@@ -354,25 +402,33 @@ public class RenderCell extends AbstractGameObject {
 				}
 			}
 		}
+		for (GameSpaceSprite[][] sideSprite : SIDESPRITES) {
+			for (GameSpaceSprite[] sprites : sideSprite) {
+				for (int i = 0; i < sprites.length; i++) {
+					sprites[i] = null;
+				}
+			}
+		}
     }
 
 	/**
 	 * final because an id change must go though {@link #newInstance(byte, byte) }
 	 */
 	private final byte id;
-	/**
-	 * sprite value
-	 */
-	private byte value;
 	private Coordinate coord = new Coordinate(0, 0, 0);
 	
-	//view data
+	//view data, the data of this cell is at the index
+	/**
+	 * sprite values
+	 */
+	private byte[] values;
 	/**
 	 * Each side has four RGB101010 colors (each edge) with a each 10bit float
 	 * per color channel. The channel brightness is obtained by dividing bits by
 	 * fraction /2^10-1 = 1023. Each field index describes a vertex (edge) 0-3. Vertex start at left, then top, then right.
+	 * Twelve ints (three sides with four edges) per cell starting at index*12.
 	 */
-	private final int[] color = new int[3*4];//three sides with four edges
+	private int[] color;
 	/**
 	 * byte 0: left side, byte 1: top side, byte 2: right side.<br>In each byte the
 	 * bit order: <br>
@@ -386,13 +442,15 @@ public class RenderCell extends AbstractGameObject {
 	 * &nbsp;&nbsp;/&nbsp;4\<br>
 	 * <br>
 	 **/
-	private int aoFlags;
+	private int[] aoFlags;
 	/**
 	 * Three bits used, for each side one. byte position equals side id. TODO: move to aoFlags byte #3
 	 */
-	private byte clipping;
-	private transient GameSpaceSprite side3;
-	private transient GameSpaceSprite side2;
+	private byte[] clipping;
+	/**
+	 * index of this cell in the arrays
+	 */
+	private int index;
 	
 	/**
 	 * lazy init
@@ -405,8 +463,7 @@ public class RenderCell extends AbstractGameObject {
 	 * @see #newInstance(byte, byte) 
 	 */
     public RenderCell(byte id){
-        super();
-		this.id = id;
+        this(id, (byte) 0);
 	}
 	
 	/**
@@ -418,7 +475,47 @@ public class RenderCell extends AbstractGameObject {
 	public RenderCell(byte id, byte value){
 		super();
 		this.id = id;
-		this.value = value;
+		values = new byte[]{value};
+		color = new int[3 * 4];
+		aoFlags = new int[1];
+		clipping = new byte[1];
+	}
+
+	/**
+	 * Uses the arrays of a {@link RenderChunk} to store the data of this cell.
+	 * The value of this cell is written into the arrays, the other data is
+	 * taken from the arrays.
+	 *
+	 * @param values
+	 * @param clipping
+	 * @param aoFlags
+	 * @param color twelve ints per cell
+	 * @param index index of this cell in the arrays
+	 * @since v.1.9.2
+	 */
+	void bind(byte[] values, byte[] clipping, int[] aoFlags, int[] color, int index) {
+		values[index] = this.values[this.index];
+		this.values = values;
+		this.clipping = clipping;
+		this.aoFlags = aoFlags;
+		this.color = color;
+		this.index = index;
+	}
+
+	/**
+	 * Copies the data of this cell into arrays of its own, so that it does not
+	 * change when the cell in the {@link RenderChunk} is replaced.
+	 *
+	 * @since v.1.9.2
+	 */
+	void detach() {
+		int[] ownColor = new int[3 * 4];
+		System.arraycopy(color, index * 12, ownColor, 0, ownColor.length);
+		values = new byte[]{values[index]};
+		clipping = new byte[]{clipping[index]};
+		aoFlags = new int[]{aoFlags[index]};
+		color = ownColor;
+		index = 0;
 	}
 	
 	/**
@@ -436,7 +533,7 @@ public class RenderCell extends AbstractGameObject {
 	 * @see #getSpriteValue()
 	 */
 	public byte getValue() {
-		return value;
+		return values[index];
 	}
 	
 	/**
@@ -444,12 +541,12 @@ public class RenderCell extends AbstractGameObject {
 	 * @return
 	 */
 	public boolean isObstacle() {
-		return Map.getBlockConfig().isObstacle(id, value);
+		return Map.getBlockConfig().isObstacle(id, values[index]);
 	}
 
     @Override
     public String getName() {
-        return RenderCell.getName(id, value);
+        return RenderCell.getName(id, values[index]);
     }
 
 	@Override
@@ -724,33 +821,23 @@ public class RenderCell extends AbstractGameObject {
 			return;
 		}
 
-		//lazy init
-		GameSpaceSprite sprite;
-		switch (side) {
-			case LEFT:
-				if (this.sprite == null) {
-					this.sprite = new GameSpaceSprite(getBlockSprite(id, value, side), side, (byte) (aoFlags&255));
-				}
-				sprite = this.sprite;
-				break;
-			case TOP:
-				if (side2 == null) {
-					side2 = new GameSpaceSprite(getBlockSprite(id, value, side), side, (byte) ((aoFlags >> 8) & 255));
-				}
-				sprite = side2;
-				break;
-			default:
-				if (side3 == null) {
-					side3 = new GameSpaceSprite(getBlockSprite(id, value, side), side, (byte) ((aoFlags >> 16) & 255));
-				}
-				sprite = side3;
-				break;
+		//lazy init of the shared sprite
+		GameSpaceSprite sprite = SIDESPRITES[id][value][side.getCode()];
+		if (sprite == null) {
+			sprite = new GameSpaceSprite(getBlockSprite(id, value, side), side, (byte) 0);
+			SIDESPRITES[id][value][side.getCode()] = sprite;
 		}
+		sprite.setAoFlags((byte) ((aoFlags[index] >> (side.getCode() * 8)) & 255));
 		//sprite.setRegion(getBlockSprite(id, value, side).getTexture());
 		sprite.setPosition(pos.getX(), pos.getY(), pos.getZ());
-		if (getScaling() != 1) {
-			sprite.setOrigin(0, 0);
-			sprite.setScale(getScaling());
+		float scaling = getScaling();
+		if (sprite.getScaleX() != scaling) {
+			if (scaling != 1) {
+				sprite.setOrigin(0, 0);
+			} else {
+				sprite.setOriginCenter();
+			}
+			sprite.setScale(scaling);
 		}
 
 		//if (color != null) {
@@ -767,7 +854,7 @@ public class RenderCell extends AbstractGameObject {
 		//		color.b = 1;
 		//	}
 		int[] vertexcolor = this.color;
-		byte sidecode = (byte) (side.getCode()*4);//get offset
+		int sidecode = index * 12 + side.getCode() * 4;//get offset
 		sprite.setColor(
 			((vertexcolor[sidecode+0] >> (20 - 10 * Channel.Red.id)) & 0x3FF) / 1023f,
 			((vertexcolor[sidecode+0] >> (20 - 10 * Channel.Green.id)) & 0x3FF) / 1023f,
@@ -841,7 +928,7 @@ public class RenderCell extends AbstractGameObject {
 	 * @return
 	 */
 	public boolean isIndestructible() {
-		return Map.getBlockConfig().isIndestructible(id,value);//game logic related
+		return Map.getBlockConfig().isIndestructible(id, values[index]);//game logic related
 	}
 	
 	/**
@@ -868,7 +955,7 @@ public class RenderCell extends AbstractGameObject {
 		if (id == 0) {
 			return false;
 		}
-		return Map.getBlockConfig().isLiquid(id,value);
+		return Map.getBlockConfig().isLiquid(id, values[index]);
 	}
 
 	@Override
@@ -901,7 +988,7 @@ public class RenderCell extends AbstractGameObject {
 	 */
 	public float getLightlevel(Side side, byte vertex, Channel channel) {
 		byte colorBitShift = (byte) (20 - 10 * channel.id);
-		return ((color[side.getCode()*4+vertex] >> colorBitShift) & 0x3FF) / 511f;
+		return ((color[index * 12 + side.getCode() * 4 + vertex] >> colorBitShift) & 0x3FF) / 511f;
 	}
 
 	/**
@@ -922,18 +1009,14 @@ public class RenderCell extends AbstractGameObject {
 			}
 			color = (l << 20) + (l << 10) + l;
 		}
-		for (int i = 0; i < this.color.length; i++) {
-			this.color[i] = color;//512 base 10 for each color channel
-		}
+		Arrays.fill(this.color, index * 12, index * 12 + 12, color);
 	}
 	
 	/**
 	 * sets the light to 1
 	 */
 	public void resetLight(){
-		for (int i = 0; i < color.length; i++) {
-			color[i] = 537395712;//512 base 10 for each color channel
-		}
+		Arrays.fill(color, index * 12, index * 12 + 12, DEFAULTLIGHT);
 	}
 
 	/**
@@ -942,6 +1025,19 @@ public class RenderCell extends AbstractGameObject {
 	 * @param side
 	 */
 	public void setLightlevel(float lightlevel, Side side) {
+		setLightlevel(color, index * 12, lightlevel, side);
+	}
+
+	/**
+	 * Sets the light of a side in an array of vertex colors.
+	 *
+	 * @param color the vertex colors
+	 * @param offset index of the first vertex of the cell
+	 * @param lightlevel a factor in range [0-2]
+	 * @param side
+	 * @since v.1.9.2
+	 */
+	static void setLightlevel(int[] color, int offset, float lightlevel, Side side) {
 		if (lightlevel < 0) {
 			lightlevel = 0;
 		}
@@ -950,10 +1046,8 @@ public class RenderCell extends AbstractGameObject {
 			l = 1023;
 		}
 
-		color[side.getCode()*4+0] = (l << 20) + (l << 10) + l;//RGB
-		color[side.getCode()*4+1] = (l << 20) + (l << 10) + l;//RGB
-		color[side.getCode()*4+2] = (l << 20) + (l << 10) + l;//RGB
-		color[side.getCode()*4+3] = (l << 20) + (l << 10) + l;//RGB
+		int start = offset + side.getCode() * 4;
+		Arrays.fill(color, start, start + 4, (l << 20) + (l << 10) + l);//RGB
 	}
 	
 	/**
@@ -971,7 +1065,7 @@ public class RenderCell extends AbstractGameObject {
 			l = 1023;
 		}
 
-		color[side.getCode()*4+vertex] = (l << 20) + (l << 10) + l;//RGB
+		color[index * 12 + side.getCode() * 4 + vertex] = (l << 20) + (l << 10) + l;//RGB
 	}
 	
 		/**
@@ -993,7 +1087,7 @@ public class RenderCell extends AbstractGameObject {
 			l = 1023;
 		}
 		
-		color[side.getCode()*4+vertex] |= (l << colorBitShift);
+		color[index * 12 + side.getCode() * 4 + vertex] |= (l << colorBitShift);
 	}
 	
 	/**
@@ -1016,7 +1110,7 @@ public class RenderCell extends AbstractGameObject {
 			l = 0x3FF;
 		}
 
-		int currentl = color[side.getCode()*4+vertex];
+		int currentl = color[index * 12 + side.getCode() * 4 + vertex];
 		//read value and add new
 		int newl = ((currentl >> colorBitShift) & 0x3FF)+ l;
 		//clamp at 10 bit
@@ -1025,7 +1119,7 @@ public class RenderCell extends AbstractGameObject {
 		}
 		
 		//mask to write zeroes and then add new bits
-		color[side.getCode()*4+vertex] = (currentl & ~(0x3FF <<colorBitShift))|(newl << colorBitShift);//write
+		color[index * 12 + side.getCode() * 4 + vertex] = (currentl & ~(0x3FF <<colorBitShift))|(newl << colorBitShift);//write
 	}
 	
 	/**
@@ -1041,7 +1135,7 @@ public class RenderCell extends AbstractGameObject {
 	 * @param side
 	 */
 	public void setAOFlagTrue(int side) {
-		this.aoFlags |= 1 << side;//set n'th bit to true via OR operator
+		this.aoFlags[index] |= 1 << side;//set n'th bit to true via OR operator
 	}
 
 	/**
@@ -1049,7 +1143,7 @@ public class RenderCell extends AbstractGameObject {
 	 * @param side 
 	 */
 	public void setAOFlagFalse(int side) {
-		this.aoFlags &= ~(1 << side);//set n'th bit to false via AND operator
+		this.aoFlags[index] &= ~(1 << side);//set n'th bit to false via AND operator
 	}
 
 	/**
@@ -1064,7 +1158,7 @@ public class RenderCell extends AbstractGameObject {
 	 * @return four bytes in an int
 	 */
 	public int getAOFlags() {
-		return aoFlags;
+		return aoFlags[index];
 	}
 
 	/**
@@ -1073,19 +1167,7 @@ public class RenderCell extends AbstractGameObject {
 	 * @param aoFlags
 	 */
 	public void setAoFlags(int aoFlags) {
-		if (aoFlags!=this.aoFlags){
-			if (sprite != null) {
-				sprite.setAoFlags((byte) (aoFlags & 255));
-			}
-			if (side2 != null) {
-				side2.setAoFlags((byte) ((aoFlags >> 8) & 255));
-			}
-			if (side3 != null) {
-				side3.setAoFlags((byte) ((aoFlags >> 16) & 255));
-			}
-		}
-			
-		this.aoFlags = aoFlags;
+		this.aoFlags[index] = aoFlags;
 	}
 
 	/**
@@ -1094,7 +1176,7 @@ public class RenderCell extends AbstractGameObject {
 	 * @return
 	 */
 	public byte getClipping() {
-		return clipping;
+		return clipping[index];
 	}
 
 	/**
@@ -1103,35 +1185,45 @@ public class RenderCell extends AbstractGameObject {
 	 * @return
 	 */
 	public boolean isFullyClipped() {
-		return clipping == 0b111;
+		return clipping[index] == 0b111;
 	}
 
 	/**
 	 *
 	 */
 	public void setClippedLeft() {
-		clipping |= 1;
+		clipping[index] |= 1;
 	}
 
 	/**
 	 *
 	 */
 	public void setClippedTop() {
-		clipping |= 1 << 1;
+		clipping[index] |= 1 << 1;
 	}
 
 	/**
 	 *
 	 */
 	public void setClippedRight() {
-		clipping |= 1 << 2;
+		clipping[index] |= 1 << 2;
 	}
 
 	/**
 	 * Makes every side visible
 	 */
 	public void setUnclipped() {
-		clipping = 0;
+		clipping[index] = 0;
+	}
+
+	/**
+	 *
+	 * @param clipping first bit left, second top, third right
+	 * @see #getClipping()
+	 * @since v.1.9.2
+	 */
+	void setClipping(byte clipping) {
+		this.clipping[index] = clipping;
 	}
 
 	@Override
@@ -1156,7 +1248,7 @@ public class RenderCell extends AbstractGameObject {
 
 	@Override
 	public String toString() {
-		return Integer.toHexString(hashCode()) + " @" + getPosition().toString() + " id: " + id + " value: " + value;
+		return Integer.toHexString(hashCode()) + " @" + getPosition().toString() + " id: " + id + " value: " + values[index];
 	}
 
 	@Override
@@ -1166,7 +1258,7 @@ public class RenderCell extends AbstractGameObject {
 
 	@Override
 	public byte getSpriteValue() {
-		return value;
+		return values[index];
 	}
 
 	/**
@@ -1176,14 +1268,12 @@ public class RenderCell extends AbstractGameObject {
 	 * @param value game data value.
 	 */
 	public void setValue(byte value) {
-		if (this.value != value) {
-			//reset sides
+		if (values[index] != value) {
+			//reset sprite
 			sprite = null;
-			side2 = null;
-			side3 = null;
 		}
 			
-		this.value = value;
+		values[index] = value;
 	}
 
 	/**
@@ -1198,8 +1288,18 @@ public class RenderCell extends AbstractGameObject {
 		return topoNode;
 	}
 
-	void setTopoNode(TopoGraphNode toponode) {
-		topoNode=toponode;
+	/**
+	 * Moves the topological node to the cell replacing this cell.
+	 *
+	 * @param cell the new cell
+	 * @since v.1.9.2
+	 */
+	void moveTopoNode(RenderCell cell) {
+		if (topoNode != null) {
+			topoNode.setCell(cell);
+			cell.topoNode = topoNode;
+			topoNode = null;
+		}
 	}
 
 	public static enum Channel {
@@ -32,18 +32,23 @@ package com.bombinggames.wurfelengine.core.map.rendering;
 
 import com.badlogic.gdx.utils.Pool;
 import com.bombinggames.wurfelengine.core.gameobjects.Side;
+import com.bombinggames.wurfelengine.core.map.BlockConfig;
 import com.bombinggames.wurfelengine.core.map.Chunk;
 import com.bombinggames.wurfelengine.core.map.Coordinate;
-import com.bombinggames.wurfelengine.core.map.Iterators.DataIterator3D;
+import com.bombinggames.wurfelengine.core.map.Iterators.RenderChunkIterator;
+import com.bombinggames.wurfelengine.core.map.Map;
+import java.util.Arrays;
 
 /**
  * Stores display data for a {@link Chunk}. <br> <br>
- * This may is outdated: <br>
- * If a cell contains no block/air then the shared {@link #CELLOUTSIDE} is used.
+ * The data of the cells is stored in primitive arrays at the index
+ * (x*blocksY+y)*blocksZ+z. A {@link RenderCell} is a view on the arrays which
+ * is created when it is requested. Cells of a subclass of RenderCell have a
+ * state of their own so they are created with the chunk.
  * @author Benedikt Vogler
  */
 public class RenderChunk {
-	
+
 	/**
 	 * In theory if in a cell is no data available use this block. Uses air internally.<br>
 	 * block-by-block differences must not be used because this is a shared
@@ -54,42 +59,65 @@ public class RenderChunk {
 	/**
 	 * a pool containing chunkdata
 	 */
-	private static final Pool<RenderCell[][][]> DATAPOOL;
-	
+	private static final Pool<CellData> DATAPOOL;
+
 	static {
-		DATAPOOL = new Pool<RenderCell[][][]>(3) {
+		DATAPOOL = new Pool<CellData>(3) {
 			@Override
-			protected RenderCell[][][] newObject() {
-				//bigger by two cells because of an overlap
-				RenderCell[][][] arr = new RenderCell[Chunk.getBlocksX()][Chunk.getBlocksY()][Chunk.getBlocksZ()];
-				for (RenderCell[][] x : arr) {
-					for (RenderCell[] y : x) {
-						for (int z = 0; z < y.length; z++) {
-							y[z] = RenderCell.newInstance((byte) 0, (byte) 0);//nullpointerobject or just a null pointer can be used, as the rendering process expects an individiual container at each cell
-						}
-					}
-				}
-				return arr;
+			protected CellData newObject() {
+				return new CellData(Chunk.getBlocksX() * Chunk.getBlocksY() * Chunk.getBlocksZ());
 			}
 		};
 	}
-	
+
 	/**
 	 *clears the pool to free memory
 	 */
 	public static void clearPool(){
 		DATAPOOL.clear();
 	}
-	
+
 	/**
 	 * chunk used for rendering with this object
 	 */
 	private final Chunk chunk;
-	
+
+	/**
+	 * the actual data stored in this renderchunk
+	 */
+	private final CellData data;
+	/**
+	 * block ids
+	 */
+	private final byte[] ids;
+	/**
+	 * sprite values
+	 */
+	private final byte[] values;
+	/**
+	 * @see RenderCell#getClipping()
+	 */
+	private final byte[] clipping;
+	/**
+	 * @see RenderCell#getAOFlags()
+	 */
+	private final int[] aoFlags;
+	/**
+	 * twelve RGB101010 vertex colors per cell
+	 */
+	private final int[] light;
 	/**
-	 * the actual data stored in this renderchunk. Can not contain null
+	 * the views, null until a cell is requested
 	 */
-	private final RenderCell data[][][];
+	private final RenderCell[] cells;
+	/**
+	 * a bit for every cell hiding the cells behind. One row at [z*blocksY+y], x is the bit.
+	 */
+	private final long[] opaqueMask;
+	/**
+	 * a bit for every liquid cell. One row at [z*blocksY+y], x is the bit.
+	 */
+	private final long[] liquidMask;
 	private boolean cameraAccess;
 
 	/**
@@ -98,9 +126,28 @@ public class RenderChunk {
 	 * @param chunk linked chunk which is then rendered
 	 */
 	public RenderChunk(Chunk chunk) {
+		this(chunk, true);
+	}
+
+	/**
+	 *
+	 * @param chunk linked chunk which is then rendered
+	 * @param init if false the cells must be filled with {@link #initData(byte[])}
+	 */
+	RenderChunk(Chunk chunk, boolean init) {
 		data = DATAPOOL.obtain();
+		ids = data.ids;
+		values = data.values;
+		clipping = data.clipping;
+		aoFlags = data.aoFlags;
+		light = data.light;
+		cells = data.cells;
 		this.chunk = chunk;
-		initData();
+		opaqueMask = new long[Chunk.getBlocksY() * Chunk.getBlocksZ()];
+		liquidMask = new long[Chunk.getBlocksY() * Chunk.getBlocksZ()];
+		if (init) {
+			initData();
+		}
 	}
 
 	/**
@@ -108,9 +155,17 @@ public class RenderChunk {
 	 *
 	 */
 	public void initData() {
-		int tlX = chunk.getTopLeftCoordinateX();
-		int tlY = chunk.getTopLeftCoordinateY();
+		initData(null);
+	}
 
+	/**
+	 * fills every render cell based on block data. Does not access the map so
+	 * it can be called on another thread if the chunk is not in use.
+	 *
+	 * @param blocks obtained by {@link Chunk#shareBlocks()}, if null the
+	 * current blocks of the chunk are used
+	 */
+	void initData(byte[] blocks) {
 		//fill every data cell
 		int blocksX = Chunk.getBlocksX();
 		int blocksY = Chunk.getBlocksY();
@@ -118,25 +173,29 @@ public class RenderChunk {
 		int[] delay1 = new int[]{0,0,0};
 		int[] delay2 = new int[]{0,0,0};
 		int[] delay3 = new int[]{0,0,0};
+		int i = 0;
 		for (int xInd = 0; xInd < blocksX; xInd++) {
 			for (int yInd = 0; yInd < blocksY; yInd++) {
 				for (int z = 0; z < blocksZ; z++) {
-					//update only if cell changed
-					int blockAtPos = chunk.getBlockByIndex(xInd, yInd, z);//get block from map
-					RenderCell cell = data[xInd][yInd][z];
-					if ((blockAtPos & 255) != cell.getId()) {
-						cell = RenderCell.newInstance((byte) (blockAtPos & 255), (byte) ((blockAtPos >> 8) & 255));
-						data[xInd][yInd][z] = cell;
+					int blockAtPos = blocks == null ? chunk.getBlockByIndex(xInd, yInd, z) : Chunk.getBlockByIndex(blocks, xInd, yInd, z);//get block from map
+					byte id = (byte) (blockAtPos & 255);
+					//keep the view only if the cell did not change
+					RenderCell cell = cells[i];
+					if (cell != null && cell.getId() != id) {
+						cell.detach();
+						cell = null;
+						cells[i] = null;
 					}
-					
-					//set the coordinate
-					cell.getPosition().set(
-						tlX + xInd,
-						tlY + yInd,
-						z
-					);
-					cell.setUnclipped();
-					
+					ids[i] = id;
+					if (cell == null) {
+						values[i] = (byte) ((blockAtPos >> 8) & 255);
+						if (RenderCell.isCustomInstance(id, values[i])) {
+							bindCell(RenderCell.newInstance(id, values[i]), xInd, yInd, z, i);
+						}
+					}
+					clipping[i] = 0;
+					updateMasks(xInd, yInd, z, i);
+
 					//delayed shading because needs blocks from above
 					resetShadingFor(delay3[0], delay3[1], delay3[2]);
 					delay3[0] = delay2[0];
@@ -148,6 +207,7 @@ public class RenderChunk {
 					delay1[0] = xInd;
 					delay1[1] = yInd;
 					delay1[2] = z;
+					i++;
 				}
 			}
 		}
@@ -156,17 +216,15 @@ public class RenderChunk {
 	/**
 	 *
 	 * @param coord only coordinates which are in this chunk
-	 * @return 
+	 * @return
 	 */
 	public RenderCell getCell(Coordinate coord) {
-		if (coord.getZ() >= Chunk.getBlocksZ()) {
-			return CELLOUTSIDE;
-		}
-		return data[coord.getX() - chunk.getTopLeftCoordinateX()][coord.getY() - chunk.getTopLeftCoordinateY()][coord.getZ()];
+		return getCell(coord.getX(), coord.getY(), coord.getZ());
 	}
-	
+
 	/**
-	 * Cells above the map return RenderChunk.CELLOUTSIDE.
+	 * Cells above the map return RenderChunk.CELLOUTSIDE. Creates the view of
+	 * the cell if it was not requested before.
 	 * @param x coordinate, must be contained in this chunk
 	 * @param y coordinate, must be contained in this chunk
 	 * @param z coordinate, must be contained in this chunk
@@ -177,31 +235,14 @@ public class RenderChunk {
 		if (z >= Chunk.getBlocksZ()) {
 			return CELLOUTSIDE;
 		}
-		return data[x - chunk.getTopLeftCoordinateX()][y - chunk.getTopLeftCoordinateY()][z];
-	}
-
-	/**
-	 * get the pointer to the data
-	 * @return 
-	 */
-	public RenderCell[][][] getData() {
-		return data;
+		return getCellByIndex(x - chunk.getTopLeftCoordinateX(), y - chunk.getTopLeftCoordinateY(), z);
 	}
 
 	/**
 	 * Resets the clipping for every block.
 	 */
 	protected void resetClipping() {
-		int blocksZ = Chunk.getBlocksZ();
-		int blocksX = Chunk.getBlocksX();
-		int blocksY = Chunk.getBlocksY();
-		for (int x = 0; x < blocksX; x++) {
-			for (int y = 0; y < blocksY; y++) {
-				for (int z = 0; z < blocksZ; z++) {
-					data[x][y][z].setUnclipped();
-				}
-			}
-		}
+		Arrays.fill(clipping, (byte) 0);
 	}
 
 	/**
@@ -214,31 +255,39 @@ public class RenderChunk {
 	 */
 	public void resetShadingFor(int idexX, int idexY, int idexZ) {
 		int blocksZ = Chunk.getBlocksZ();
-		if (idexZ < Chunk.getBlocksZ() && idexZ >= 0) {
-			RenderCell block = data[idexX][idexY][idexZ];
-			if (block != null) {
-				data[idexX][idexY][idexZ].resetLight()	;
-
-				//check if block above is transparent
-				if (idexZ < blocksZ - 2
-					&& (data[idexX][idexY][idexZ + 1].isTransparent())
+		if (idexZ < blocksZ && idexZ >= 0) {
+			int i = getIndex(idexX, idexY, idexZ);
+			Arrays.fill(light, i * 12, i * 12 + 12, RenderCell.DEFAULTLIGHT);
+
+			//check if block above is transparent
+			if (idexZ < blocksZ - 2 && isTransparent(i + 1)) {
+				//two cells above is a block casting shadows
+				if (!isTransparent(i + 2)) {
+					RenderCell.setLightlevel(light, i * 12, 0.8f, Side.TOP);
+				//three blocks above is one
+				} else if (idexZ < blocksZ - 3
+					&& isTransparent(i + 2)
+					&& !isTransparent(i + 3)
 				) {
-					//two cells above is a block casting shadows
-					if (!data[idexX][idexY][idexZ + 2].isTransparent()
-					) {
-						data[idexX][idexY][idexZ].setLightlevel(0.8f, Side.TOP);
-					//three blocks above is one
-					} else if (idexZ < blocksZ - 3
-						&& (data[idexX][idexY][idexZ + 2].isTransparent())
-						&& !data[idexX][idexY][idexZ + 3].isTransparent()
-					) {
-						data[idexX][idexY][idexZ].setLightlevel(0.92f, Side.TOP);
-					}
+					RenderCell.setLightlevel(light, i * 12, 0.92f, Side.TOP);
 				}
 			}
 		}
 	}
 
+	/**
+	 *
+	 * @param i array index
+	 * @return same as {@link RenderCell#isTransparent()}
+	 */
+	private boolean isTransparent(int i) {
+		RenderCell cell = cells[i];
+		if (cell != null) {
+			return cell.isTransparent();
+		}
+		return ids[i] == 0 || Map.getBlockConfig().isTransparent(ids[i], values[i]);
+	}
+
 	/**
 	 *
 	 * @return
@@ -256,15 +305,16 @@ public class RenderChunk {
 	}
 
 	/**
-	 * Returns an iterator which iterates over the data in this chunk.
+	 * Returns an iterator which iterates over the cells in this chunk. Air is
+	 * skipped.
 	 *
 	 * @param startingZ
 	 * @param limitZ the last layer (including).
 	 * @return
 	 */
-	public DataIterator3D<RenderCell> getIterator(final int startingZ, final int limitZ) {
-		return new DataIterator3D<>(
-			data,
+	public RenderChunkIterator getIterator(final int startingZ, final int limitZ) {
+		return new RenderChunkIterator(
+			this,
 			startingZ,
 			limitZ
 		);
@@ -272,7 +322,7 @@ public class RenderChunk {
 
 	/**
 	 *
-	 * @see Chunk#getChunkX() 
+	 * @see Chunk#getChunkX()
 	 * @return
 	 */
 	public int getChunkX() {
@@ -281,7 +331,7 @@ public class RenderChunk {
 
 	/**
 	 *
-	 * @see Chunk#getChunkY() 
+	 * @see Chunk#getChunkY()
 	 * @return
 	 */
 	public int getChunkY() {
@@ -289,19 +339,139 @@ public class RenderChunk {
 	}
 
 	/**
+	 * Creates the view of the cell if it was not requested before.
 	 *
-	 * @param x
-	 * @param y
-	 * @param z
+	 * @param x index
+	 * @param y index
+	 * @param z index
 	 * @return
 	 */
-	protected RenderCell getCellByIndex(int x, int y, int z) {
-		return data[x][y][z];
+	public RenderCell getCellByIndex(int x, int y, int z) {
+		int i = getIndex(x, y, z);
+		RenderCell cell = cells[i];
+		if (cell == null) {
+			cell = bindCell(RenderCell.newInstance(ids[i], values[i]), x, y, z, i);
+		}
+		return cell;
+	}
+
+	/**
+	 * Uses the arrays as the storage of the cell and sets its coordinate.
+	 *
+	 * @param cell
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @param i array index
+	 * @return the cell
+	 */
+	private RenderCell bindCell(RenderCell cell, int x, int y, int z, int i) {
+		cell.bind(values, clipping, aoFlags, light, i);
+		cell.getPosition().set(
+			chunk.getTopLeftCoordinateX() + x,
+			chunk.getTopLeftCoordinateY() + y,
+			z
+		);
+		cells[i] = cell;
+		return cell;
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return the game logic id of the cell, 0 is air
+	 * @since v.1.9.2
+	 */
+	public byte getCellId(int x, int y, int z) {
+		return ids[getIndex(x, y, z)];
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return
+	 * @see RenderCell#getSpriteId()
+	 * @since v.1.9.2
+	 */
+	public byte getSpriteId(int x, int y, int z) {
+		int i = getIndex(x, y, z);
+		RenderCell cell = cells[i];
+		return cell == null ? ids[i] : cell.getSpriteId();
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return
+	 * @see RenderCell#getSpriteValue()
+	 * @since v.1.9.2
+	 */
+	public byte getSpriteValue(int x, int y, int z) {
+		int i = getIndex(x, y, z);
+		RenderCell cell = cells[i];
+		return cell == null ? values[i] : cell.getSpriteValue();
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return first bit left, second top, third right
+	 * @see RenderCell#getClipping()
+	 * @since v.1.9.2
+	 */
+	public byte getClipping(int x, int y, int z) {
+		return clipping[getIndex(x, y, z)];
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @param clipping first bit left, second top, third right
+	 * @since v.1.9.2
+	 */
+	void setClipping(int x, int y, int z, byte clipping) {
+		this.clipping[getIndex(x, y, z)] = clipping;
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return
+	 * @see RenderCell#getAOFlags()
+	 * @since v.1.9.2
+	 */
+	public int getAOFlags(int x, int y, int z) {
+		return aoFlags[getIndex(x, y, z)];
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @param aoFlags
+	 * @see RenderCell#getAOFlags()
+	 * @since v.1.9.2
+	 */
+	public void setAOFlags(int x, int y, int z, int aoFlags) {
+		this.aoFlags[getIndex(x, y, z)] = aoFlags;
 	}
 
 	/**
 	 * If not used can be removed.
-	 * @return true if a camera rendered this chunk this frame. 
+	 * @return true if a camera rendered this chunk this frame.
 	 */
 	protected boolean getCameraAccess() {
 		return cameraAccess;
@@ -316,15 +486,31 @@ public class RenderChunk {
 		cameraAccess = b;
 	}
 
+	/**
+	 * Updates the cells which were requested as an object.
+	 *
+	 * @param dt time in ms since last update
+	 * @see RenderCell#update(float)
+	 * @since v.1.9.2
+	 */
+	public void update(float dt) {
+		for (RenderCell cell : cells) {
+			if (cell != null) {
+				cell.update(dt);
+			}
+		}
+	}
+
 	/**
 	 *
 	 */
 	protected void dispose() {
+		Arrays.fill(cells, null);
 		DATAPOOL.free(data);
 	}
 
 	/**
-	 * 
+	 *
 	 * @param x world coordinate
 	 * @param y world coordinate
 	 * @param z world coordinate
@@ -332,7 +518,140 @@ public class RenderChunk {
 	 * @since 1.8
 	 */
 	void setCell(int x, int y, int z, RenderCell cell) {
-		data[x - chunk.getTopLeftCoordinateX()][y - chunk.getTopLeftCoordinateY()][z] = cell;
+		int xIndex = x - chunk.getTopLeftCoordinateX();
+		int yIndex = y - chunk.getTopLeftCoordinateY();
+		int i = getIndex(xIndex, yIndex, z);
+		RenderCell old = cells[i];
+		if (old != null && old != cell) {
+			old.moveTopoNode(cell);
+			old.detach();
+		}
+		ids[i] = cell.getId();
+		clipping[i] = 0;
+		aoFlags[i] = 0;
+		bindCell(cell, xIndex, yIndex, z, i);
+		updateMasks(xIndex, yIndex, z, i);
+	}
+
+	/**
+	 * Sets the bits of a cell in the opacity and liquid masks.
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @param i array index
+	 */
+	private void updateMasks(int x, int y, int z, int i) {
+		boolean opaque;
+		boolean liquid;
+		RenderCell cell = cells[i];
+		if (cell != null) {
+			opaque = cell.hidingPastBlock();
+			liquid = cell.isLiquid();
+		} else if (ids[i] == 0) {
+			opaque = false;
+			liquid = false;
+		} else {
+			BlockConfig config = Map.getBlockConfig();
+			opaque = config.hasSides(ids[i], values[i]) && !config.isTransparent(ids[i], values[i]);
+			liquid = config.isLiquid(ids[i], values[i]);
+		}
+		int row = z * Chunk.getBlocksY() + y;
+		long bit = 1L << x;
+		if (opaque) {
+			opaqueMask[row] |= bit;
+		} else {
+			opaqueMask[row] &= ~bit;
+		}
+		if (liquid) {
+			liquidMask[row] |= bit;
+		} else {
+			liquidMask[row] &= ~bit;
+		}
+	}
+
+	/**
+	 *
+	 * @param y index
+	 * @param z index
+	 * @return a bit for every cell in the row hiding the cells behind, x is the bit
+	 * @since v.1.9.2
+	 */
+	long getOpaqueRow(int y, int z) {
+		return opaqueMask[z * Chunk.getBlocksY() + y];
+	}
+
+	/**
+	 *
+	 * @param y index
+	 * @param z index
+	 * @return a bit for every liquid cell in the row, x is the bit
+	 * @since v.1.9.2
+	 */
+	long getLiquidRow(int y, int z) {
+		return liquidMask[z * Chunk.getBlocksY() + y];
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return true if the cell hides the cells behind
+	 * @see RenderCell#hidingPastBlock()
+	 * @since v.1.9.2
+	 */
+	boolean isOpaque(int x, int y, int z) {
+		return (getOpaqueRow(y, z) >>> x & 1) != 0;
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return
+	 * @see RenderCell#isLiquid()
+	 * @since v.1.9.2
+	 */
+	boolean isLiquid(int x, int y, int z) {
+		return (getLiquidRow(y, z) >>> x & 1) != 0;
+	}
+
+	/**
+	 *
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return index in the arrays
+	 */
+	private static int getIndex(int x, int y, int z) {
+		return (x * Chunk.getBlocksY() + y) * Chunk.getBlocksZ() + z;
+	}
+
+	/**
+	 * The arrays of a chunk. Pooled because they are big.
+	 */
+	private static class CellData {
+		private final byte[] ids;
+		private final byte[] values;
+		private final byte[] clipping;
+		private final int[] aoFlags;
+		private final int[] light;
+		private final RenderCell[] cells;
+
+		/**
+		 *
+		 * @param size amount of cells
+		 */
+		CellData(int size) {
+			ids = new byte[size];
+			values = new byte[size];
+			clipping = new byte[size];
+			aoFlags = new int[size];
+			light = new int[size * 12];
+			cells = new RenderCell[size];
+		}
 	}
 
 }
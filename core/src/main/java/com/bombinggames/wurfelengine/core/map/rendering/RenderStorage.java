@@ -30,9 +30,11 @@
  */
 package com.bombinggames.wurfelengine.core.map.rendering;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.ai.msg.MessageManager;
 import com.badlogic.gdx.ai.msg.Telegram;
 import com.badlogic.gdx.ai.msg.Telegraph;
+import com.badlogic.gdx.utils.LongMap;
 import com.bombinggames.wurfelengine.WE;
 import com.bombinggames.wurfelengine.core.Camera;
 import com.bombinggames.wurfelengine.core.Controller;
@@ -40,13 +42,17 @@ import com.bombinggames.wurfelengine.core.Events;
 import com.bombinggames.wurfelengine.core.lightengine.AmbientOcclusionCalculator;
 import com.bombinggames.wurfelengine.core.map.Chunk;
 import com.bombinggames.wurfelengine.core.map.Coordinate;
-import com.bombinggames.wurfelengine.core.map.Iterators.DataIterator3D;
+import com.bombinggames.wurfelengine.core.map.Map;
 import com.bombinggames.wurfelengine.core.map.Point;
 import com.bombinggames.wurfelengine.core.sorting.TopoGraphNode;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A RenderStorage is container which saves {@link RenderChunk}s used for chunks storing rendering-data. It manages which {@link Chunk}s must be transformed to {@link RenderChunk}s.
@@ -58,6 +64,12 @@ public class RenderStorage implements Telegraph  {
 	 * Stores the render data of the map.
 	 */
 	private final LinkedList<RenderChunk> data = new LinkedList<>();
+	/**
+	 * the chunks of {@link #data} by {@link Map#getChunkKey(int, int)}. Lookups
+	 * do not change the storage so they are safe for concurrent readers while
+	 * no chunk is added or removed.
+	 */
+	private final LongMap<RenderChunk> chunkIndex = new LongMap<>(16);
 	private final List<Camera> cameraContainer;
 
 	/**
@@ -66,9 +78,35 @@ public class RenderStorage implements Telegraph  {
 	private final HashSet<Coordinate> dirtyFlags = new HashSet<>(200);
 	private float zRenderingLimit = Float.POSITIVE_INFINITY;
 	/**
-	 * set to true for a frame if block was added or removed
+	 * set to true if every chunk must be baked again
 	 */
 	private boolean modified;
+	/**
+	 * cells changed since the last bake. Only their neighbourhood is baked
+	 * again.
+	 */
+	private final HashSet<Coordinate> changedCells = new HashSet<>(64);
+	/**
+	 * if more cells changed in a frame a full {@link #bakeChunks()} is done
+	 */
+	private static final int MAX_CHANGED_CELLS = 256;
+	/**
+	 * chunks wider than this are culled cell by cell because a row of the
+	 * masks with a neighbour cell on each side must fit into a long
+	 */
+	private static final int MAX_MASK_WIDTH = Long.SIZE - 2;
+	/**
+	 * bakes new chunks in the background, null if disabled
+	 */
+	private final ExecutorService bakingThread;
+	/**
+	 * chunks which are baked in the background by chunk key
+	 */
+	private final LongMap<BakeJob> pendingBakes = new LongMap<>(8);
+	/**
+	 * filled by the baking thread
+	 */
+	private final ConcurrentLinkedQueue<BakeJob> bakedQueue = new ConcurrentLinkedQueue<>();
 	/**
 	 * set to true for a frame if a chunk was added or removed
 	 */
@@ -80,6 +118,15 @@ public class RenderStorage implements Telegraph  {
 	public RenderStorage() {
 		this.cameraContainer = new ArrayList<>(1);
 		MessageManager.getInstance().addListener(this, Events.cellChanged.getId());
+		if (WE.getCVars().getValueB("enableAsyncChunkBaking")) {
+			bakingThread = Executors.newSingleThreadExecutor((Runnable r) -> {
+				Thread thread = new Thread(r, "bakeRenderChunk");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			bakingThread = null;
+		}
 	}
 	
 	/**
@@ -97,6 +144,7 @@ public class RenderStorage implements Telegraph  {
 				throw new IllegalAccessError("chunk with coordinate could not be accessed");
 			}
 			RenderCell instance = RenderCell.newInstance(id, value);
+			instance.getPosition().set(coord);
 			chunk.setCell(coord.getX(), coord.getY(), coord.getZ(), instance);
 			return instance;
 		}
@@ -118,20 +166,14 @@ public class RenderStorage implements Telegraph  {
 	public void update(float dt){
 		checkNeededChunks();
 		
-		if (modified){
+		if (modified || changedCells.size() > MAX_CHANGED_CELLS){
 			bakeChunks();
+		} else if (!changedCells.isEmpty()) {
+			bakeChangedCells();
 		}
 		//update rendderblocks
 		for (RenderChunk renderChunk : data) {
-			for (RenderCell[][] x : renderChunk.getData()) {
-				for (RenderCell[] y : x) {
-					for (RenderCell z : y) {
-						if (z != RenderChunk.CELLOUTSIDE) {
-							z.update(dt);
-						}
-					}
-				}
-			}
+			renderChunk.update(dt);
 		}
 	}
 	
@@ -141,6 +183,9 @@ public class RenderStorage implements Telegraph  {
 	private void checkNeededChunks() {
 		//set every to false
 		data.forEach(chunk -> chunk.setCameraAccess(false));
+		for (BakeJob job : pendingBakes.values()) {
+			job.requested = false;
+		}
 		
 		//check if needed chunks are loaded
 		for (int i = 0; i < cameraContainer.size(); i++) {
@@ -158,11 +203,22 @@ public class RenderStorage implements Telegraph  {
 		//remove chunks which are not used
 		data.forEach(chunk -> {
 			if (!chunk.getCameraAccess()) {
+				chunkIndex.remove(Map.getChunkKey(chunk.getChunkX(), chunk.getChunkY()));
 				chunk.dispose();
 				chunkChanged=true;
 			}
 		});
 		data.removeIf(chunk -> !chunk.getCameraAccess());
+		
+		//drop bakes which are not needed anymore, they are disposed when finished
+		Iterator<LongMap.Entry<BakeJob>> pending = pendingBakes.entries().iterator();
+		while (pending.hasNext()) {
+			if (!pending.next().value.requested) {
+				pending.remove();
+			}
+		}
+		addBakedChunks();
+		
 		if (chunkChanged){
 			chunkChanged=false;
 			MessageManager.getInstance().dispatchMessage(Events.renderStorageChanged.getId());
@@ -182,36 +238,84 @@ public class RenderStorage implements Telegraph  {
 		//check if chunk is in render storage
 		RenderChunk rChunk = getChunk(x, y);
 		if (rChunk == null) {
+			BakeJob job = pendingBakes.get(Map.getChunkKey(x, y));
+			if (job != null) {
+				job.requested = true;
+				return;
+			}
 			
 			//is chunk data is in RAM then create new renderchunk and put in renderStorage
 			Chunk mapChunk = Controller.getMap().getChunk(x, y);
 			if (mapChunk != null) {
-				rChunk = new RenderChunk(mapChunk);
-				data.add(rChunk);
-				rChunk.setCameraAccess(true);
-				AmbientOcclusionCalculator.calcAO(this, rChunk);
-				occlusionCulling(rChunk);
-
-				//update neighbor chunks
-				RenderChunk neighbor = getChunk(x - 1, y);
-				if (neighbor != null) {
-					occlusionCulling(neighbor);
+				if (bakingThread != null) {
+					job = new BakeJob(new RenderChunk(mapChunk, false), mapChunk.shareBlocks());
+					pendingBakes.put(Map.getChunkKey(x, y), job);
+					bakingThread.execute(job);
+				} else {
+					addChunk(new RenderChunk(mapChunk), false);
 				}
-				neighbor = getChunk(x + 1, y);
-				if (neighbor != null) {
-					occlusionCulling(neighbor);
-				}
-				neighbor = getChunk(x, y - 1);
-				if (neighbor != null) {
-					occlusionCulling(neighbor);
-				}
-				
-				chunkChanged=true;
 			}
 		} else {
 			rChunk.setCameraAccess(true);
 		}
 	}
+	
+	/**
+	 * Puts a filled chunk into the storage and bakes it with its neighbours.
+	 *
+	 * @param rChunk
+	 * @param aoBaked true if the AO was calculated without the neighbour
+	 * chunks, so only the border must be calculated again
+	 */
+	void addChunk(RenderChunk rChunk, boolean aoBaked) {
+		data.add(rChunk);
+		chunkIndex.put(Map.getChunkKey(rChunk.getChunkX(), rChunk.getChunkY()), rChunk);
+		rChunk.setCameraAccess(true);
+		occlusionCulling(rChunk);
+		if (aoBaked) {
+			bakeBorder(rChunk);
+		} else {
+			AmbientOcclusionCalculator.calcAO(this, rChunk);
+		}
+
+		//update neighbor chunks
+		for (int x = -1; x <= 1; x++) {
+			for (int y = -1; y <= 1; y++) {
+				RenderChunk neighbor = getChunk(rChunk.getChunkX() + x, rChunk.getChunkY() + y);
+				if (neighbor != null && neighbor != rChunk) {
+					bakeBorder(neighbor);
+				}
+			}
+		}
+		chunkChanged = true;
+	}
+	
+	/**
+	 * Adds the chunks which were baked in the background. Until then the chunk
+	 * is not rendered.
+	 */
+	private void addBakedChunks() {
+		BakeJob job;
+		while ((job = bakedQueue.poll()) != null) {
+			RenderChunk rChunk = job.rChunk;
+			long key = Map.getChunkKey(rChunk.getChunkX(), rChunk.getChunkY());
+			if (pendingBakes.get(key) != job) {
+				//not needed anymore
+				rChunk.dispose();
+			} else {
+				pendingBakes.remove(key);
+				if (job.stale) {
+					//requested again with the new blocks
+					rChunk.dispose();
+				} else if (job.failed) {
+					rChunk.initData();
+					addChunk(rChunk, false);
+				} else {
+					addChunk(rChunk, true);
+				}
+			}
+		}
+	}
 
 	
 	/**
@@ -256,54 +360,118 @@ public class RenderStorage implements Telegraph  {
 			occlusionCulling(rChunk);
 		});
 		modified=false;
+		changedCells.clear();
+	}
+	
+	/**
+	 * Bakes the shading, AO and clipping only around the cells which changed
+	 * since the last bake. Drop shadows reach three cells down, AO and clipping
+	 * only read the direct neighbours.
+	 */
+	private void bakeChangedCells() {
+		int limitZ = getCullingLimitZ();
+		for (Coordinate coord : changedCells) {
+			RenderChunk chunk = getChunk(coord);
+			if (chunk != null) {
+				for (int z = coord.getZ() - 3; z <= coord.getZ(); z++) {
+					chunk.resetShadingFor(
+						coord.getX() - chunk.getTopLeftCoordinateX(),
+						coord.getY() - chunk.getTopLeftCoordinateY(),
+						z
+					);
+				}
+			}
+			
+			for (int z = Math.max(0, coord.getZ() - 1); z <= coord.getZ() + 1 && z < Chunk.getBlocksZ(); z++) {
+				for (int y = coord.getY() - 2; y <= coord.getY() + 2; y++) {
+					for (int x = coord.getX() - 1; x <= coord.getX() + 1; x++) {
+						chunk = chunkIndex.get(Map.getChunkKey(
+							Math.floorDiv(x, Chunk.getBlocksX()),
+							Math.floorDiv(y, Chunk.getBlocksY())
+						));
+						if (chunk != null) {
+							bakeCell(
+								chunk,
+								x - chunk.getTopLeftCoordinateX(),
+								y - chunk.getTopLeftCoordinateY(),
+								z,
+								limitZ
+							);
+						}
+					}
+				}
+			}
+		}
+		changedCells.clear();
+	}
+	
+	/**
+	 * Bakes AO and clipping of the cells at the edges of the chunk because they
+	 * depend on the neighbour chunks.
+	 *
+	 * @param chunk
+	 */
+	private void bakeBorder(RenderChunk chunk) {
+		int limitZ = getCullingLimitZ();
+		int blocksX = Chunk.getBlocksX();
+		int blocksY = Chunk.getBlocksY();
+		for (int x = 0; x < blocksX; x++) {
+			for (int y = 0; y < blocksY; y++) {
+				//AO reads two rows to the front and back
+				if (x == 0 || x == blocksX - 1 || y < 2 || y >= blocksY - 2) {
+					for (int z = 0; z < Chunk.getBlocksZ(); z++) {
+						bakeCell(chunk, x, y, z, limitZ);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Calculates AO and clipping of a single cell.
+	 *
+	 * @param chunk
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @param limitZ cells above are not clipped
+	 */
+	private void bakeCell(RenderChunk chunk, int x, int y, int z, int limitZ) {
+		AmbientOcclusionCalculator.calcAO(this, chunk, x, y, z);
+		if (z <= limitZ) {
+			occlusionCulling(chunk, x, y, z);
+		} else {
+			chunk.setClipping(x, y, z, (byte) 0);
+		}
 	}
 	
 	/**
-	 * get the chunk where the coordinates are on. Worst case O(n). Average case O(1).
+	 * get the chunk where the coordinates are on. O(1)
 	 *
 	 * @param coord not altered
 	 * @return can return null if not loaded
 	 */
 	public RenderChunk getChunk(final Coordinate coord) {
-		int left, top;
-		//loop over storage
-		for (RenderChunk chunk : data) {//impact of using this loop has to be measured
-			left = chunk.getTopLeftCoordinateX();
-			top = chunk.getTopLeftCoordinateY();
-			//check if coordinates are inside the chunk
-			if (left <= coord.getX()
-				&& coord.getX() < left + Chunk.getBlocksX()
-				&& top <= coord.getY()
-				&& coord.getY() < top + Chunk.getBlocksY()
-			) {
-				data.addFirst(data.removeLast());
-				return chunk;
-			}
-		}
-		return null;//not found
+		return chunkIndex.get(Map.getChunkKey(
+			Math.floorDiv(coord.getX(), Chunk.getBlocksX()),
+			Math.floorDiv(coord.getY(), Chunk.getBlocksY())
+		));
 	}
 
 	/**
-	 * Get the chunk with the given chunk coords from the active pool. <br>Runtime: O(c) c: amount of
-	 * chunks -&gt; O(1)
+	 * Get the chunk with the given chunk coords from the active pool. O(1)
 	 *
 	 * @param chunkX
 	 * @param chunkY
 	 * @return if not in memory returns null
 	 */
 	public RenderChunk getChunk(int chunkX, int chunkY) {
-		for (RenderChunk chunk : data) {
-			if (chunkX == chunk.getChunkX()
-				&& chunkY == chunk.getChunkY()) {
-				return chunk;
-			}
-		}
-		return null;//not found
+		return chunkIndex.get(Map.getChunkKey(chunkX, chunkY));
 	}
 
 	/**
 	 * Returns a block without checking the parameters first. Good for debugging
-	 * and also faster. O(n)
+	 * and also faster. O(1)
 	 *
 	 * @param x coordinate
 	 * @param y coordinate
@@ -314,22 +482,14 @@ public class RenderStorage implements Telegraph  {
 		if (z < 0) {
 			return getNewGroundCellInstance();
 		}
-		int left, top;
-		//loop over storage
-		for (RenderChunk chunk : data) {
-			left = chunk.getTopLeftCoordinateX();
-			top = chunk.getTopLeftCoordinateY();
-			//check if coordinates are inside the chunk
-			if ( x >= left
-				&& x < left + Chunk.getBlocksX()
-				&& y >= top
-				&& y < top + Chunk.getBlocksY()
-			) {
-				data.addFirst(data.removeLast());//move in front to speed up lookup
-				return chunk.getCell(x, y, z);//find chunk in x coord
-			}
+		RenderChunk chunk = chunkIndex.get(Map.getChunkKey(
+			Math.floorDiv(x, Chunk.getBlocksX()),
+			Math.floorDiv(y, Chunk.getBlocksY())
+		));
+		if (chunk == null) {
+			return RenderChunk.CELLOUTSIDE;
 		}
-		return RenderChunk.CELLOUTSIDE;
+		return chunk.getCell(x, y, z);
 	}
 
 	/**
@@ -407,7 +567,8 @@ public class RenderStorage implements Telegraph  {
 	
 	/**
 	 * performs a simple clipping check by looking at the direct neighbours.
-	 * O(n) where n is blocks in chunk
+	 * Compares whole rows of cells at once using the opacity and liquid masks
+	 * of the chunks. O(n) where n is blocks in chunk
 	 *
 	 * @param chunk
 	 */
@@ -415,79 +576,262 @@ public class RenderStorage implements Telegraph  {
 		if (chunk == null) {
 			throw new IllegalArgumentException();
 		}
-
+		
+		int blocksX = Chunk.getBlocksX();
+		if (blocksX > MAX_MASK_WIDTH) {
+			occlusionCullingByCell(chunk);
+			return;
+		}
+		int blocksY = Chunk.getBlocksY();
+		int blocksZ = Chunk.getBlocksZ();
+		int limitZ = getCullingLimitZ();
+		int chunkX = chunk.getChunkX();
+		int chunkY = chunk.getChunkY();
+		RenderChunk left = getChunk(chunkX - 1, chunkY);
+		RenderChunk right = getChunk(chunkX + 1, chunkY);
+		RenderChunk front = getChunk(chunkX, chunkY + 1);
+		RenderChunk frontLeft = getChunk(chunkX - 1, chunkY + 1);
+		RenderChunk frontRight = getChunk(chunkX + 1, chunkY + 1);
+		
+		//rows of a layer and the two rows in front, bit x+1 is the cell at x
+		long[] opaque = new long[blocksY + 2];
+		long[] liquid = new long[blocksY + 2];
+		long[] opaqueAbove = new long[blocksY + 2];
+		long[] liquidAbove = new long[blocksY + 2];
+		fillLayerMasks(chunk, left, right, front, frontLeft, frontRight, 0, opaque, liquid);
+		
+		for (int z = 0; z < blocksZ; z++) {
+			if (z > limitZ) {
+				for (int y = 0; y < blocksY; y++) {
+					for (int x = 0; x < blocksX; x++) {
+						chunk.setClipping(x, y, z, (byte) 0);
+					}
+				}
+				continue;
+			}
+			boolean hasAbove = z < blocksZ - 1;
+			if (hasAbove) {
+				fillLayerMasks(chunk, left, right, front, frontLeft, frontRight, z + 1, opaqueAbove, liquidAbove);
+			}
+			
+			for (int y = 0; y < blocksY; y++) {
+				long currentLiquid = liquid[y];
+				long leftOpaque, leftLiquid, rightOpaque, rightLiquid;
+				if (y % 2 == 0) {
+					//next row is shifted left
+					leftOpaque = opaque[y + 1] << 1;
+					leftLiquid = liquid[y + 1] << 1;
+					rightOpaque = opaque[y + 1];
+					rightLiquid = liquid[y + 1];
+				} else {
+					//next row is shifted right
+					leftOpaque = opaque[y + 1];
+					leftLiquid = liquid[y + 1];
+					rightOpaque = opaque[y + 1] >>> 1;
+					rightLiquid = liquid[y + 1] >>> 1;
+				}
+				long clippedLeft = leftOpaque | (leftLiquid & currentLiquid);
+				long clippedRight = rightOpaque | (rightLiquid & currentLiquid);
+				long clippedTop = 0;
+				if (hasAbove) {
+					//block in top front or directly above
+					clippedTop = opaqueAbove[y + 2] | opaqueAbove[y] | (liquidAbove[y] & currentLiquid);
+				}
+				
+				for (int x = 0; x < blocksX; x++) {
+					chunk.setClipping(x, y, z, (byte) (
+						(clippedLeft >>> (x + 1) & 1)
+						| (clippedTop >>> (x + 1) & 1) << 1
+						| (clippedRight >>> (x + 1) & 1) << 2
+					));
+				}
+			}
+			
+			//the layer above is the next layer
+			long[] tmp = opaque;
+			opaque = opaqueAbove;
+			opaqueAbove = tmp;
+			tmp = liquid;
+			liquid = liquidAbove;
+			liquidAbove = tmp;
+		}
+	}
+	
+	/**
+	 * Fills the masks of a layer of the chunk including the neighbour cells
+	 * at the sides and the two rows in front.
+	 *
+	 * @param chunk
+	 * @param left can be null
+	 * @param right can be null
+	 * @param front can be null
+	 * @param frontLeft can be null
+	 * @param frontRight can be null
+	 * @param z layer
+	 * @param opaque gets filled, bit x+1 is the cell at x
+	 * @param liquid gets filled, bit x+1 is the cell at x
+	 */
+	private static void fillLayerMasks(
+		RenderChunk chunk,
+		RenderChunk left,
+		RenderChunk right,
+		RenderChunk front,
+		RenderChunk frontLeft,
+		RenderChunk frontRight,
+		int z,
+		long[] opaque,
+		long[] liquid
+	) {
+		int blocksX = Chunk.getBlocksX();
+		int blocksY = Chunk.getBlocksY();
+		for (int y = 0; y < blocksY + 2; y++) {
+			RenderChunk center = chunk, l = left, r = right;
+			int row = y;
+			if (y >= blocksY) {
+				center = front;
+				l = frontLeft;
+				r = frontRight;
+				row = y - blocksY;
+			}
+			long opaqueRow = 0;
+			long liquidRow = 0;
+			if (center != null) {
+				opaqueRow = center.getOpaqueRow(row, z) << 1;
+				liquidRow = center.getLiquidRow(row, z) << 1;
+			}
+			if (l != null) {
+				opaqueRow |= l.getOpaqueRow(row, z) >>> (blocksX - 1) & 1;
+				liquidRow |= l.getLiquidRow(row, z) >>> (blocksX - 1) & 1;
+			}
+			if (r != null) {
+				opaqueRow |= (r.getOpaqueRow(row, z) & 1) << (blocksX + 1);
+				liquidRow |= (r.getLiquidRow(row, z) & 1) << (blocksX + 1);
+			}
+			opaque[y] = opaqueRow;
+			liquid[y] = liquidRow;
+		}
+	}
+	
+	/**
+	 * performs the clipping check cell by cell. Used if the chunks are too wide
+	 * for the masks.
+	 *
+	 * @param chunk
+	 */
+	void occlusionCullingByCell(final RenderChunk chunk) {
 		chunk.resetClipping();
-		RenderCell[][][] chunkData = chunk.getData();
 		//iterate over chunk
-		DataIterator3D<RenderCell> dataIter = new DataIterator3D<>(
-			chunkData,
-			0,
-			(int) (zRenderingLimit / RenderCell.GAME_EDGELENGTH)
-		);
-
-		while (dataIter.hasNext()) {
-			RenderCell current = dataIter.next();//next is the current block
-
-			if (current != RenderChunk.CELLOUTSIDE) {
-				//calculate index position relative to camera border
-				final int x = dataIter.getCurrentIndex()[0];
-				final int y = dataIter.getCurrentIndex()[1];
-				final int z = dataIter.getCurrentIndex()[2];
-
-				//left side
-				//get neighbour block
-				RenderCell neighbour = getCellByIndex(chunk, x - ((y % 2 == 0) ? 1 : 0), y + 1, z);//next row can be shifted right(?)
-
-				if (neighbour != RenderChunk.CELLOUTSIDE
-					&& (neighbour.hidingPastBlock() || (neighbour.isLiquid() && current.isLiquid()))) {
-					current.setClippedLeft();
+		int limitZ = getCullingLimitZ();
+		for (int x = 0; x < Chunk.getBlocksX(); x++) {
+			for (int y = 0; y < Chunk.getBlocksY(); y++) {
+				for (int z = 0; z <= limitZ; z++) {
+					occlusionCulling(chunk, x, y, z);
 				}
+			}
+		}
+	}
+	
+	/**
+	 * sets the clipping flags of a single cell by looking at its direct
+	 * neighbours.
+	 *
+	 * @param chunk the chunk containing the cell
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 */
+	private void occlusionCulling(RenderChunk chunk, int x, int y, int z) {
+		boolean liquid = chunk.isLiquid(x, y, z);
+		byte clipping = 0;
+		//left side
+		//get neighbour block
+		int neighbourX = x - ((y % 2 == 0) ? 1 : 0);//next row can be shifted right(?)
+		if (isOpaque(chunk, neighbourX, y + 1, z) || (liquid && isLiquid(chunk, neighbourX, y + 1, z))) {
+			clipping |= 1;
+		}
 
-				//right side
-				//get neighbour block
-				neighbour = getCellByIndex(chunk, x + ((y % 2 == 0) ? 0 : 1), y + 1, z);//next row is shifted right
-
-				if (neighbour != RenderChunk.CELLOUTSIDE
-					&& (neighbour.hidingPastBlock() || (neighbour.isLiquid() && current.isLiquid()))) {
-					current.setClippedRight();
-				}
+		//right side
+		//get neighbour block
+		neighbourX = x + ((y % 2 == 0) ? 0 : 1);//next row is shifted right
+		if (isOpaque(chunk, neighbourX, y + 1, z) || (liquid && isLiquid(chunk, neighbourX, y + 1, z))) {
+			clipping |= 1 << 2;
+		}
 
-				//check if hidden from top
-				if (z < Chunk.getBlocksZ() - 1) {
-					neighbour = getCellByIndex(chunk, x, y + 2, z + 1);//block in top front
-					if (
-						neighbour.hidingPastBlock()
-						||
-						(chunkData[x][y][z + 1] != RenderChunk.CELLOUTSIDE
-						&& (chunkData[x][y][z + 1].hidingPastBlock()
-						|| chunkData[x][y][z + 1].isLiquid() && current.isLiquid()))
-					) {
-						current.setClippedTop();
-					}
-				}
+		//check if hidden from top
+		if (z < Chunk.getBlocksZ() - 1) {
+			if (
+				isOpaque(chunk, x, y + 2, z + 1)//block in top front
+				|| chunk.isOpaque(x, y, z + 1)
+				|| (liquid && chunk.isLiquid(x, y, z + 1))
+			) {
+				clipping |= 1 << 1;
 			}
 		}
+		chunk.setClipping(x, y, z, clipping);
+	}
+	
+	/**
+	 * the highest layer index which is culled, same as in
+	 * {@link #occlusionCulling(RenderChunk)}
+	 *
+	 * @return index
+	 */
+	private int getCullingLimitZ() {
+		int limitZ = (int) (zRenderingLimit / RenderCell.GAME_EDGELENGTH);
+		if (limitZ >= Chunk.getBlocksZ()) {
+			limitZ = Chunk.getBlocksZ() - 1;
+		}
+		if (limitZ <= 0) {
+			limitZ = 1;
+		}
+		return limitZ;
 	}
 	
 	/**
-	 * Helper function. Gets a block at an index. index can be outside of this chunk. If it is outside will get the correct chunk.
+	 * Helper function. Checks a cell at an index. index can be outside of this chunk. If it is outside will check the correct chunk.
 	 *
 	 * @param chunk the chunk where the index shoulde be found on
 	 * @param x index
 	 * @param y index
 	 * @param z index
-	 * @return
+	 * @return false if the chunk is not loaded
+	 * @see RenderChunk#isOpaque(int, int, int)
 	 */
-	private RenderCell getCellByIndex(RenderChunk chunk, int x, int y, int z) {
-		if (x < 0 || y >= Chunk.getBlocksY() || x >= Chunk.getBlocksX()) {//index outside current chunk
-			return getCell(
-				chunk.getTopLeftCoordinateX() + x,
-				chunk.getTopLeftCoordinateY() + y,
-				z
-			);
-		} else {
-			return chunk.getCellByIndex(x, y, z);
+	private boolean isOpaque(RenderChunk chunk, int x, int y, int z) {
+		chunk = getChunkByIndex(chunk, x, y);
+		return chunk != null && chunk.isOpaque(Math.floorMod(x, Chunk.getBlocksX()), Math.floorMod(y, Chunk.getBlocksY()), z);
+	}
+
+	/**
+	 * Helper function. Checks a cell at an index. index can be outside of this chunk. If it is outside will check the correct chunk.
+	 *
+	 * @param chunk the chunk where the index shoulde be found on
+	 * @param x index
+	 * @param y index
+	 * @param z index
+	 * @return false if the chunk is not loaded
+	 * @see RenderChunk#isLiquid(int, int, int)
+	 */
+	private boolean isLiquid(RenderChunk chunk, int x, int y, int z) {
+		chunk = getChunkByIndex(chunk, x, y);
+		return chunk != null && chunk.isLiquid(Math.floorMod(x, Chunk.getBlocksX()), Math.floorMod(y, Chunk.getBlocksY()), z);
+	}
+
+	/**
+	 *
+	 * @param chunk
+	 * @param x index, can be outside of the chunk
+	 * @param y index, can be outside of the chunk
+	 * @return the chunk containing the index, null if not loaded
+	 */
+	private RenderChunk getChunkByIndex(RenderChunk chunk, int x, int y) {
+		if (x < 0 || y < 0 || y >= Chunk.getBlocksY() || x >= Chunk.getBlocksX()) {//index outside current chunk
+			return chunkIndex.get(Map.getChunkKey(
+				chunk.getChunkX() + Math.floorDiv(x, Chunk.getBlocksX()),
+				chunk.getChunkY() + Math.floorDiv(y, Chunk.getBlocksY())
+			));
 		}
+		return chunk;
 	}
 
 	private RenderCell getNewGroundCellInstance() {
@@ -526,10 +870,18 @@ public class RenderStorage implements Telegraph  {
 		if (coords.getZ() < -1)//filter below lowest level
 			return true;
 		
-		RenderCell block = getCell(coords);
-		if (block==null)
+		if (coords.getZ() < 0 || coords.getZ() >= Chunk.getBlocksZ()) {
+			return false;
+		}
+		RenderChunk chunk = getChunk(coords);
+		if (chunk == null) {
 			return false;
-		return block.isFullyClipped();
+		}
+		return chunk.getClipping(
+			coords.getX() - chunk.getTopLeftCoordinateX(),
+			coords.getY() - chunk.getTopLeftCoordinateY(),
+			coords.getZ()
+		) == 0b111;
 	}
 
 	/**
@@ -561,21 +913,20 @@ public class RenderStorage implements Telegraph  {
 		if (msg.message == Events.cellChanged.getId()) {
 			//get coordinate from message and get cell
 			Coordinate coord = (Coordinate)msg.extraInfo;
-			TopoGraphNode toponode = getCell(coord).getTopoNode();
-			if (toponode != null) {//if the message is not possible
+			BakeJob job = pendingBakes.get(Map.getChunkKey(
+				Math.floorDiv(coord.getX(), Chunk.getBlocksX()),
+				Math.floorDiv(coord.getY(), Chunk.getBlocksY())
+			));
+			if (job != null) {
+				job.stale = true;
+			}
+			if (coord.getZ() >= 0 && coord.getZ() < Chunk.getBlocksZ() && getChunk(coord) != null) {//if the message is not possible
+				//the topological node is moved to the new cell
 				int blockdata = coord.getBlock();
-				RenderCell instance = refreshCell(coord, (byte) (blockdata & 255), (byte) (blockdata >> 8 & 255));
-				toponode.setCell(instance);
-				instance.setTopoNode(toponode);
-				
-				//calculates shadow for single coordinate, at the moment redudant because of heavy modified flag below
-				//setLightFlag(coord);
-				
+				refreshCell(coord, (byte) (blockdata & 255), (byte) (blockdata >> 8 & 255));
 				
-				//this should be only be performed for the neighbors cells and not every renderchunk
-				modified=true;//todo
-				//recaluculate AO for neighbors
-				//oclusion culling for neighbors
+				//shading, AO and clipping of the neighbors is baked in the next update
+				changedCells.add(coord.cpy());
 			}
 			
 			
@@ -591,6 +942,45 @@ public class RenderStorage implements Telegraph  {
 	public void dispose() {
 		RenderChunk.clearPool();
 		MessageManager.getInstance().removeListener(this, Events.cellChanged.getId());
+		if (bakingThread != null) {
+			bakingThread.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Fills a {@link RenderChunk} and calculates the AO inside the chunk on the
+	 * baking thread. Only the block array of the map chunk is read.
+	 */
+	private class BakeJob implements Runnable {
+		private final RenderChunk rChunk;
+		private final byte[] blocks;
+		/**
+		 * true if a camera still needs this chunk
+		 */
+		private boolean requested = true;
+		/**
+		 * true if the map chunk changed after the blocks were shared
+		 */
+		private boolean stale;
+		private volatile boolean failed;
+
+		BakeJob(RenderChunk rChunk, byte[] blocks) {
+			this.rChunk = rChunk;
+			this.blocks = blocks;
+		}
+
+		@Override
+		public void run() {
+			try {
+				rChunk.initData(blocks);
+				AmbientOcclusionCalculator.calcAO(null, rChunk);
+			} catch (RuntimeException ex) {
+				failed = true;
+				Gdx.app.error("RenderStorage", "Baking chunk " + rChunk.getChunkX() + "," + rChunk.getChunkY() + " failed: " + ex.getMessage());
+			} finally {
+				bakedQueue.add(this);
+			}
+		}
 	}
 
 }
@@ -129,10 +129,15 @@ public class Minimap implements Telegraph {
         int[][] topTileZ = new int[Chunk.getBlocksX()][Chunk.getBlocksY()];
         
         //fing top tile
+        Map currentMap = Controller.getMap();
         for (int x = 0; x < mapdata.length; x++) {
             for (int y = 0; y < mapdata[x].length; y++) {
                 int z = Chunk.getBlocksZ() -1;//start at top
-                while ( z>-1 && Controller.getMap().getBlockId(x, y, z)==0 ) {
+                Chunk chunk = currentMap.getChunkContaining(x, y);//look up the chunk once per column
+                if (chunk == null) {
+                    z = -1;
+                }
+                while ( z>-1 && chunk.getBlockId(x, y, z)==0 ) {
                     z--;//find topmost block in row
                 }
 
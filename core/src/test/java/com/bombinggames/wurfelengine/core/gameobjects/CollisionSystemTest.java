@@ -0,0 +1,81 @@
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.badlogic.gdx.math.Vector3;
+import com.bombinggames.wurfelengine.core.map.Point;
+import java.util.ArrayList;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Compares the sweep and prune with testing every pair.
+ *
+ * @author Benedikt Vogler
+ */
+public class CollisionSystemTest {
+
+	private static MovableEntity createEntity(EntityTypeRegistry registry, float x, float y) {
+		MovableEntity entity = new MovableEntity((byte) 1);
+		entity.setPosition(new Point(x, y, 0));
+		entity.setMass(1);
+		registry.add(entity);
+		return entity;
+	}
+
+	/**
+	 * Test of update method, of class CollisionSystem.
+	 */
+	@Test
+	public void testPush() {
+		EntityTypeRegistry registry = new EntityTypeRegistry();
+		MovableEntity a = createEntity(registry, 0, 0);
+		MovableEntity b = createEntity(registry, a.colissionRadius, 0);
+		MovableEntity distant = createEntity(registry, 10 * a.colissionRadius, 0);
+		a.setMovement(new Vector3(1, 0, 0));
+
+		CollisionSystem system = new CollisionSystem();
+		system.update(registry);
+		assertEquals(1, system.getPairs());
+		assertTrue(a.getMovement().x < 1);
+		assertTrue(b.getMovement().x > 0);
+		assertEquals(0, distant.getMovement().len(), 0);
+
+		//entities which do not collide are ignored
+		b.setColiding(false);
+		system.update(registry);
+		assertEquals(0, system.getPairs());
+	}
+
+	/**
+	 * Test of update method, of class CollisionSystem.
+	 */
+	@Test
+	public void testPairs() {
+		Random random = new Random(1);
+		EntityTypeRegistry registry = new EntityTypeRegistry();
+		ArrayList<MovableEntity> entities = new ArrayList<>(200);
+		for (int i = 0; i < 200; i++) {
+			MovableEntity entity = createEntity(registry, random.nextFloat() * 3000, random.nextFloat() * 3000);
+			if (random.nextInt(4) == 0) {
+				entity.setMass(0.1f);
+			}
+			entities.add(entity);
+		}
+		int expected = 0;
+		for (int i = 0; i < entities.size(); i++) {
+			for (int j = i + 1; j < entities.size(); j++) {
+				MovableEntity a = entities.get(i);
+				MovableEntity b = entities.get(j);
+				if ((a.isPushing() || b.isPushing()) && a.collidesWith(b)) {
+					expected++;
+				}
+			}
+		}
+		assertTrue(expected > 0);
+
+		CollisionSystem system = new CollisionSystem();
+		system.update(registry);
+		assertEquals(expected, system.getPairs());
+	}
+}
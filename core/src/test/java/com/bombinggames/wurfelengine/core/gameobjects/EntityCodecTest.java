@@ -0,0 +1,72 @@
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.Vector3;
+import com.bombinggames.wurfelengine.core.map.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Writes and reads entities with the entity codecs.
+ *
+ * @author Benedikt Vogler
+ */
+public class EntityCodecTest {
+
+	/**
+	 * Test of write and read method, of class MovableEntityCodec.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testMovableEntityRoundTrip() throws IOException {
+		//sprite id 0 so that no sprite is loaded
+		MovableEntityCodec<MovableEntity> codec = new MovableEntityCodec<>(() -> new MovableEntity((byte) 0));
+		MovableEntity entity = new MovableEntity((byte) 0);
+		entity.setPosition(new Point(120.5f, -300f, 42f));
+		entity.setName("Ball");
+		entity.setSpriteValue((byte) 3);
+		entity.setHealth(60);
+		entity.setMass(2.5f);
+		entity.setDimensionZ(90);
+		entity.setIndestructible(true);
+		entity.setRotation(45);
+		entity.setScaling(0.5f);
+		entity.setMovement(new Vector3(1, -2, 3));
+		entity.setOrientation(new Vector2(0, 1));
+		entity.setFriction(0.2f);
+		entity.setFloating(true);
+		entity.setColiding(false);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		codec.write(entity, new DataOutputStream(bytes));
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		MovableEntity read = codec.read(in);
+		assertEquals(0, in.available());
+
+		assertEquals(entity.getPosition(), read.getPosition());
+		assertEquals("Ball", read.getName());
+		assertEquals(0, read.getSpriteId());
+		assertEquals(3, read.getSpriteValue());
+		assertEquals(entity.getSpriteCategory(), read.getSpriteCategory());
+		assertEquals(60, read.getHealth(), 0);
+		assertEquals(2.5f, read.getMass(), 0);
+		assertEquals(90, read.getDimensionZ());
+		assertTrue(read.isIndestructible());
+		assertFalse(read.isHidden());
+		assertEquals(45, read.getRotation(), 0);
+		assertEquals(0.5f, read.getScaling(), 0);
+		assertEquals(entity.getMovement(), read.getMovement());
+		assertEquals(entity.getOrientation(), read.getOrientation());
+		assertEquals(0.2f, read.getFriction(), 0);
+		assertTrue(read.isFloating());
+		assertFalse(read.isColiding());
+	}
+}
@@ -0,0 +1,117 @@
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.bombinggames.wurfelengine.core.map.Point;
+import java.util.ArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Adds and removes entities of an entity store.
+ *
+ * @author Benedikt Vogler
+ */
+public class EntityStoreTest {
+
+	private static SimpleEntity createEntity(float x) {
+		SimpleEntity entity = new SimpleEntity((byte) 1);
+		entity.setPosition(new Point(x, 0, 0));
+		return entity;
+	}
+
+	/**
+	 * Checks that every entity knows its index in the store.
+	 */
+	private static void assertIndices(EntityStore store) {
+		ArrayList<AbstractEntity> entities = store.getEntities();
+		for (int i = 0; i < entities.size(); i++) {
+			assertEquals(i, entities.get(i).storeIndex);
+			assertSame(entities.get(i), store.get(EntityStore.getHandle(entities.get(i))));
+		}
+	}
+
+	/**
+	 * Test of remove and applyChanges method, of class EntityStore.
+	 */
+	@Test
+	public void testSwapRemove() {
+		SpatialHash hash = new SpatialHash();
+		EntityTypeRegistry registry = new EntityTypeRegistry();
+		EntityStore store = new EntityStore(hash, registry);
+		SimpleEntity[] entities = new SimpleEntity[5];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = createEntity(i * 10);
+			store.add(entities[i]);
+		}
+		store.add(entities[0]);
+		assertEquals(5, store.size());
+		assertEquals(5, hash.size());
+		assertEquals(5, registry.count(SimpleEntity.class));
+		assertIndices(store);
+
+		//removal is queued
+		long handle = EntityStore.getHandle(entities[1]);
+		entities[1].setPosition((Point) null);
+		store.remove(entities[1]);
+		assertEquals(5, store.size());
+		store.applyChanges();
+		assertEquals(4, store.size());
+		assertEquals(4, hash.size());
+		assertEquals(4, registry.count(SimpleEntity.class));
+		assertSame(entities[4], store.getEntities().get(1));
+		assertEquals(-1, entities[1].storeIndex);
+		assertEquals(EntityStore.NO_HANDLE, EntityStore.getHandle(entities[1]));
+		assertNull(store.get(handle));
+		assertIndices(store);
+
+		//the free handle slot is reused with another generation
+		SimpleEntity reused = createEntity(60);
+		store.add(reused);
+		assertNotEquals(handle, EntityStore.getHandle(reused));
+		assertNull(store.get(handle));
+		assertIndices(store);
+
+		//disposed entities are removed
+		entities[3].dispose();
+		store.remove(entities[3]);
+		store.applyChanges();
+		assertEquals(4, store.size());
+		assertIndices(store);
+
+		//an entity which is back on the map is kept
+		entities[2].setPosition((Point) null);
+		store.remove(entities[2]);
+		entities[2].setPosition(new Point(20, 0, 0));
+		store.applyChanges();
+		assertEquals(4, store.size());
+		assertIndices(store);
+	}
+
+	/**
+	 * Test of defer method, of class EntityStore.
+	 */
+	@Test
+	public void testDefer() {
+		EntityStore store = new EntityStore(new SpatialHash(), new EntityTypeRegistry());
+		store.add(createEntity(0));
+		store.defer();
+		SimpleEntity added = createEntity(10);
+		SimpleEntity removedBeforeApply = createEntity(20);
+		store.add(added);
+		store.add(removedBeforeApply);
+		long handle = EntityStore.getHandle(removedBeforeApply);
+		removedBeforeApply.dispose();
+		assertEquals(1, store.size());
+		store.applyChanges();
+		assertEquals(2, store.size());
+		assertSame(added, store.get(EntityStore.getHandle(added)));
+		assertNull(store.get(handle));
+		assertIndices(store);
+
+		store.clear();
+		assertEquals(0, store.size());
+		assertEquals(EntityStore.NO_HANDLE, EntityStore.getHandle(added));
+	}
+}
@@ -0,0 +1,138 @@
+package com.bombinggames.wurfelengine.core.gameobjects;
+
+import com.bombinggames.wurfelengine.core.map.Point;
+import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Compares the queries of the spatial hash with a search over every entity.
+ *
+ * @author Benedikt Vogler
+ */
+public class SpatialHashTest {
+
+	private static SimpleEntity createEntity(float x, float y, float z) {
+		SimpleEntity entity = new SimpleEntity((byte) 1);
+		entity.setPosition(new Point(x, y, z));
+		return entity;
+	}
+
+	private static ArrayList<SimpleEntity> fill(SpatialHash hash, Random random, int amount) {
+		ArrayList<SimpleEntity> entities = new ArrayList<>(amount);
+		for (int i = 0; i < amount; i++) {
+			SimpleEntity entity = createEntity(
+				(random.nextFloat() - 0.5f) * 20 * RenderCell.GAME_DIAGLENGTH,
+				(random.nextFloat() - 0.5f) * 20 * RenderCell.GAME_DIAGLENGTH,
+				random.nextFloat() * 5 * RenderCell.GAME_EDGELENGTH
+			);
+			hash.update(entity);
+			entities.add(entity);
+		}
+		return entities;
+	}
+
+	/**
+	 * Test of query method, of class SpatialHash.
+	 */
+	@Test
+	public void testQuery() {
+		Random random = new Random(1);
+		SpatialHash hash = new SpatialHash();
+		ArrayList<SimpleEntity> entities = fill(hash, random, 300);
+		assertEquals(300, hash.size());
+		for (int n = 0; n < 50; n++) {
+			float minX = (random.nextFloat() - 0.5f) * 20 * RenderCell.GAME_DIAGLENGTH;
+			float minY = (random.nextFloat() - 0.5f) * 20 * RenderCell.GAME_DIAGLENGTH;
+			float maxX = minX + random.nextFloat() * 8 * RenderCell.GAME_DIAGLENGTH;
+			float maxY = minY + random.nextFloat() * 8 * RenderCell.GAME_DIAGLENGTH;
+			float minZ = RenderCell.GAME_EDGELENGTH;
+			float maxZ = 3 * RenderCell.GAME_EDGELENGTH;
+			HashSet<SimpleEntity> expected = new HashSet<>();
+			for (SimpleEntity entity : entities) {
+				Point pos = entity.getPosition();
+				if (pos.x >= minX && pos.x <= maxX && pos.y >= minY && pos.y <= maxY && pos.z >= minZ && pos.z <= maxZ) {
+					expected.add(entity);
+				}
+			}
+			ArrayList<SimpleEntity> result = hash.query(minX, minY, minZ, maxX, maxY, maxZ, SimpleEntity.class, new ArrayList<>());
+			assertEquals(expected.size(), result.size());
+			assertEquals(expected, new HashSet<>(result));
+		}
+		assertTrue(hash.query(0, 0, 0, 1, 1, 1, MovableEntity.class, new ArrayList<>()).isEmpty());
+	}
+
+	/**
+	 * Test of queryRadius method, of class SpatialHash.
+	 */
+	@Test
+	public void testQueryRadius() {
+		Random random = new Random(2);
+		SpatialHash hash = new SpatialHash();
+		ArrayList<SimpleEntity> entities = fill(hash, random, 300);
+		for (int n = 0; n < 50; n++) {
+			Point center = new Point(
+				(random.nextFloat() - 0.5f) * 20 * RenderCell.GAME_DIAGLENGTH,
+				(random.nextFloat() - 0.5f) * 20 * RenderCell.GAME_DIAGLENGTH,
+				0
+			);
+			float radius = random.nextFloat() * 4 * RenderCell.GAME_DIAGLENGTH;
+			HashSet<SimpleEntity> expected = new HashSet<>();
+			for (SimpleEntity entity : entities) {
+				if (entity.getPosition().dst2(center) <= radius * radius) {
+					expected.add(entity);
+				}
+			}
+			ArrayList<SimpleEntity> result = hash.queryRadius(center, radius, SimpleEntity.class, new ArrayList<>());
+			assertEquals(expected.size(), result.size());
+			assertEquals(expected, new HashSet<>(result));
+		}
+	}
+
+	/**
+	 * Test of update and remove method, of class SpatialHash.
+	 */
+	@Test
+	public void testMoveAndRemove() {
+		SpatialHash hash = new SpatialHash();
+		SimpleEntity a = createEntity(10, 10, 0);
+		SimpleEntity b = createEntity(20, 20, 0);
+		SimpleEntity c = createEntity(30, 30, 0);
+		hash.update(a);
+		hash.update(b);
+		hash.update(c);
+		hash.update(a);
+		assertEquals(3, hash.size());
+
+		//moving into another cell
+		float far = 5 * RenderCell.GAME_DIAGLENGTH;
+		b.setPosition(new Point(far, far, 0));
+		hash.update(b);
+		assertEquals(3, hash.size());
+		assertEquals(2, hash.query(0, 0, 0, 40, 40, 0, SimpleEntity.class, new ArrayList<>()).size());
+		assertEquals(1, hash.query(far, far, 0, far, far, 0, SimpleEntity.class, new ArrayList<>()).size());
+
+		//removing the first of a cell keeps the others
+		hash.remove(a);
+		hash.remove(a);
+		assertEquals(2, hash.size());
+		ArrayList<SimpleEntity> result = hash.query(0, 0, 0, 40, 40, 0, SimpleEntity.class, new ArrayList<>());
+		assertEquals(1, result.size());
+		assertEquals(c, result.get(0));
+
+		//entities without position are removed on update
+		c.setPosition((Point) null);
+		hash.update(c);
+		assertEquals(1, hash.size());
+
+		hash.clear();
+		assertEquals(0, hash.size());
+		assertTrue(hash.queryRadius(new Point(far, far, 0), far, AbstractEntity.class, new ArrayList<>()).isEmpty());
+		hash.update(b);
+		assertEquals(1, hash.size());
+	}
+}
@@ -0,0 +1,128 @@
+package com.bombinggames.wurfelengine.core.map;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Encodes and decodes chunks with every codec.
+ *
+ * @author Benedikt Vogler
+ */
+public class ChunkCodecTest {
+
+	private static final int BLOCKSX = 10;
+	private static final int BLOCKSY = 40;
+	private static final int BLOCKSZ = 10;
+
+	/**
+	 * Creates blocks with some empty layers at the top.
+	 *
+	 * @param seed
+	 * @param health if false the health is always 0 because the legacy codec does not store it
+	 * @return
+	 */
+	private static byte[] createBlocks(long seed, boolean health) {
+		Random random = new Random(seed);
+		byte[] blocks = new byte[BLOCKSX * BLOCKSY * BLOCKSZ * 3];
+		for (int x = 0; x < BLOCKSX; x++) {
+			for (int y = 0; y < BLOCKSY; y++) {
+				for (int z = 0; z < BLOCKSZ - 3; z++) {
+					int i = ((x * BLOCKSY + y) * BLOCKSZ + z) * 3;
+					blocks[i] = (byte) random.nextInt(10);
+					if (blocks[i] != 0) {
+						blocks[i + 1] = (byte) random.nextInt(6);
+						if (health) {
+							blocks[i + 2] = (byte) (random.nextInt(3) * 50);
+						}
+					}
+				}
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Encodes and decodes the blocks. Bytes following the chunk data must not
+	 * be read.
+	 *
+	 * @param codec
+	 * @param blocks
+	 * @throws IOException
+	 */
+	private static void roundTrip(ChunkCodec codec, byte[] blocks) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.encode(blocks, BLOCKSX, BLOCKSY, BLOCKSZ, out);
+		int length = out.size();
+		out.write(Chunk.SIGN_COMMAND);
+		out.write(Chunk.SIGN_ENDBLOCKS);
+		out.write(42);
+
+		ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+		byte[] decoded = new byte[blocks.length];
+		Arrays.fill(decoded, (byte) 7);
+		codec.decode(in, decoded, BLOCKSX, BLOCKSY, BLOCKSZ);
+		assertArrayEquals(codec.getName(), blocks, decoded);
+		assertEquals(codec.getName(), length, in.position());
+	}
+
+	/**
+	 * Test of encode and decode method, of class LegacyChunkCodec.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testLegacy() throws IOException {
+		roundTrip(ChunkCodec.LEGACY, createBlocks(1, false));
+	}
+
+	/**
+	 * Test of encode and decode method, of class PaletteChunkCodec.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testPalette() throws IOException {
+		roundTrip(ChunkCodec.PALETTE, createBlocks(2, true));
+		roundTrip(ChunkCodec.PALETTEDEFLATE, createBlocks(3, true));
+		roundTrip(ChunkCodec.PALETTE, new byte[BLOCKSX * BLOCKSY * BLOCKSZ * 3]);
+		roundTrip(ChunkCodec.PALETTEDEFLATE, new byte[BLOCKSX * BLOCKSY * BLOCKSZ * 3]);
+	}
+
+	/**
+	 * Test of get method, of interface ChunkCodec.
+	 */
+	@Test
+	public void testGet() {
+		for (ChunkCodec codec : new ChunkCodec[]{ChunkCodec.LEGACY, ChunkCodec.PALETTE, ChunkCodec.PALETTEDEFLATE}) {
+			assertEquals(codec, ChunkCodec.get(codec.getName()));
+			assertEquals(codec, ChunkCodec.get(codec.getId()));
+		}
+	}
+
+	/**
+	 * A chunk with more different cells than fit in the palette must not be
+	 * written with the palette codec.
+	 */
+	@Test
+	public void testPaletteOverflow() {
+		int cells = 1 << 16;
+		byte[] blocks = new byte[cells * 3];
+		for (int i = 0; i < cells; i++) {
+			blocks[i * 3] = (byte) (i >> 8);
+			blocks[i * 3 + 1] = (byte) i;
+		}
+		try {
+			ChunkCodec.PALETTE.encode(blocks, 16, 64, 64, new ByteArrayOutputStream());
+			fail("palette overflow was not detected");
+		} catch (IOException ex) {
+			//expected
+		}
+	}
+}
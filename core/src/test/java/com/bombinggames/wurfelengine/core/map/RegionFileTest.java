@@ -0,0 +1,121 @@
+package com.bombinggames.wurfelengine.core.map;
+
+import com.badlogic.gdx.utils.IntArray;
+import java.io.File;
+import java.io.IOException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Writes and reads chunks and journal entries of region files.
+ *
+ * @author Benedikt Vogler
+ */
+public class RegionFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		RegionFile.closeAll();
+	}
+
+	private static byte[] createData(int length, int seed) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (i * 31 + seed);
+		}
+		return data;
+	}
+
+	/**
+	 * Test of write and read method, of class RegionFile.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testWriteRead() throws IOException {
+		File path = folder.getRoot();
+		assertNull(RegionFile.getIfExists(path, 3, -2));
+		RegionFile region = RegionFile.get(path, 3, -2);
+		assertSame(region, RegionFile.get(path, 4, -1));
+		assertNotSame(region, RegionFile.get(path, RegionFile.REGIONSIZE, 0));
+
+		assertFalse(region.contains(3, -2));
+		assertNull(region.read(3, -2));
+		byte[] a = createData(100, 1);
+		byte[] b = createData(50, 2);
+		region.write(3, -2, a);
+		region.write(4, -2, b);
+		assertTrue(region.contains(3, -2));
+		assertArrayEquals(a, region.read(3, -2));
+		assertArrayEquals(b, region.read(4, -2));
+
+		//smaller data is written in place, bigger data is moved
+		byte[] smaller = createData(80, 3);
+		region.write(3, -2, smaller);
+		assertArrayEquals(smaller, region.read(3, -2));
+		byte[] bigger = createData(500, 4);
+		region.write(3, -2, bigger);
+		assertArrayEquals(bigger, region.read(3, -2));
+		assertArrayEquals(b, region.read(4, -2));
+
+		RegionFile.closeAll();
+		region = RegionFile.getIfExists(path, 3, -2);
+		assertArrayEquals(bigger, region.read(3, -2));
+		assertArrayEquals(b, region.read(4, -2));
+		assertFalse(region.contains(5, -2));
+	}
+
+	/**
+	 * Test of appendDeltas and getDeltas method, of class RegionFile.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testJournal() throws IOException {
+		File path = folder.getRoot();
+		RegionFile region = RegionFile.get(path, 0, 0);
+		region.write(0, 0, createData(20, 5));
+		region.write(1, 0, createData(20, 6));
+		assertNull(region.getDeltas(0, 0));
+
+		IntArray changes = new IntArray(new int[]{3, 0x010200, 9, 0x020000});
+		region.appendDeltas(0, 0, changes);
+		region.appendDeltas(0, 0, new IntArray(new int[]{12, 0x030100}));
+		region.appendDeltas(1, 0, new IntArray(new int[]{0, 0x040000}));
+		region.appendDeltas(1, 0, new IntArray());
+
+		int[] expected = {3, 0x010200, 9, 0x020000, 12, 0x030100};
+		IntArray deltas = region.getDeltas(0, 0);
+		assertArrayEquals(expected, deltas.toArray());
+		deltas.add(1);//a copy
+		assertEquals(expected.length, region.getDeltas(0, 0).size);
+
+		region.sync();
+		RegionFile.closeAll();
+		region = RegionFile.get(path, 0, 0);
+		assertArrayEquals(expected, region.getDeltas(0, 0).toArray());
+		assertArrayEquals(new int[]{0, 0x040000}, region.getDeltas(1, 0).toArray());
+
+		//writing the chunk makes the journal entries obsolete
+		byte[] data = createData(20, 7);
+		region.write(0, 0, data);
+		assertNull(region.getDeltas(0, 0));
+		RegionFile.closeAll();
+		region = RegionFile.get(path, 0, 0);
+		assertNull(region.getDeltas(0, 0));
+		assertArrayEquals(new int[]{0, 0x040000}, region.getDeltas(1, 0).toArray());
+		assertArrayEquals(data, region.read(0, 0));
+	}
+}
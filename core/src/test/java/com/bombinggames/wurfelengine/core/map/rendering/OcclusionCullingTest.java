@@ -0,0 +1,143 @@
+package com.bombinggames.wurfelengine.core.map.rendering;
+
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Generator;
+import java.util.ArrayList;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Compares the culling with the masks with the culling cell by cell.
+ *
+ * @author Benedikt Vogler
+ */
+public class OcclusionCullingTest {
+
+	/**
+	 * air, opaque, transparent and liquid blocks
+	 */
+	private static final byte[] IDS = {0, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 9};
+
+	/**
+	 * Fills the chunks with random blocks.
+	 */
+	private static class RandomGenerator implements Generator {
+
+		private final Random random;
+
+		RandomGenerator(long seed) {
+			random = new Random(seed);
+		}
+
+		@Override
+		public int generate(int x, int y, int z) {
+			return IDS[random.nextInt(IDS.length)];
+		}
+
+		@Override
+		public void spawnEntities(int x, int y, int z) {
+		}
+	}
+
+	/**
+	 * Creates the chunks around 0,0. The center chunk always exists.
+	 *
+	 * @param storage
+	 * @param seed
+	 * @param missingNeighbours if true some neighbours are left out
+	 * @return the created chunks
+	 */
+	private static ArrayList<RenderChunk> fill(RenderStorage storage, long seed, boolean missingNeighbours) {
+		RandomGenerator generator = new RandomGenerator(seed);
+		ArrayList<RenderChunk> chunks = new ArrayList<>(9);
+		for (int x = -1; x <= 1; x++) {
+			for (int y = -1; y <= 1; y++) {
+				if (missingNeighbours && (x != 0 || y != 0) && generator.random.nextInt(3) == 0) {
+					continue;
+				}
+				Chunk chunk = new Chunk(x, y);
+				chunk.fillBlocks(generator);
+				RenderChunk rChunk = new RenderChunk(chunk);
+				storage.addChunk(rChunk, false);
+				chunks.add(rChunk);
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * Culls every chunk with both methods and compares the clipping of every
+	 * cell.
+	 *
+	 * @param storage
+	 * @param chunks
+	 * @return the amount of clipped sides
+	 */
+	private static int compare(RenderStorage storage, ArrayList<RenderChunk> chunks) {
+		int clipped = 0;
+		for (RenderChunk chunk : chunks) {
+			storage.occlusionCullingByCell(chunk);
+			byte[] expected = new byte[Chunk.getBlocksX() * Chunk.getBlocksY() * Chunk.getBlocksZ()];
+			int i = 0;
+			for (int x = 0; x < Chunk.getBlocksX(); x++) {
+				for (int y = 0; y < Chunk.getBlocksY(); y++) {
+					for (int z = 0; z < Chunk.getBlocksZ(); z++) {
+						expected[i++] = chunk.getClipping(x, y, z);
+					}
+				}
+			}
+			storage.occlusionCulling(chunk);
+			i = 0;
+			for (int x = 0; x < Chunk.getBlocksX(); x++) {
+				for (int y = 0; y < Chunk.getBlocksY(); y++) {
+					for (int z = 0; z < Chunk.getBlocksZ(); z++) {
+						byte clipping = chunk.getClipping(x, y, z);
+						assertEquals(
+							"chunk " + chunk.getChunkX() + "," + chunk.getChunkY() + " cell " + x + "," + y + "," + z,
+							expected[i++],
+							clipping
+						);
+						clipped += Integer.bitCount(clipping & 7);
+					}
+				}
+			}
+		}
+		return clipped;
+	}
+
+	/**
+	 * Test of occlusionCulling method, of class RenderStorage.
+	 */
+	@Test
+	public void testOcclusionCulling() {
+		RenderStorage storage = new RenderStorage();
+		ArrayList<RenderChunk> chunks = fill(storage, 1, false);
+		assertTrue(compare(storage, chunks) > 0);
+	}
+
+	/**
+	 * Test of occlusionCulling method with missing neighbour chunks.
+	 */
+	@Test
+	public void testOcclusionCullingMissingNeighbours() {
+		for (long seed = 2; seed < 6; seed++) {
+			RenderStorage storage = new RenderStorage();
+			compare(storage, fill(storage, seed, true));
+		}
+	}
+
+	/**
+	 * Test of occlusionCulling method with a z rendering limit.
+	 */
+	@Test
+	public void testOcclusionCullingZLimit() {
+		RenderStorage storage = new RenderStorage();
+		ArrayList<RenderChunk> chunks = fill(storage, 7, true);
+		for (int z = 0; z <= Chunk.getBlocksZ(); z += 3) {
+			storage.setZRenderingLimit(z * RenderCell.GAME_EDGELENGTH);
+			compare(storage, chunks);
+		}
+	}
+}
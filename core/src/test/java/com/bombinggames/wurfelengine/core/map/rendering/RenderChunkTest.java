@@ -0,0 +1,133 @@
+package com.bombinggames.wurfelengine.core.map.rendering;
+
+import com.bombinggames.wurfelengine.core.gameobjects.Side;
+import com.bombinggames.wurfelengine.core.map.Chunk;
+import com.bombinggames.wurfelengine.core.map.Generator;
+import com.bombinggames.wurfelengine.core.map.Iterators.RenderChunkIterator;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Reads and writes the cells of a render chunk through the views.
+ *
+ * @author Benedikt Vogler
+ */
+public class RenderChunkTest {
+
+	/**
+	 * Fills the chunk with stripes of air, dirt and water.
+	 */
+	private static class StripeGenerator implements Generator {
+
+		@Override
+		public int generate(int x, int y, int z) {
+			switch (Math.floorMod(x + z, 3)) {
+				case 0:
+					return 0;
+				case 1:
+					return 2 | 1 << 8;
+				default:
+					return 9;
+			}
+		}
+
+		@Override
+		public void spawnEntities(int x, int y, int z) {
+		}
+	}
+
+	private static RenderChunk createChunk() {
+		Chunk chunk = new Chunk(0, 0);
+		chunk.fillBlocks(new StripeGenerator());
+		return new RenderChunk(chunk);
+	}
+
+	/**
+	 * Test of getCellByIndex method, of class RenderChunk.
+	 */
+	@Test
+	public void testViews() {
+		RenderChunk chunk = createChunk();
+		RenderCell dirt = chunk.getCellByIndex(1, 2, 0);
+		assertSame(dirt, chunk.getCellByIndex(1, 2, 0));
+		assertSame(dirt, chunk.getCell(chunk.getTopLeftCoordinateX() + 1, chunk.getTopLeftCoordinateY() + 2, 0));
+		assertEquals(2, dirt.getId());
+		assertEquals(1, dirt.getValue());
+		assertEquals(chunk.getTopLeftCoordinateX() + 1, dirt.getPosition().getX());
+		assertEquals(chunk.getTopLeftCoordinateY() + 2, dirt.getPosition().getY());
+
+		//the view writes into the arrays of the chunk
+		dirt.setClippedLeft();
+		assertEquals(1, chunk.getClipping(1, 2, 0));
+		chunk.setAOFlags(1, 2, 0, 5);
+		assertEquals(5, dirt.getAOFlags());
+		dirt.setLightlevel(0.5f, Side.LEFT);
+		chunk.resetShadingFor(1, 2, 0);
+		assertEquals(1, dirt.getLightlevel(Side.LEFT, (byte) 0, RenderCell.Channel.Red), 0.01f);
+
+		//water is a subclass with its own state, so it is created with the chunk
+		RenderCell water = chunk.getCellByIndex(2, 0, 0);
+		assertTrue(water instanceof Sea);
+		assertEquals(water.getSpriteValue(), chunk.getSpriteValue(2, 0, 0));
+		assertTrue(chunk.isLiquid(2, 0, 0));
+		assertTrue(!chunk.isLiquid(1, 0, 0));
+	}
+
+	/**
+	 * Test of setCell method, of class RenderChunk.
+	 */
+	@Test
+	public void testSetCell() {
+		RenderChunk chunk = createChunk();
+		RenderCell old = chunk.getCellByIndex(1, 0, 0);
+		old.setClippedTop();
+		RenderCell cell = RenderCell.newInstance((byte) 0, (byte) 0);
+		chunk.setCell(chunk.getTopLeftCoordinateX() + 1, chunk.getTopLeftCoordinateY(), 0, cell);
+		assertSame(cell, chunk.getCellByIndex(1, 0, 0));
+		assertEquals(0, chunk.getCellId(1, 0, 0));
+		assertEquals(0, chunk.getClipping(1, 0, 0));
+
+		//the replaced view keeps its data
+		assertEquals(2, old.getId());
+		assertEquals(1, old.getValue());
+		assertEquals(1 << 1, old.getClipping());
+		cell.setClippedLeft();
+		assertEquals(1 << 1, old.getClipping());
+
+		//a new bake creates a new view if the id changed
+		chunk.initData();
+		assertEquals(2, chunk.getCellId(1, 0, 0));
+		assertNotSame(cell, chunk.getCellByIndex(1, 0, 0));
+	}
+
+	/**
+	 * Test of getIterator method, of class RenderChunk.
+	 */
+	@Test
+	public void testIterator() {
+		RenderChunk chunk = createChunk();
+		int expected = 0;
+		for (int x = 0; x < Chunk.getBlocksX(); x++) {
+			for (int y = 0; y < Chunk.getBlocksY(); y++) {
+				for (int z = 0; z < Chunk.getBlocksZ(); z++) {
+					if (chunk.getCellId(x, y, z) != 0) {
+						expected++;
+					}
+				}
+			}
+		}
+		RenderChunkIterator iterator = chunk.getIterator(0, Chunk.getBlocksZ() - 1);
+		int count = 0;
+		while (iterator.hasNext()) {
+			RenderCell cell = iterator.next();
+			int[] index = iterator.getCurrentIndex();
+			assertSame(chunk.getCellByIndex(index[0], index[1], index[2]), cell);
+			assertTrue(cell.getId() != 0);
+			count++;
+		}
+		assertEquals(expected, count);
+	}
+}
@@ -1,7 +1,6 @@
 package com.bombinggames.weaponofchoice;
 
 import com.bombinggames.wurfelengine.core.map.Generator;
-import java.util.Random;
 
 /**
  *
@@ -9,53 +8,73 @@ import java.util.Random;
  */
 public class ArenaGenerator implements Generator {
 
-	private long seed = 0;
-	private Random generator;
+	private final long seed = (long) (Math.random() * Long.MAX_VALUE);
 
 	@Override
 	public int generate(int x, int y, int z) {
-		//initailize seed
-		if (seed == 0) {
-			seed = (long) (Math.random()*Long.MAX_VALUE);
-			generator = new Random(seed);
-		}
-
 		if (z == 0) {//ground level covered with sand
 			return 8;
-		} else if (z == 1 && getRandom(x, y, z) < 0.05f) { //every twentiest block is a pillar 
+		} else if (z == 1 && isPillar(x, y)) { //every twentiest block is a pillar 
 			return 2;
+		} else if (z == 2 && isPillar(x, y)) {
+			return 1;
 		} else {
-			if (z == 2 && generate(x, y, z - 1) != 0 && generate(x, y, z - 1) == 2) {
-				return 1;
+			return 0;
+		}
+	}
+
+	@Override
+	public void generateColumn(int x, int y, int[] column) {
+		boolean pillar = isPillar(x, y);
+		for (int z = 0; z < column.length; z++) {
+			if (z == 0) {
+				column[z] = 8;
+			} else if (z == 1 && pillar) {
+				column[z] = 2;
+			} else if (z == 2 && pillar) {
+				column[z] = 1;
 			} else {
-				return 0;
+				column[z] = 0;
 			}
 		}
 	}
 
 	/**
-	 * Returns a random number for each field using the seed.
 	 *
 	 * @param x
 	 * @param y
-	 * @param z
-	 * @return
+	 * @return true for every twentiest column
 	 */
-	private float getRandom(int x, int y, int z) {
-		//generate hash
-		int field = x * y * z;//fastes way to generate id for every coodinate
-
-		generator.setSeed(seed);
-		float output = 0;
-		for (int i = 0; i < field; i++) {
-			output = generator.nextFloat();
-		}
-
-		return output;
+	private boolean isPillar(int x, int y) {
+		return getRandom(x, y) < 0.05f;
+	}
 
+	/**
+	 * Returns a random number for each column using the seed.
+	 *
+	 * @param x
+	 * @param y
+	 * @return [0,1)
+	 */
+	private float getRandom(int x, int y) {
+		//hash the position with the seed
+		long h = seed + x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h ^= h >>> 31;
+		return (h >>> 40) / (float) (1 << 24);
 	}
 
 	@Override
 	public void spawnEntities(int x, int y, int z) {
 	}
+
+	@Override
+	public void spawnEntities(int left, int top, int blocksX, int blocksY, int blocksZ) {
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
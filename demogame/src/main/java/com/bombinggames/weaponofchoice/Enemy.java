@@ -36,6 +36,13 @@ public class Enemy extends MovableEntity {
 		ai.setTarget(target);
 	}
 
+	/**
+	 * @return the AI following the target
+	 */
+	EnemyAI getAI() {
+		return ai;
+	}
+
 	@Override
 	public void jump() {
 		jump(5, true);
@@ -47,6 +54,11 @@ public class Enemy extends MovableEntity {
 		super.dispose();
 	}
 
+	@Override
+	public float getDistantUpdateInterval() {
+		return 200;//off-screen enemies only need to approach the player
+	}
+
 	public static int getKillcounter() {
 		return killcounter;
 	}
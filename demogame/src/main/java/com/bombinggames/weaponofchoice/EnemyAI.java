@@ -9,12 +9,17 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.ai.msg.MessageManager;
 import com.badlogic.gdx.ai.msg.Telegram;
 import com.badlogic.gdx.ai.msg.Telegraph;
+import com.bombinggames.wurfelengine.core.Controller;
 import com.bombinggames.wurfelengine.core.Events;
 import com.bombinggames.wurfelengine.core.gameobjects.AbstractEntity;
 import com.bombinggames.wurfelengine.core.gameobjects.Component;
 import com.bombinggames.wurfelengine.core.gameobjects.MovableEntity;
 import com.bombinggames.wurfelengine.core.map.Point;
 import com.bombinggames.wurfelengine.core.map.rendering.RenderCell;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedList;
 
 /**
  *
@@ -27,10 +32,21 @@ public class EnemyAI implements Component, Telegraph {
 	private final Point lastPos = new Point(0, 0, 0);
 	private int runningagainstwallCounter = 0;
 	private MovableEntity target;
+	/**
+	 * true if the target was lost by loading and the player must be followed again
+	 */
+	private boolean searchTarget;
 
 	@Override
 	public void update(float dt) {
 		if (body.hasPosition() && body.getPosition().isInMemoryAreaXY()) {
+			if (searchTarget && target == null) {
+				LinkedList<Player> players = Controller.getMap().getEntitys(Player.class);
+				if (!players.isEmpty()) {
+					target = (MovableEntity) players.getFirst();
+					searchTarget = false;
+				}
+			}
 			//follow the target
 			if (target != null && target.hasPosition()) {
 				if (body.getPosition().distanceTo(target) > RenderCell.GAME_EDGELENGTH * 1.5f) {
@@ -91,6 +107,37 @@ public class EnemyAI implements Component, Telegraph {
 	 */
 	public void setTarget(MovableEntity target) {
 		this.target = target;
+		searchTarget = false;
+	}
+
+	/**
+	 * Writes the state of the AI. The target is only stored as a flag because
+	 * it is the player, which is found again after loading.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeInt(mana);
+		out.writeInt(runningagainstwallCounter);
+		out.writeFloat(lastPos.x);
+		out.writeFloat(lastPos.y);
+		out.writeFloat(lastPos.z);
+		out.writeBoolean(target != null || searchTarget);
+	}
+
+	/**
+	 * Reads the state written by {@link #write(DataOutput)}.
+	 *
+	 * @param in
+	 * @throws IOException
+	 */
+	void read(DataInput in) throws IOException {
+		mana = in.readInt();
+		runningagainstwallCounter = in.readInt();
+		lastPos.set(in.readFloat(), in.readFloat(), in.readFloat());
+		target = null;
+		searchTarget = in.readBoolean();
 	}
 
 	@Override
@@ -0,0 +1,33 @@
+package com.bombinggames.weaponofchoice;
+
+import com.bombinggames.wurfelengine.core.gameobjects.MovableEntityCodec;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Saves an enemy together with the state of its AI.
+ *
+ * @author Benedikt Vogler
+ */
+public class EnemyCodec extends MovableEntityCodec<Enemy> {
+
+	/**
+	 *
+	 */
+	public EnemyCodec() {
+		super(Enemy::new);
+	}
+
+	@Override
+	protected void writeFields(Enemy entity, DataOutput out) throws IOException {
+		super.writeFields(entity, out);
+		entity.getAI().write(out);
+	}
+
+	@Override
+	protected void readFields(Enemy entity, DataInput in) throws IOException {
+		super.readFields(entity, in);
+		entity.getAI().read(in);
+	}
+}
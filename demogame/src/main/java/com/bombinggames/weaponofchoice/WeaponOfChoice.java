@@ -17,7 +17,7 @@ public class WeaponOfChoice {
      */
     public static void main(String[] args) {
         WE.setMainMenu(new MainMenuScreen());
-		AbstractEntity.registerEntity("Evil Lizard", Enemy.class);
+		AbstractEntity.registerEntity("Evil Lizard", Enemy.class, new EnemyCodec());
 		WorkingDirectory.setApplicationName("WeaponOfChoice");
 		AbstractGameObject.setCustomSpritesheet("com/bombinggames/weaponofchoice/sprites/Spritesheet");
         WE.launch("Weapon of Choice - Made with WE V" + WE.VERSION, args);